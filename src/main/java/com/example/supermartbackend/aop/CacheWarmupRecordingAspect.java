@@ -0,0 +1,41 @@
+package com.example.supermartbackend.aop;
+
+import com.example.supermartbackend.cache.HotKeyWindow;
+import com.example.supermartbackend.service.CacheWarmupService;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+@Aspect
+@Component
+// Outside the cache interceptors, so cache hits are counted too
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class CacheWarmupRecordingAspect {
+
+    private final HotKeyWindow cacheHotKeys;
+
+    /**
+     * Pointcut for the shared product reads the cache warmup can replay, including the serialized catalog listings
+     */
+    @Pointcut("execution(* com.example.supermartbackend.service.CatalogPayloadCache.getListing(..)) || " +
+            "execution(* com.example.supermartbackend.service.ProductService.getProductById(..)) || " +
+            "execution(* com.example.supermartbackend.service.ProductService.getProductByIdForAdmin(..)) || " +
+            "execution(* com.example.supermartbackend.service.ProductService.getTopPopularProducts(..))")
+    private void replayableReadPointcut() {
+        // Method is empty as this is just a Pointcut
+    }
+
+    @AfterReturning("replayableReadPointcut()")
+    public void recordHotKey(JoinPoint joinPoint) {
+        // Replays would otherwise keep their own keys hot forever
+        if (!CacheWarmupService.isWarmup()) {
+            cacheHotKeys.record(CacheWarmupService.hotKey(joinPoint.getSignature().getName(), joinPoint.getArgs()));
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.supermartbackend.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A cached value with what early refresh needs to know about it: how long it took to compute
+ * and when it expires (0 when unknown). Stored in L2 only for caches with early refresh enabled.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheEntry {
+
+    private Object value;
+    private long computeMillis;
+    private long expiresAtMillis;
+}
@@ -0,0 +1,11 @@
+package com.example.supermartbackend.cache;
+
+import java.util.function.Consumer;
+
+// Carries local cache evictions between the nodes of the cluster
+public interface CacheInvalidationBus {
+
+    void publish(CacheInvalidationMessage message);
+
+    void subscribe(Consumer<CacheInvalidationMessage> listener);
+}
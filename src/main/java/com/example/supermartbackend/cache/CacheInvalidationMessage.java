@@ -0,0 +1,39 @@
+package com.example.supermartbackend.cache;
+
+import lombok.Getter;
+
+// An eviction broadcast to the other nodes so they drop the entry from their local cache
+@Getter
+public class CacheInvalidationMessage {
+
+    public enum Type {
+        EVICT, EVICT_PREFIX, CLEAR
+    }
+
+    private static final String SEPARATOR = "|";
+
+    private final String nodeId;
+    private final Type type;
+    private final String cacheName;
+    private final String key;
+
+    public CacheInvalidationMessage(String nodeId, Type type, String cacheName, String key) {
+        this.nodeId = nodeId;
+        this.type = type;
+        this.cacheName = cacheName;
+        this.key = key;
+    }
+
+    public String encode() {
+        return nodeId + SEPARATOR + type + SEPARATOR + cacheName + SEPARATOR + (key != null ? key : "");
+    }
+
+    public static CacheInvalidationMessage decode(String message) {
+        // The key comes last so it may contain the separator itself
+        String[] parts = message.split("\\|", 4);
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("Malformed cache invalidation message: " + message);
+        }
+        return new CacheInvalidationMessage(parts[0], Type.valueOf(parts[1]), parts[2], parts[3]);
+    }
+}
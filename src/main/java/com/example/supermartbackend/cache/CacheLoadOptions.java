@@ -0,0 +1,44 @@
+package com.example.supermartbackend.cache;
+
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * How {@link TwoLevelCache} loads missing entries. Loads are always single-flight per key on a node;
+ * with a {@link LoadLock} they are single-flight across nodes too. Caches listed in
+ * {@code earlyRefreshTtls} are refreshed in the background shortly before their L2 entry expires,
+ * with the probability rising as expiry nears (XFetch, scaled by {@code earlyRefreshBeta}).
+ */
+@Getter
+public class CacheLoadOptions {
+
+    private final LoadLock loadLock;
+    private final Duration lockTtl;
+    private final Duration lockPollInterval;
+    private final Map<String, Duration> earlyRefreshTtls;
+    private final double earlyRefreshBeta;
+    private final Executor refreshExecutor;
+
+    public CacheLoadOptions(LoadLock loadLock,
+                            Duration lockTtl,
+                            Duration lockPollInterval,
+                            Map<String, Duration> earlyRefreshTtls,
+                            double earlyRefreshBeta,
+                            Executor refreshExecutor) {
+        this.loadLock = loadLock;
+        this.lockTtl = lockTtl;
+        this.lockPollInterval = lockPollInterval;
+        this.earlyRefreshTtls = earlyRefreshTtls;
+        this.earlyRefreshBeta = earlyRefreshBeta;
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    // Single-flight within this node only, no early refresh
+    public static CacheLoadOptions localOnly() {
+        return new CacheLoadOptions(null, Duration.ZERO, Duration.ZERO, Collections.emptyMap(), 0, Runnable::run);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.supermartbackend.cache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Operation counters and load latencies of one cache, recorded by the cache itself.
+ * Counts run since startup; pollers derive rates from the difference between two reads.
+ */
+public class CacheMetrics {
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder clears = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LatencyHistogram loadLatency = new LatencyHistogram();
+
+    public void hit() {
+        hits.increment();
+    }
+
+    public void miss() {
+        misses.increment();
+    }
+
+    public void put() {
+        puts.increment();
+    }
+
+    public void evicted(long keys) {
+        evictions.add(keys);
+    }
+
+    public void cleared() {
+        clears.increment();
+    }
+
+    public void loaded(long nanos) {
+        loadLatency.record(nanos / 1_000);
+    }
+
+    public void loadFailed() {
+        loadFailures.increment();
+    }
+
+    public CacheStats snapshot(String name) {
+        return new CacheStats(name, hits.sum(), misses.sum(), puts.sum(), evictions.sum(), clears.sum(),
+                loadLatency.getCount(), loadFailures.sum(), loadLatency.getMeanMicros(),
+                loadLatency.percentileMicros(50), loadLatency.percentileMicros(95),
+                loadLatency.percentileMicros(99), loadLatency.getMaxMicros());
+    }
+}
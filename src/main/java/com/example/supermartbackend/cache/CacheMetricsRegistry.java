@@ -0,0 +1,22 @@
+package com.example.supermartbackend.cache;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// One CacheMetrics per cache name, shared by whichever cache implementation serves that name
+public class CacheMetricsRegistry {
+
+    private final ConcurrentMap<String, CacheMetrics> metrics = new ConcurrentHashMap<>();
+
+    public CacheMetrics forCache(String name) {
+        return metrics.computeIfAbsent(name, cacheName -> new CacheMetrics());
+    }
+
+    public Map<String, CacheStats> snapshot() {
+        Map<String, CacheStats> stats = new TreeMap<>();
+        metrics.forEach((name, cacheMetrics) -> stats.put(name, cacheMetrics.snapshot(name)));
+        return stats;
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.supermartbackend.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class CacheStats {
+
+    private final String name;
+    private final long hits;
+    private final long misses;
+    private final long puts;
+    private final long evictions;
+    private final long clears;
+    private final long loads;
+    private final long loadFailures;
+    private final double loadMeanMicros;
+    private final long loadP50Micros;
+    private final long loadP95Micros;
+    private final long loadP99Micros;
+    private final long loadMaxMicros;
+
+    public double getHitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.supermartbackend.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class CircuitBreakerStats {
+
+    private final RedisCircuitBreaker.State state;
+    private final int consecutiveFailures;
+    private final long stateAgeMs;
+    private final long opens;
+    private final long calls;
+    private final long failures;
+    private final long slowCalls;
+    private final long rejectedCalls;
+    private final long callP50Micros;
+    private final long callP99Micros;
+    private final long callMaxMicros;
+}
@@ -0,0 +1,77 @@
+package com.example.supermartbackend.cache;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+class CompactInput {
+
+    private final byte[] bytes;
+    private int position;
+
+    CompactInput(byte[] bytes, int offset) {
+        this.bytes = bytes;
+        this.position = offset;
+    }
+
+    int readByte() {
+        return bytes[position++] & 0xFF;
+    }
+
+    long readVarLong() {
+        long zigzag = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = readByte();
+            zigzag |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    String readString() {
+        int length = (int) readVarLong();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    Long readLong() {
+        return readPresence() ? readVarLong() : null;
+    }
+
+    Integer readInteger() {
+        return readPresence() ? (int) readVarLong() : null;
+    }
+
+    BigDecimal readDecimal() {
+        if (!readPresence()) {
+            return null;
+        }
+        int scale = (int) readVarLong();
+        int length = (int) readVarLong();
+        byte[] unscaled = new byte[length];
+        System.arraycopy(bytes, position, unscaled, 0, length);
+        position += length;
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    LocalDateTime readDateTime() {
+        if (!readPresence()) {
+            return null;
+        }
+        long epochSecond = readVarLong();
+        int nano = (int) readVarLong();
+        return LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC);
+    }
+
+    private boolean readPresence() {
+        return readByte() != 0;
+    }
+}
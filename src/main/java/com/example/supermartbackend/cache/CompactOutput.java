@@ -0,0 +1,90 @@
+package com.example.supermartbackend.cache;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+// Variable length primitives for the compact cache format; every nullable field costs one byte when null
+class CompactOutput {
+
+    // Unsynchronized growable buffer, ByteArrayOutputStream locks on every byte
+    private byte[] bytes = new byte[256];
+    private int size;
+
+    void writeByte(int value) {
+        ensureCapacity(1);
+        bytes[size++] = (byte) value;
+    }
+
+    void writeVarLong(long value) {
+        // Zigzag, so small negative numbers stay short too
+        long zigzag = (value << 1) ^ (value >> 63);
+        ensureCapacity(10);
+        while ((zigzag & ~0x7FL) != 0) {
+            bytes[size++] = (byte) ((zigzag & 0x7F) | 0x80);
+            zigzag >>>= 7;
+        }
+        bytes[size++] = (byte) zigzag;
+    }
+
+    void writeString(String value) {
+        if (value == null) {
+            writeVarLong(-1);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(utf8.length);
+        writeBytes(utf8);
+    }
+
+    void writeLong(Long value) {
+        if (writePresence(value)) {
+            writeVarLong(value);
+        }
+    }
+
+    void writeInteger(Integer value) {
+        if (writePresence(value)) {
+            writeVarLong(value);
+        }
+    }
+
+    void writeDecimal(BigDecimal value) {
+        if (writePresence(value)) {
+            writeVarLong(value.scale());
+            byte[] unscaled = value.unscaledValue().toByteArray();
+            writeVarLong(unscaled.length);
+            writeBytes(unscaled);
+        }
+    }
+
+    void writeDateTime(LocalDateTime value) {
+        if (writePresence(value)) {
+            writeVarLong(value.toEpochSecond(ZoneOffset.UTC));
+            writeVarLong(value.getNano());
+        }
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(bytes, size);
+    }
+
+    private boolean writePresence(Object value) {
+        writeByte(value != null ? 1 : 0);
+        return value != null;
+    }
+
+    private void writeBytes(byte[] value) {
+        ensureCapacity(value.length);
+        System.arraycopy(value, 0, bytes, size, value.length);
+        size += value.length;
+    }
+
+    private void ensureCapacity(int additional) {
+        if (size + additional > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + additional));
+        }
+    }
+}
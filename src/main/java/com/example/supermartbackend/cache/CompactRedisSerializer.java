@@ -0,0 +1,318 @@
+package com.example.supermartbackend.cache;
+
+import com.example.supermartbackend.dto.AdminProductResponse;
+import com.example.supermartbackend.dto.CatalogProduct;
+import com.example.supermartbackend.dto.OrderResponse;
+import com.example.supermartbackend.dto.OrderSnapshot;
+import com.example.supermartbackend.dto.ProductResponse;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Binary cache value format for the cached DTOs. Registered types are written field by field
+ * without names or class hints; anything else falls back to the given JSON serializer, so every
+ * value stays cacheable. Values larger than the compression threshold are gzipped.
+ * The first byte tells the formats apart, and JSON written before this serializer still reads back.
+ */
+public class CompactRedisSerializer implements RedisSerializer<Object> {
+
+    private static final int FORMAT_COMPACT = 0x01;
+    private static final int FORMAT_JSON = 0x02;
+    private static final int FLAG_GZIP = 0x80;
+
+    private static final int TAG_NULL = 0;
+    private static final int TAG_STRING = 1;
+    private static final int TAG_INTEGER = 2;
+    private static final int TAG_LONG = 3;
+    private static final int TAG_BOOLEAN = 4;
+    private static final int TAG_DECIMAL = 5;
+    private static final int TAG_DATE_TIME = 6;
+    private static final int TAG_LIST = 7;
+    private static final int TAG_OBJECT = 8;
+
+    // Type ids are part of the stored format: never reuse or renumber one, only append
+    private static final Map<Class<?>, TypeCodec> CODECS_BY_TYPE = new HashMap<>();
+    private static final Map<Integer, TypeCodec> CODECS_BY_ID = new HashMap<>();
+
+    static {
+        register(1, ProductResponse.class, (product, out) -> {
+            out.writeLong(product.getId());
+            out.writeString(product.getName());
+            out.writeString(product.getDescription());
+            out.writeDecimal(product.getRetailPrice());
+            out.writeInteger(product.getQuantity());
+            out.writeDateTime(product.getCreatedAt());
+            out.writeDateTime(product.getUpdatedAt());
+        }, in -> new ProductResponse(in.readLong(), in.readString(), in.readString(), in.readDecimal(),
+                in.readInteger(), in.readDateTime(), in.readDateTime()));
+
+        register(2, AdminProductResponse.class, (product, out) -> {
+            out.writeLong(product.getId());
+            out.writeString(product.getName());
+            out.writeString(product.getDescription());
+            out.writeDecimal(product.getWholesalePrice());
+            out.writeDecimal(product.getRetailPrice());
+            out.writeInteger(product.getQuantity());
+            out.writeDateTime(product.getCreatedAt());
+            out.writeDateTime(product.getUpdatedAt());
+        }, in -> new AdminProductResponse(in.readLong(), in.readString(), in.readString(), in.readDecimal(),
+                in.readDecimal(), in.readInteger(), in.readDateTime(), in.readDateTime()));
+
+        register(3, CatalogProduct.class, (product, out) -> {
+            out.writeLong(product.getId());
+            out.writeString(product.getName());
+            out.writeString(product.getDescription());
+            out.writeDecimal(product.getRetailPrice());
+            out.writeDateTime(product.getCreatedAt());
+            out.writeDateTime(product.getUpdatedAt());
+        }, in -> new CatalogProduct(in.readLong(), in.readString(), in.readString(), in.readDecimal(),
+                in.readDateTime(), in.readDateTime()));
+
+        register(4, OrderResponse.class, (order, out) -> {
+            out.writeLong(order.getId());
+            out.writeString(order.getStatus());
+            out.writeDecimal(order.getTotalAmount());
+            out.writeVarLong(order.getItems().size());
+            for (OrderResponse.OrderItemResponse item : order.getItems()) {
+                out.writeLong(item.getProductId());
+                out.writeString(item.getProductName());
+                out.writeString(item.getProductDescription());
+                out.writeInteger(item.getQuantity());
+                out.writeDecimal(item.getPrice());
+                out.writeDecimal(item.getSubtotal());
+            }
+            out.writeDateTime(order.getCreatedAt());
+            out.writeDateTime(order.getUpdatedAt());
+            out.writeString(order.getRejectionReason());
+        }, in -> {
+            Long id = in.readLong();
+            String status = in.readString();
+            BigDecimal totalAmount = in.readDecimal();
+            int itemCount = (int) in.readVarLong();
+            List<OrderResponse.OrderItemResponse> items = new ArrayList<>(itemCount);
+            for (int i = 0; i < itemCount; i++) {
+                items.add(new OrderResponse.OrderItemResponse(in.readLong(), in.readString(), in.readString(),
+                        in.readInteger(), in.readDecimal(), in.readDecimal()));
+            }
+            return new OrderResponse(id, status, totalAmount, items, in.readDateTime(), in.readDateTime(), in.readString());
+        });
+
+        register(5, CacheEntry.class, (entry, out) -> {
+            writeValue(entry.getValue(), out);
+            out.writeVarLong(entry.getComputeMillis());
+            out.writeVarLong(entry.getExpiresAtMillis());
+        }, in -> new CacheEntry(readValue(in), in.readVarLong(), in.readVarLong()));
+
+        register(6, OrderSnapshot.class, (snapshot, out) -> {
+            out.writeString(snapshot.getUsername());
+            writeValue(snapshot.getOrder(), out);
+        }, in -> new OrderSnapshot(in.readString(), (OrderResponse) readValue(in)));
+    }
+
+    private final RedisSerializer<Object> fallback;
+    private final int compressionThreshold;
+
+    // A threshold of 0 or less disables compression
+    public CompactRedisSerializer(RedisSerializer<Object> fallback, int compressionThreshold) {
+        this.fallback = fallback;
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+
+        int format;
+        byte[] payload;
+        try {
+            CompactOutput out = new CompactOutput();
+            writeValue(value, out);
+            format = FORMAT_COMPACT;
+            payload = out.toByteArray();
+        } catch (UnsupportedTypeException e) {
+            format = FORMAT_JSON;
+            payload = fallback.serialize(value);
+        }
+
+        if (compressionThreshold > 0 && payload.length > compressionThreshold) {
+            format |= FLAG_GZIP;
+            payload = gzip(payload);
+        }
+
+        byte[] bytes = new byte[payload.length + 1];
+        bytes[0] = (byte) format;
+        System.arraycopy(payload, 0, bytes, 1, payload.length);
+        return bytes;
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+
+        int header = bytes[0] & 0xFF;
+        int format = header & ~FLAG_GZIP;
+        if (format != FORMAT_COMPACT && format != FORMAT_JSON) {
+            // Written by the JSON serializer before this format was introduced
+            return fallback.deserialize(bytes);
+        }
+
+        byte[] payload = (header & FLAG_GZIP) != 0 ? gunzip(bytes, 1) : copyFrom(bytes, 1);
+        if (format == FORMAT_JSON) {
+            return fallback.deserialize(payload);
+        }
+        try {
+            return readValue(new CompactInput(payload, 0));
+        } catch (RuntimeException e) {
+            throw new SerializationException("Could not read compact cache value", e);
+        }
+    }
+
+    private static void writeValue(Object value, CompactOutput out) {
+        if (value == null) {
+            out.writeByte(TAG_NULL);
+        } else if (value instanceof String) {
+            out.writeByte(TAG_STRING);
+            out.writeString((String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(TAG_INTEGER);
+            out.writeVarLong((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(TAG_LONG);
+            out.writeVarLong((Long) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(TAG_BOOLEAN);
+            out.writeByte((Boolean) value ? 1 : 0);
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(TAG_DECIMAL);
+            out.writeDecimal((BigDecimal) value);
+        } else if (value instanceof LocalDateTime) {
+            out.writeByte(TAG_DATE_TIME);
+            out.writeDateTime((LocalDateTime) value);
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            out.writeByte(TAG_LIST);
+            out.writeVarLong(list.size());
+            for (Object element : list) {
+                writeValue(element, out);
+            }
+        } else {
+            TypeCodec codec = CODECS_BY_TYPE.get(value.getClass());
+            if (codec == null) {
+                throw new UnsupportedTypeException();
+            }
+            out.writeByte(TAG_OBJECT);
+            out.writeVarLong(codec.id);
+            codec.writer.accept(value, out);
+        }
+    }
+
+    private static Object readValue(CompactInput in) {
+        int tag = in.readByte();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_STRING:
+                return in.readString();
+            case TAG_INTEGER:
+                return (int) in.readVarLong();
+            case TAG_LONG:
+                return in.readVarLong();
+            case TAG_BOOLEAN:
+                return in.readByte() != 0;
+            case TAG_DECIMAL:
+                return in.readDecimal();
+            case TAG_DATE_TIME:
+                return in.readDateTime();
+            case TAG_LIST:
+                int size = (int) in.readVarLong();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            case TAG_OBJECT:
+                int typeId = (int) in.readVarLong();
+                TypeCodec codec = CODECS_BY_ID.get(typeId);
+                if (codec == null) {
+                    throw new IllegalStateException("Unknown compact type id " + typeId);
+                }
+                return codec.reader.apply(in);
+            default:
+                throw new IllegalStateException("Unknown compact value tag " + tag);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void register(int id, Class<T> type, BiConsumer<T, CompactOutput> writer, Function<CompactInput, T> reader) {
+        TypeCodec codec = new TypeCodec(id, (BiConsumer<Object, CompactOutput>) writer, (Function<CompactInput, Object>) reader);
+        CODECS_BY_TYPE.put(type, codec);
+        CODECS_BY_ID.put(id, codec);
+    }
+
+    private static byte[] gzip(byte[] payload) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(payload.length / 2);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(payload);
+        } catch (IOException e) {
+            throw new SerializationException("Could not compress cache value", e);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] bytes, int offset) {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(bytes.length * 4);
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(bytes, offset, bytes.length - offset))) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = gzip.read(buffer)) != -1) {
+                payload.write(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            throw new SerializationException("Could not decompress cache value", e);
+        }
+        return payload.toByteArray();
+    }
+
+    private static byte[] copyFrom(byte[] bytes, int offset) {
+        byte[] copy = new byte[bytes.length - offset];
+        System.arraycopy(bytes, offset, copy, 0, copy.length);
+        return copy;
+    }
+
+    private static final class TypeCodec {
+        private final int id;
+        private final BiConsumer<Object, CompactOutput> writer;
+        private final Function<CompactInput, Object> reader;
+
+        private TypeCodec(int id, BiConsumer<Object, CompactOutput> writer, Function<CompactInput, Object> reader) {
+            this.id = id;
+            this.writer = writer;
+            this.reader = reader;
+        }
+    }
+
+    // Signals a value the compact format cannot represent; the whole value then goes to the fallback
+    private static final class UnsupportedTypeException extends RuntimeException {
+        private UnsupportedTypeException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.supermartbackend.cache;
+
+import org.springframework.cache.interceptor.KeyGenerator;
+
+import java.lang.reflect.Method;
+
+/**
+ * Builds {@code prefix + first argument} keys, e.g. {@code top-popular-10}, for methods whose only
+ * argument is a count or id. Keys for small counts are built once up front, so the usual
+ * top-N lookups allocate nothing; a method without arguments gets the bare prefix.
+ */
+public class CountKeyGenerator implements KeyGenerator {
+
+    private static final int PRECOMPUTED_COUNTS = 128;
+
+    private final String prefix;
+    private final String[] precomputed = new String[PRECOMPUTED_COUNTS];
+
+    public CountKeyGenerator(String prefix) {
+        this.prefix = prefix;
+        for (int count = 0; count < PRECOMPUTED_COUNTS; count++) {
+            precomputed[count] = prefix + count;
+        }
+    }
+
+    @Override
+    public Object generate(Object target, Method method, Object... params) {
+        if (params.length == 0) {
+            return prefix;
+        }
+        Object param = params[0];
+        if (param instanceof Integer) {
+            int count = (Integer) param;
+            if (count >= 0 && count < PRECOMPUTED_COUNTS) {
+                return precomputed[count];
+            }
+        }
+        return prefix + param;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.supermartbackend.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request counts per key over a sliding window, kept as a ring of time buckets so old requests
+ * drop out a bucket at a time without any cleanup thread. Each bucket holds a bounded number of
+ * keys; once full, keys first seen in that bucket are not counted.
+ */
+public class HotKeyWindow {
+
+    private final long bucketMillis;
+    private final int maxKeysPerBucket;
+    private final AtomicReferenceArray<Bucket> buckets;
+
+    public HotKeyWindow(Duration window, int bucketCount, int maxKeysPerBucket) {
+        this.bucketMillis = Math.max(1, window.toMillis() / bucketCount);
+        this.maxKeysPerBucket = maxKeysPerBucket;
+        this.buckets = new AtomicReferenceArray<>(bucketCount);
+    }
+
+    public void record(String key) {
+        record(key, System.currentTimeMillis());
+    }
+
+    // The most requested keys within the window with their counts, most requested first
+    public Map<String, Long> top(int limit) {
+        return top(limit, System.currentTimeMillis());
+    }
+
+    void record(String key, long now) {
+        Bucket bucket = currentBucket(now / bucketMillis);
+        LongAdder count = bucket.counts.get(key);
+        if (count == null) {
+            if (bucket.counts.size() >= maxKeysPerBucket) {
+                return;
+            }
+            count = bucket.counts.computeIfAbsent(key, k -> new LongAdder());
+        }
+        count.increment();
+    }
+
+    Map<String, Long> top(int limit, long now) {
+        long currentEpoch = now / bucketMillis;
+        Map<String, Long> totals = new HashMap<>();
+        for (int i = 0; i < buckets.length(); i++) {
+            Bucket bucket = buckets.get(i);
+            if (bucket != null && bucket.epoch > currentEpoch - buckets.length() && bucket.epoch <= currentEpoch) {
+                bucket.counts.forEach((key, count) -> totals.merge(key, count.sum(), Long::sum));
+            }
+        }
+
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(totals.entrySet());
+        entries.sort(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+        Map<String, Long> top = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : entries.subList(0, Math.min(limit, entries.size()))) {
+            top.put(entry.getKey(), entry.getValue());
+        }
+        return top;
+    }
+
+    private Bucket currentBucket(long epoch) {
+        int index = (int) (epoch % buckets.length());
+        while (true) {
+            Bucket bucket = buckets.get(index);
+            if (bucket != null && bucket.epoch >= epoch) {
+                // A newer bucket means the clock moved on while this thread was recording
+                return bucket;
+            }
+            // The slot still holds a bucket from a previous turn of the ring, start it over
+            Bucket fresh = new Bucket(epoch);
+            if (buckets.compareAndSet(index, bucket, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    private static final class Bucket {
+        private final long epoch;
+        private final ConcurrentMap<String, LongAdder> counts = new ConcurrentHashMap<>();
+
+        private Bucket(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.supermartbackend.cache;
+
+import org.springframework.cache.Cache;
+
+import java.util.Collection;
+
+// Removes the entries of the given keys from a shared cache, returning how many of them were present
+@FunctionalInterface
+public interface KeyEvictor {
+
+    long evictKeys(Cache cache, Collection<?> keys);
+}
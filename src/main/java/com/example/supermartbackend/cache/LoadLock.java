@@ -0,0 +1,12 @@
+package com.example.supermartbackend.cache;
+
+import java.time.Duration;
+
+// Short lived lock that lets one node at a time load a missing cache entry
+public interface LoadLock {
+
+    // Returns a token when the lock was acquired, or null when another node holds it
+    String tryAcquire(String lockKey, Duration ttl);
+
+    void release(String lockKey, String token);
+}
@@ -0,0 +1,18 @@
+package com.example.supermartbackend.cache;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+// Size and TTL bound of a node local cache
+@Getter
+public class LocalCacheSpec {
+
+    private final long maximumSize;
+    private final Duration ttl;
+
+    public LocalCacheSpec(long maximumSize, Duration ttl) {
+        this.maximumSize = maximumSize;
+        this.ttl = ttl;
+    }
+}
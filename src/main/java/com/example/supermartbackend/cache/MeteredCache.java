@@ -0,0 +1,142 @@
+package com.example.supermartbackend.cache;
+
+import org.springframework.cache.Cache;
+
+import java.util.Collection;
+import java.util.concurrent.Callable;
+
+/**
+ * Records {@link CacheMetrics} around a plain cache. Used when there is no {@link TwoLevelCache},
+ * which records its own.
+ */
+public class MeteredCache implements Cache {
+
+    private final Cache delegate;
+    private final CacheMetrics metrics;
+
+    public MeteredCache(Cache delegate, CacheMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    public Cache getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        return record(delegate.get(key));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper value = get(key);
+        if (value == null) {
+            return null;
+        }
+        Object cached = value.get();
+        if (cached != null && type != null && !type.isInstance(cached)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + cached);
+        }
+        return (T) cached;
+    }
+
+    @Override
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        boolean[] loaded = new boolean[1];
+        T value = delegate.get(key, () -> {
+            loaded[0] = true;
+            long start = System.nanoTime();
+            try {
+                T result = valueLoader.call();
+                metrics.loaded(System.nanoTime() - start);
+                return result;
+            } catch (Exception | Error e) {
+                metrics.loadFailed();
+                throw e;
+            }
+        });
+        if (loaded[0]) {
+            metrics.miss();
+            metrics.put();
+        } else {
+            metrics.hit();
+        }
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        delegate.put(key, value);
+        metrics.put();
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = delegate.putIfAbsent(key, value);
+        if (existing == null) {
+            metrics.put();
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        delegate.evict(key);
+        metrics.evicted(1);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        boolean present = delegate.evictIfPresent(key);
+        if (present) {
+            metrics.evicted(1);
+        }
+        return present;
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+        metrics.cleared();
+    }
+
+    @Override
+    public boolean invalidate() {
+        boolean present = delegate.invalidate();
+        metrics.cleared();
+        return present;
+    }
+
+    public long evictByPrefix(PrefixEvictor prefixEvictor, String keyPrefix) {
+        long evicted = prefixEvictor.evictByPrefix(delegate, keyPrefix);
+        metrics.evicted(evicted);
+        return evicted;
+    }
+
+    public long evictKeys(KeyEvictor keyEvictor, Collection<?> keys) {
+        long evicted = keyEvictor.evictKeys(delegate, keys);
+        metrics.evicted(evicted);
+        return evicted;
+    }
+
+    private ValueWrapper record(ValueWrapper value) {
+        if (value != null) {
+            metrics.hit();
+        } else {
+            metrics.miss();
+        }
+        return value;
+    }
+}
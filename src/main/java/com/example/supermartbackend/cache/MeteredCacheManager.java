@@ -0,0 +1,39 @@
+package com.example.supermartbackend.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// Wraps every cache of a CacheManager in a MeteredCache, for setups without the local cache level
+public class MeteredCacheManager implements CacheManager {
+
+    private final CacheManager delegate;
+    private final CacheMetricsRegistry metricsRegistry;
+    private final ConcurrentMap<String, MeteredCache> caches = new ConcurrentHashMap<>();
+
+    public MeteredCacheManager(CacheManager delegate, CacheMetricsRegistry metricsRegistry) {
+        this.delegate = delegate;
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        MeteredCache cache = caches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        Cache target = delegate.getCache(name);
+        if (target == null) {
+            return null;
+        }
+        return caches.computeIfAbsent(name, cacheName -> new MeteredCache(target, metricsRegistry.forCache(cacheName)));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return delegate.getCacheNames();
+    }
+}
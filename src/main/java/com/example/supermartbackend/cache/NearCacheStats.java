@@ -0,0 +1,40 @@
+package com.example.supermartbackend.cache;
+
+import lombok.Getter;
+
+@Getter
+public class NearCacheStats {
+
+    private final long localHits;
+    private final long remoteHits;
+    private final long misses;
+    private final long localSize;
+    private final long loads;
+    private final long earlyRefreshes;
+
+    public NearCacheStats(long localHits, long remoteHits, long misses, long localSize, long loads, long earlyRefreshes) {
+        this.localHits = localHits;
+        this.remoteHits = remoteHits;
+        this.misses = misses;
+        this.localSize = localSize;
+        this.loads = loads;
+        this.earlyRefreshes = earlyRefreshes;
+    }
+
+    // Share of all lookups answered by L1
+    public double getLocalHitRatio() {
+        long lookups = localHits + remoteHits + misses;
+        return lookups == 0 ? 0 : (double) localHits / lookups;
+    }
+
+    // Share of L1 misses answered by L2
+    public double getRemoteHitRatio() {
+        long lookups = remoteHits + misses;
+        return lookups == 0 ? 0 : (double) remoteHits / lookups;
+    }
+
+    public double getHitRatio() {
+        long lookups = localHits + remoteHits + misses;
+        return lookups == 0 ? 0 : (double) (localHits + remoteHits) / lookups;
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.supermartbackend.cache;
+
+import org.springframework.cache.Cache;
+
+// Removes every entry whose key starts with the prefix from a shared cache, returning how many were removed
+@FunctionalInterface
+public interface PrefixEvictor {
+
+    long evictByPrefix(Cache cache, String keyPrefix);
+}
@@ -0,0 +1,49 @@
+package com.example.supermartbackend.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+@Slf4j
+public class RedisCacheInvalidationBus implements CacheInvalidationBus {
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ChannelTopic topic;
+    private final RedisCircuitBreaker circuitBreaker;
+
+    public RedisCacheInvalidationBus(StringRedisTemplate redisTemplate,
+                                     RedisMessageListenerContainer listenerContainer,
+                                     String channel,
+                                     RedisCircuitBreaker circuitBreaker) {
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.topic = new ChannelTopic(channel);
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    @Override
+    public void publish(CacheInvalidationMessage message) {
+        // Other nodes fall back to their local TTL for this entry, and drop their local caches once Redis is back
+        try {
+            circuitBreaker.run(() -> redisTemplate.convertAndSend(topic.getTopic(), message.encode()), () -> { });
+        } catch (RuntimeException e) {
+            log.warn("Could not broadcast cache invalidation for {}: {}", message.getCacheName(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<CacheInvalidationMessage> listener) {
+        listenerContainer.addMessageListener((message, pattern) -> {
+            try {
+                listener.accept(CacheInvalidationMessage.decode(new String(message.getBody(), StandardCharsets.UTF_8)));
+            } catch (RuntimeException e) {
+                log.warn("Ignoring cache invalidation message: {}", e.getMessage());
+            }
+        }, topic);
+    }
+}
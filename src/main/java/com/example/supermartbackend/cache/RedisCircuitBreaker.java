@@ -0,0 +1,164 @@
+package com.example.supermartbackend.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Guards every call to Redis. After a run of consecutive failures or slow calls the circuit opens and
+ * calls go straight to their fallback, so a Redis outage costs callers nothing instead of a timeout each.
+ * Requests never probe an open circuit; {@link #probe(Supplier)} is called periodically, and once Redis
+ * answers in time the recovery listeners repair what was skipped before the circuit closes again.
+ * Only {@link DataAccessException}s, which Spring Data Redis translates driver errors to, count as failures.
+ */
+@Slf4j
+public class RedisCircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long stateChangedAtNanos = System.nanoTime();
+    private volatile long stateChangedAtMillis = System.currentTimeMillis();
+
+    private final List<Runnable> recoveryListeners = new CopyOnWriteArrayList<>();
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder slowCalls = new LongAdder();
+    private final LongAdder rejectedCalls = new LongAdder();
+    private final LongAdder opens = new LongAdder();
+    private final LatencyHistogram callLatency = new LatencyHistogram();
+
+    public RedisCircuitBreaker(int failureThreshold, Duration slowCallThreshold, Duration openDuration) {
+        this.failureThreshold = failureThreshold;
+        this.slowCallNanos = slowCallThreshold.toNanos();
+        this.openNanos = openDuration.toNanos();
+    }
+
+    public <T> T call(Supplier<T> redisCall, Supplier<T> fallback) {
+        if (state.get() != State.CLOSED) {
+            rejectedCalls.increment();
+            return fallback.get();
+        }
+
+        long start = System.nanoTime();
+        T result;
+        try {
+            result = redisCall.get();
+        } catch (DataAccessException e) {
+            recordFailure(System.nanoTime() - start, e);
+            return fallback.get();
+        }
+        recordSuccess(System.nanoTime() - start);
+        return result;
+    }
+
+    public void run(Runnable redisCall, Runnable fallback) {
+        call(() -> {
+            redisCall.run();
+            return null;
+        }, () -> {
+            fallback.run();
+            return null;
+        });
+    }
+
+    public boolean isClosed() {
+        return state.get() == State.CLOSED;
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    // Runs on the probing thread before the circuit closes, so callers only see Redis once it is repaired
+    public void onRecovery(Runnable listener) {
+        recoveryListeners.add(listener);
+    }
+
+    // Pings Redis if the circuit has been open long enough, and closes it when the ping and the repairs succeed
+    public void probe(Supplier<?> ping) {
+        if (state.get() != State.OPEN || System.nanoTime() - stateChangedAtNanos < openNanos
+                || !transition(State.OPEN, State.HALF_OPEN)) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            ping.get();
+            if (System.nanoTime() - start > slowCallNanos) {
+                throw new IllegalStateException("Ping took " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            }
+            recoveryListeners.forEach(Runnable::run);
+        } catch (RuntimeException e) {
+            log.warn("Redis is still unavailable, keeping the circuit open: {}", e.getMessage());
+            transition(State.HALF_OPEN, State.OPEN);
+            return;
+        }
+
+        consecutiveFailures.set(0);
+        transition(State.HALF_OPEN, State.CLOSED);
+        log.info("Redis is reachable again, circuit closed");
+        // Writes that fell back between the repairs and closing the circuit
+        try {
+            recoveryListeners.forEach(Runnable::run);
+        } catch (RuntimeException e) {
+            log.warn("Could not repair the caches after closing the circuit: {}", e.getMessage());
+        }
+    }
+
+    public CircuitBreakerStats getStats() {
+        return new CircuitBreakerStats(state.get(), consecutiveFailures.get(), System.currentTimeMillis() - stateChangedAtMillis,
+                opens.sum(), calls.sum(), failures.sum(), slowCalls.sum(), rejectedCalls.sum(),
+                callLatency.percentileMicros(50), callLatency.percentileMicros(99), callLatency.getMaxMicros());
+    }
+
+    private void recordSuccess(long nanos) {
+        calls.increment();
+        callLatency.record(nanos / 1_000);
+        if (nanos > slowCallNanos) {
+            // A latency spike trips the circuit like an error does, the timeouts are usually next
+            slowCalls.increment();
+            countFailure();
+        } else {
+            consecutiveFailures.set(0);
+        }
+    }
+
+    private void recordFailure(long nanos, DataAccessException e) {
+        calls.increment();
+        failures.increment();
+        callLatency.record(nanos / 1_000);
+        log.debug("Redis call failed: {}", e.getMessage());
+        countFailure();
+    }
+
+    private void countFailure() {
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold && transition(State.CLOSED, State.OPEN)) {
+            opens.increment();
+            log.warn("Opened the Redis circuit after {} consecutive failed or slow calls, serving without Redis",
+                    failureThreshold);
+        }
+    }
+
+    private boolean transition(State from, State to) {
+        if (!state.compareAndSet(from, to)) {
+            return false;
+        }
+        stateChangedAtNanos = System.nanoTime();
+        stateChangedAtMillis = System.currentTimeMillis();
+        return true;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.supermartbackend.cache;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.UUID;
+
+// SET NX PX lock; only the holder's token can release it, so an expired holder cannot free a newer lock.
+// Without Redis every node loads for itself, which is what the lock otherwise only saves.
+public class RedisLoadLock implements LoadLock {
+
+    private static final String KEY_PREFIX = "cache-lock::";
+
+    private static final String LOCAL_TOKEN = "";
+
+    private static final RedisScript<Long> RELEASE = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0", Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisCircuitBreaker circuitBreaker;
+
+    public RedisLoadLock(StringRedisTemplate redisTemplate, RedisCircuitBreaker circuitBreaker) {
+        this.redisTemplate = redisTemplate;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    @Override
+    public String tryAcquire(String lockKey, Duration ttl) {
+        String token = UUID.randomUUID().toString();
+        return circuitBreaker.call(() -> {
+            Boolean acquired = redisTemplate.opsForValue().setIfAbsent(KEY_PREFIX + lockKey, token, ttl);
+            return Boolean.TRUE.equals(acquired) ? token : null;
+        }, () -> LOCAL_TOKEN);
+    }
+
+    @Override
+    public void release(String lockKey, String token) {
+        if (LOCAL_TOKEN.equals(token)) {
+            return;
+        }
+        // Left to expire if Redis cannot be reached
+        circuitBreaker.run(() -> redisTemplate.execute(RELEASE, Collections.singletonList(KEY_PREFIX + lockKey), token), () -> { });
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.supermartbackend.cache;
+
+import org.springframework.cache.Cache;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runs every operation on a Redis backed cache through the {@link RedisCircuitBreaker}. While Redis is
+ * unavailable reads miss, so callers load from the database, and writes are skipped. A skipped write can
+ * leave an older value in Redis, so its key is remembered and evicted before the circuit closes again;
+ * past {@code maxPendingKeys} the whole cache is cleared instead.
+ */
+public class ResilientCache implements Cache {
+
+    private final Cache delegate;
+    private final RedisCircuitBreaker circuitBreaker;
+    private final int maxPendingKeys;
+
+    private final Set<Object> pendingKeys = ConcurrentHashMap.newKeySet();
+    private final Map<String, PrefixEvictor> pendingPrefixes = new ConcurrentHashMap<>();
+    private volatile boolean pendingClear;
+
+    public ResilientCache(Cache delegate, RedisCircuitBreaker circuitBreaker, int maxPendingKeys) {
+        this.delegate = delegate;
+        this.circuitBreaker = circuitBreaker;
+        this.maxPendingKeys = maxPendingKeys;
+        circuitBreaker.onRecovery(this::repair);
+    }
+
+    // Unwraps resilient caches for the evictor and remembers prefixes it could not evict
+    public static PrefixEvictor guard(PrefixEvictor prefixEvictor) {
+        return (cache, keyPrefix) -> cache instanceof ResilientCache
+                ? ((ResilientCache) cache).evictByPrefix(prefixEvictor, keyPrefix)
+                : prefixEvictor.evictByPrefix(cache, keyPrefix);
+    }
+
+    // Unwraps resilient caches for the evictor and remembers keys it could not evict
+    public static KeyEvictor guardKeys(KeyEvictor keyEvictor) {
+        return (cache, keys) -> cache instanceof ResilientCache
+                ? ((ResilientCache) cache).evictKeys(keyEvictor, keys)
+                : keyEvictor.evictKeys(cache, keys);
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    public Cache getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        return circuitBreaker.call(() -> delegate.get(key), () -> null);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper value = get(key);
+        if (value == null) {
+            return null;
+        }
+        Object cached = value.get();
+        if (cached != null && type != null && !type.isInstance(cached)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + cached);
+        }
+        return (T) cached;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper value = get(key);
+        if (value != null) {
+            return (T) value.get();
+        }
+        T loaded;
+        try {
+            loaded = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        put(key, loaded);
+        return loaded;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        circuitBreaker.run(() -> delegate.put(key, value), () -> markStale(key));
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        return circuitBreaker.call(() -> delegate.putIfAbsent(key, value), () -> {
+            markStale(key);
+            return null;
+        });
+    }
+
+    @Override
+    public void evict(Object key) {
+        circuitBreaker.run(() -> delegate.evict(key), () -> markStale(key));
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        return circuitBreaker.call(() -> delegate.evictIfPresent(key), () -> {
+            markStale(key);
+            return false;
+        });
+    }
+
+    @Override
+    public void clear() {
+        circuitBreaker.run(delegate::clear, () -> pendingClear = true);
+    }
+
+    @Override
+    public boolean invalidate() {
+        return circuitBreaker.call(delegate::invalidate, () -> {
+            pendingClear = true;
+            return false;
+        });
+    }
+
+    public long evictByPrefix(PrefixEvictor prefixEvictor, String keyPrefix) {
+        return circuitBreaker.call(() -> prefixEvictor.evictByPrefix(delegate, keyPrefix), () -> {
+            pendingPrefixes.put(keyPrefix, prefixEvictor);
+            return 0L;
+        });
+    }
+
+    public long evictKeys(KeyEvictor keyEvictor, Collection<?> keys) {
+        return circuitBreaker.call(() -> keyEvictor.evictKeys(delegate, keys), () -> {
+            keys.forEach(this::markStale);
+            return 0L;
+        });
+    }
+
+    int getPendingKeyCount() {
+        return pendingKeys.size();
+    }
+
+    private void markStale(Object key) {
+        if (pendingKeys.size() >= maxPendingKeys) {
+            pendingClear = true;
+            pendingKeys.clear();
+        } else {
+            pendingKeys.add(key);
+        }
+    }
+
+    // Called with Redis reachable again; anything it cannot repair keeps the circuit open
+    private void repair() {
+        if (pendingClear) {
+            pendingClear = false;
+            pendingKeys.clear();
+            pendingPrefixes.clear();
+            try {
+                delegate.clear();
+            } catch (RuntimeException e) {
+                pendingClear = true;
+                throw e;
+            }
+            return;
+        }
+        for (Map.Entry<String, PrefixEvictor> prefix : pendingPrefixes.entrySet()) {
+            prefix.getValue().evictByPrefix(delegate, prefix.getKey());
+            pendingPrefixes.remove(prefix.getKey(), prefix.getValue());
+        }
+        for (Object key : pendingKeys) {
+            delegate.evict(key);
+            pendingKeys.remove(key);
+        }
+    }
+}
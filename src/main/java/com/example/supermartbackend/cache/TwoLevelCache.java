@@ -0,0 +1,425 @@
+package com.example.supermartbackend.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A node local Caffeine cache (L1) in front of a shared cache (L2, Redis in production).
+ * Reads go to L1 first and fill it from L2; every write goes to L2 and is broadcast so the other
+ * nodes drop their L1 copy. Values in L1 are shared between callers and must not be mutated.
+ * Broadcast evictions carry the key's string form, so keys must be strings, as all keys here are.
+ * Loads through {@link #get(Object, Callable)} follow the {@link CacheLoadOptions}.
+ */
+@Slf4j
+public class TwoLevelCache implements Cache {
+
+    private final String name;
+    private final com.github.benmanes.caffeine.cache.Cache<Object, CacheEntry> local;
+    private final Cache remote;
+    private final CacheInvalidationBus bus;
+    private final PrefixEvictor prefixEvictor;
+    private final String nodeId;
+    private final CacheLoadOptions loadOptions;
+    private final CacheMetrics metrics;
+
+    // Null when early refresh is disabled for this cache; entries are then stored in L2 as plain values
+    private final Duration earlyRefreshTtl;
+
+    private final ConcurrentMap<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Set<Object> refreshing = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder localHits = new LongAdder();
+    private final LongAdder remoteHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder earlyRefreshes = new LongAdder();
+
+    public TwoLevelCache(String name,
+                         com.github.benmanes.caffeine.cache.Cache<Object, CacheEntry> local,
+                         Cache remote,
+                         CacheInvalidationBus bus,
+                         PrefixEvictor prefixEvictor,
+                         String nodeId,
+                         CacheLoadOptions loadOptions,
+                         CacheMetrics metrics) {
+        this.name = name;
+        this.local = local;
+        this.remote = remote;
+        this.bus = bus;
+        this.prefixEvictor = prefixEvictor;
+        this.nodeId = nodeId;
+        this.loadOptions = loadOptions;
+        this.metrics = metrics;
+        this.earlyRefreshTtl = loadOptions.getEarlyRefreshTtls().get(name);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return remote.getNativeCache();
+    }
+
+    public Cache getRemote() {
+        return remote;
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        CacheEntry entry = lookup(key);
+        return entry != null ? new SimpleValueWrapper(entry.getValue()) : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper value = get(key);
+        if (value == null) {
+            return null;
+        }
+        Object cached = value.get();
+        if (cached != null && type != null && !type.isInstance(cached)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + cached);
+        }
+        return (T) cached;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        CacheEntry entry = lookup(key);
+        if (entry != null) {
+            if (shouldRefreshEarly(entry)) {
+                refreshEarly(key, valueLoader);
+            }
+            return (T) entry.getValue();
+        }
+
+        // Single-flight: concurrent misses for the same key on this node wait for one load
+        CompletableFuture<Object> load = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, load);
+        if (running != null) {
+            return (T) await(running);
+        }
+
+        try {
+            // A load may have finished between the lookup and claiming the key
+            entry = peek(key);
+            Object value = entry != null ? entry.getValue() : loadAcrossNodes(key, valueLoader);
+            load.complete(value);
+            return (T) value;
+        } catch (RuntimeException | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, load);
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        store(key, value, 0);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        CacheEntry entry = newEntry(value, 0);
+        ValueWrapper existing = remote.putIfAbsent(key, toRemote(entry));
+        if (existing != null) {
+            CacheEntry existingEntry = fromRemote(existing.get());
+            local.put(key, existingEntry);
+            return new SimpleValueWrapper(existingEntry.getValue());
+        }
+        local.put(key, entry);
+        metrics.put();
+        publish(CacheInvalidationMessage.Type.EVICT, key);
+        return null;
+    }
+
+    @Override
+    public void evict(Object key) {
+        remote.evict(key);
+        local.invalidate(key);
+        metrics.evicted(1);
+        publish(CacheInvalidationMessage.Type.EVICT, key);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        boolean present = remote.evictIfPresent(key);
+        local.invalidate(key);
+        if (present) {
+            metrics.evicted(1);
+        }
+        publish(CacheInvalidationMessage.Type.EVICT, key);
+        return present;
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        local.invalidateAll();
+        metrics.cleared();
+        publish(CacheInvalidationMessage.Type.CLEAR, null);
+    }
+
+    @Override
+    public boolean invalidate() {
+        boolean present = remote.invalidate();
+        local.invalidateAll();
+        metrics.cleared();
+        publish(CacheInvalidationMessage.Type.CLEAR, null);
+        return present;
+    }
+
+    public long evictByPrefix(String keyPrefix) {
+        long evicted = prefixEvictor.evictByPrefix(remote, keyPrefix);
+        evictLocalByPrefix(keyPrefix);
+        metrics.evicted(evicted);
+        publish(CacheInvalidationMessage.Type.EVICT_PREFIX, keyPrefix);
+        return evicted;
+    }
+
+    public long evictKeys(KeyEvictor keyEvictor, Collection<?> keys) {
+        long evicted = keyEvictor.evictKeys(remote, keys);
+        local.invalidateAll(keys);
+        metrics.evicted(evicted);
+        keys.forEach(key -> publish(CacheInvalidationMessage.Type.EVICT, key));
+        return evicted;
+    }
+
+    // Applies an eviction broadcast by another node to this node's L1 only
+    void onInvalidation(CacheInvalidationMessage message) {
+        switch (message.getType()) {
+            case EVICT:
+                local.invalidate(message.getKey());
+                break;
+            case EVICT_PREFIX:
+                evictLocalByPrefix(message.getKey());
+                break;
+            case CLEAR:
+                local.invalidateAll();
+                break;
+        }
+    }
+
+    // Drops this node's L1 only, e.g. after broadcasts may have been lost
+    void invalidateLocal() {
+        local.invalidateAll();
+    }
+
+    public NearCacheStats getStats() {
+        return new NearCacheStats(localHits.sum(), remoteHits.sum(), misses.sum(), local.estimatedSize(),
+                loads.sum(), earlyRefreshes.sum());
+    }
+
+    private CacheEntry lookup(Object key) {
+        CacheEntry entry = local.getIfPresent(key);
+        if (entry != null) {
+            localHits.increment();
+            metrics.hit();
+            return entry;
+        }
+
+        ValueWrapper value = remote.get(key);
+        if (value != null) {
+            remoteHits.increment();
+            metrics.hit();
+            entry = fromRemote(value.get());
+            local.put(key, entry);
+            return entry;
+        }
+
+        misses.increment();
+        metrics.miss();
+        return null;
+    }
+
+    // Like lookup, without counting towards the hit ratios
+    private CacheEntry peek(Object key) {
+        CacheEntry entry = local.getIfPresent(key);
+        if (entry != null) {
+            return entry;
+        }
+        ValueWrapper value = remote.get(key);
+        if (value != null) {
+            entry = fromRemote(value.get());
+            local.put(key, entry);
+        }
+        return entry;
+    }
+
+    private Object loadAcrossNodes(Object key, Callable<?> valueLoader) {
+        LoadLock loadLock = loadOptions.getLoadLock();
+        if (loadLock == null) {
+            return load(key, valueLoader);
+        }
+
+        String lockKey = lockKey(key);
+        long deadline = System.currentTimeMillis() + loadOptions.getLockTtl().toMillis();
+        while (true) {
+            String token = loadLock.tryAcquire(lockKey, loadOptions.getLockTtl());
+            if (token != null) {
+                try {
+                    // The previous holder may have stored the value just before releasing the lock
+                    ValueWrapper value = remote.get(key);
+                    return value != null ? cacheLocally(key, value) : load(key, valueLoader);
+                } finally {
+                    loadLock.release(lockKey, token);
+                }
+            }
+
+            // Another node is loading this key, wait for its result to appear in L2
+            sleep(loadOptions.getLockPollInterval());
+            ValueWrapper value = remote.get(key);
+            if (value != null) {
+                return cacheLocally(key, value);
+            }
+            if (System.currentTimeMillis() > deadline) {
+                log.warn("Timed out waiting for another node to load {}::{}, loading it here", name, key);
+                return load(key, valueLoader);
+            }
+        }
+    }
+
+    private Object load(Object key, Callable<?> valueLoader) {
+        long start = System.nanoTime();
+        Object value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception e) {
+            metrics.loadFailed();
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        long elapsed = System.nanoTime() - start;
+        loads.increment();
+        metrics.loaded(elapsed);
+        store(key, value, elapsed / 1_000_000);
+        return value;
+    }
+
+    private boolean shouldRefreshEarly(CacheEntry entry) {
+        if (earlyRefreshTtl == null || entry.getExpiresAtMillis() == 0 || entry.getComputeMillis() == 0) {
+            return false;
+        }
+        // XFetch: -ln(u) is rarely large, so refreshes cluster just before expiry and slow loads start earlier
+        double gap = -entry.getComputeMillis() * loadOptions.getEarlyRefreshBeta() * Math.log(ThreadLocalRandom.current().nextDouble());
+        return System.currentTimeMillis() + gap >= entry.getExpiresAtMillis();
+    }
+
+    private void refreshEarly(Object key, Callable<?> valueLoader) {
+        if (!refreshing.add(key)) {
+            return;
+        }
+        try {
+            loadOptions.getRefreshExecutor().execute(() -> {
+                try {
+                    LoadLock loadLock = loadOptions.getLoadLock();
+                    String lockKey = lockKey(key);
+                    String token = loadLock != null ? loadLock.tryAcquire(lockKey, loadOptions.getLockTtl()) : "";
+                    if (token == null) {
+                        // Another node is already refreshing this key
+                        return;
+                    }
+                    try {
+                        load(key, valueLoader);
+                        earlyRefreshes.increment();
+                    } finally {
+                        if (loadLock != null) {
+                            loadLock.release(lockKey, token);
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    log.warn("Early refresh of {}::{} failed: {}", name, key, e.getMessage());
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Refresh pool is saturated, the entry will be reloaded when it expires
+            refreshing.remove(key);
+        }
+    }
+
+    private void store(Object key, Object value, long computeMillis) {
+        CacheEntry entry = newEntry(value, computeMillis);
+        remote.put(key, toRemote(entry));
+        local.put(key, entry);
+        metrics.put();
+        publish(CacheInvalidationMessage.Type.EVICT, key);
+    }
+
+    private Object cacheLocally(Object key, ValueWrapper value) {
+        CacheEntry entry = fromRemote(value.get());
+        local.put(key, entry);
+        return entry.getValue();
+    }
+
+    private CacheEntry newEntry(Object value, long computeMillis) {
+        long expiresAt = earlyRefreshTtl != null ? System.currentTimeMillis() + earlyRefreshTtl.toMillis() : 0;
+        return new CacheEntry(value, computeMillis, expiresAt);
+    }
+
+    private Object toRemote(CacheEntry entry) {
+        return earlyRefreshTtl != null ? entry : entry.getValue();
+    }
+
+    private CacheEntry fromRemote(Object value) {
+        // Entries written before early refresh was enabled are plain values
+        return value instanceof CacheEntry ? (CacheEntry) value : new CacheEntry(value, 0, 0);
+    }
+
+    private Object await(CompletableFuture<Object> running) {
+        try {
+            return running.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a load of " + name, e);
+        }
+    }
+
+    private void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a cache load", e);
+        }
+    }
+
+    private String lockKey(Object key) {
+        return name + "::" + key;
+    }
+
+    private void evictLocalByPrefix(String keyPrefix) {
+        local.asMap().keySet().removeIf(key -> String.valueOf(key).startsWith(keyPrefix));
+    }
+
+    private void publish(CacheInvalidationMessage.Type type, Object key) {
+        bus.publish(new CacheInvalidationMessage(nodeId, type, name, key != null ? String.valueOf(key) : null));
+    }
+}
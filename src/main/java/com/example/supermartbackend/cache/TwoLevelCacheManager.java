@@ -0,0 +1,110 @@
+package com.example.supermartbackend.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Wraps every cache of a shared {@link CacheManager} in a {@link TwoLevelCache} with its own L1
+ * bounds, and applies the evictions other nodes broadcast on the {@link CacheInvalidationBus}.
+ */
+public class TwoLevelCacheManager implements CacheManager {
+
+    private final CacheManager remoteCacheManager;
+    private final Map<String, LocalCacheSpec> localSpecs;
+    private final LocalCacheSpec defaultLocalSpec;
+    private final CacheInvalidationBus bus;
+    private final PrefixEvictor prefixEvictor;
+    private final CacheLoadOptions loadOptions;
+    private final CacheMetricsRegistry metricsRegistry;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final ConcurrentMap<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+
+    public TwoLevelCacheManager(CacheManager remoteCacheManager,
+                                Map<String, LocalCacheSpec> localSpecs,
+                                LocalCacheSpec defaultLocalSpec,
+                                CacheInvalidationBus bus,
+                                PrefixEvictor prefixEvictor) {
+        this(remoteCacheManager, localSpecs, defaultLocalSpec, bus, prefixEvictor, CacheLoadOptions.localOnly(),
+                new CacheMetricsRegistry());
+    }
+
+    public TwoLevelCacheManager(CacheManager remoteCacheManager,
+                                Map<String, LocalCacheSpec> localSpecs,
+                                LocalCacheSpec defaultLocalSpec,
+                                CacheInvalidationBus bus,
+                                PrefixEvictor prefixEvictor,
+                                CacheLoadOptions loadOptions,
+                                CacheMetricsRegistry metricsRegistry) {
+        this.remoteCacheManager = remoteCacheManager;
+        this.localSpecs = localSpecs;
+        this.defaultLocalSpec = defaultLocalSpec;
+        this.bus = bus;
+        this.prefixEvictor = prefixEvictor;
+        this.loadOptions = loadOptions;
+        this.metricsRegistry = metricsRegistry;
+        bus.subscribe(this::onInvalidation);
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        TwoLevelCache cache = caches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        Cache remote = remoteCacheManager.getCache(name);
+        if (remote == null) {
+            return null;
+        }
+        return caches.computeIfAbsent(name, cacheName -> createCache(cacheName, remote));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return remoteCacheManager.getCacheNames();
+    }
+
+    public CacheMetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+
+    // Evictions broadcast while Redis was unreachable never arrived, so local copies may be stale
+    public void invalidateLocalCaches() {
+        caches.values().forEach(TwoLevelCache::invalidateLocal);
+    }
+
+    public Map<String, NearCacheStats> getStats() {
+        Map<String, NearCacheStats> stats = new LinkedHashMap<>();
+        caches.forEach((name, cache) -> stats.put(name, cache.getStats()));
+        return stats;
+    }
+
+    private TwoLevelCache createCache(String name, Cache remote) {
+        LocalCacheSpec spec = localSpecs.getOrDefault(name, defaultLocalSpec);
+        com.github.benmanes.caffeine.cache.Cache<Object, CacheEntry> local = Caffeine.newBuilder()
+                .maximumSize(spec.getMaximumSize())
+                .expireAfterWrite(spec.getTtl())
+                .build();
+        return new TwoLevelCache(name, local, remote, bus, prefixEvictor, nodeId, loadOptions,
+                metricsRegistry.forCache(name));
+    }
+
+    private void onInvalidation(CacheInvalidationMessage message) {
+        if (nodeId.equals(message.getNodeId())) {
+            return;
+        }
+        // A cache this node never used has nothing to drop
+        TwoLevelCache cache = caches.get(message.getCacheName());
+        if (cache != null) {
+            cache.onInvalidation(message);
+        }
+    }
+}
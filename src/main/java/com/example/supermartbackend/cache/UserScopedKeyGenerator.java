@@ -0,0 +1,37 @@
+package com.example.supermartbackend.cache;
+
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.lang.reflect.Method;
+
+/**
+ * Builds {@code prefix + username + '-' + first argument} keys, e.g. {@code recent-alice-5}, from
+ * the current authentication. Cache evictions look these keys up by their {@code prefix + username + '-'}
+ * prefix, so the layout must not change.
+ */
+public class UserScopedKeyGenerator implements KeyGenerator {
+
+    private final String prefix;
+
+    public UserScopedKeyGenerator(String prefix) {
+        this.prefix = prefix;
+    }
+
+    @Override
+    public Object generate(Object target, Method method, Object... params) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null) {
+            throw new IllegalStateException("No authenticated user for a user scoped cache key of " + method.getName());
+        }
+        String username = authentication.getName();
+        StringBuilder key = new StringBuilder(prefix.length() + username.length() + 12)
+                .append(prefix)
+                .append(username);
+        for (Object param : params) {
+            key.append('-').append(param);
+        }
+        return key.toString();
+    }
+}
@@ -1,54 +1,273 @@
 package com.example.supermartbackend.config;
 
+import com.example.supermartbackend.cache.CacheInvalidationBus;
+import com.example.supermartbackend.cache.CacheLoadOptions;
+import com.example.supermartbackend.cache.CacheMetricsRegistry;
+import com.example.supermartbackend.cache.HotKeyWindow;
+import com.example.supermartbackend.cache.CompactRedisSerializer;
+import com.example.supermartbackend.cache.CountKeyGenerator;
+import com.example.supermartbackend.cache.LocalCacheSpec;
+import com.example.supermartbackend.cache.MeteredCacheManager;
+import com.example.supermartbackend.cache.RedisCacheInvalidationBus;
+import com.example.supermartbackend.cache.RedisCircuitBreaker;
+import com.example.supermartbackend.cache.RedisLoadLock;
+import com.example.supermartbackend.cache.ResilientCache;
+import com.example.supermartbackend.cache.ResilientCacheManager;
+import com.example.supermartbackend.cache.TwoLevelCacheManager;
+import com.example.supermartbackend.cache.UserScopedKeyGenerator;
+import com.example.supermartbackend.service.RedisKeyScanner;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.interceptor.KeyGenerator;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutor;
 
 import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Configuration
 @EnableCaching
 public class CacheConfig {
 
+    private static final Duration PRODUCTS_TTL = Duration.ofHours(6);
+    private static final Duration TOP_POPULAR_TTL = Duration.ofMinutes(30);
+
+    @Value("${app.cache.serializer.compact:true}")
+    private boolean compactSerializerEnabled;
+
+    @Value("${app.cache.serializer.compression-threshold-bytes:2048}")
+    private int compressionThresholdBytes;
+
+    @Value("${app.cache.local.enabled:true}")
+    private boolean localCacheEnabled;
+
+    @Value("${app.cache.invalidation-channel:cache-invalidation}")
+    private String invalidationChannel;
+
+    @Value("${app.cache.load-lock.ttl-ms:5000}")
+    private long loadLockTtlMs;
+
+    @Value("${app.cache.load-lock.poll-interval-ms:25}")
+    private long loadLockPollIntervalMs;
+
+    @Value("${app.cache.early-refresh.enabled:true}")
+    private boolean earlyRefreshEnabled;
+
+    @Value("${app.cache.early-refresh.beta:1.0}")
+    private double earlyRefreshBeta;
+
+    @Value("${app.cache.warmup.window-minutes:60}")
+    private long warmupWindowMinutes;
+
+    @Value("${app.cache.warmup.threads:4}")
+    private int warmupThreads;
+
+    @Value("${app.cache.circuit-breaker.failure-threshold:5}")
+    private int circuitFailureThreshold;
+
+    @Value("${app.cache.circuit-breaker.slow-call-ms:250}")
+    private long circuitSlowCallMs;
+
+    @Value("${app.cache.circuit-breaker.open-ms:5000}")
+    private long circuitOpenMs;
+
+    @Value("${app.cache.circuit-breaker.max-pending-keys:10000}")
+    private int circuitMaxPendingKeys;
+
+    @Bean
+    public CacheManager cacheManager(RedisConnectionFactory redisConnectionFactory,
+                                     CacheInvalidationBus cacheInvalidationBus,
+                                     RedisKeyScanner redisKeyScanner,
+                                     ThreadPoolExecutor cacheRefreshExecutor,
+                                     CacheMetricsRegistry cacheMetricsRegistry,
+                                     RedisCircuitBreaker redisCircuitBreaker) {
+        // While Redis is unavailable reads fall through to the local caches, or to the database without them
+        CacheManager redisCacheManager = new ResilientCacheManager(redisCacheManager(redisConnectionFactory),
+                redisCircuitBreaker, circuitMaxPendingKeys);
+        if (!localCacheEnabled) {
+            return new MeteredCacheManager(redisCacheManager, cacheMetricsRegistry);
+        }
+
+        // Node local caches, kept well below the Redis TTLs since other nodes' writes only reach them by broadcast
+        Map<String, LocalCacheSpec> localSpecs = new HashMap<>();
+        localSpecs.put("products", new LocalCacheSpec(10_000, Duration.ofMinutes(5)));
+        localSpecs.put("admin-products", new LocalCacheSpec(1_000, Duration.ofMinutes(1)));
+        localSpecs.put("top-popular-products", new LocalCacheSpec(100, Duration.ofMinutes(1)));
+        localSpecs.put("user-recent-products", new LocalCacheSpec(10_000, Duration.ofSeconds(30)));
+        localSpecs.put("user-frequent-products", new LocalCacheSpec(10_000, Duration.ofSeconds(30)));
+        localSpecs.put("orders", new LocalCacheSpec(10_000, Duration.ofSeconds(30)));
+        localSpecs.put("user-orders", new LocalCacheSpec(10_000, Duration.ofSeconds(30)));
+
+        StringRedisTemplate redisTemplate = new StringRedisTemplate(redisConnectionFactory);
+        redisTemplate.afterPropertiesSet();
+
+        // Expensive aggregates are refreshed in the background shortly before they expire
+        Map<String, Duration> earlyRefreshTtls = new HashMap<>();
+        if (earlyRefreshEnabled) {
+            earlyRefreshTtls.put("products", PRODUCTS_TTL);
+            earlyRefreshTtls.put("top-popular-products", TOP_POPULAR_TTL);
+        }
+        CacheLoadOptions loadOptions = new CacheLoadOptions(
+                new RedisLoadLock(redisTemplate, redisCircuitBreaker),
+                Duration.ofMillis(loadLockTtlMs),
+                Duration.ofMillis(loadLockPollIntervalMs),
+                earlyRefreshTtls,
+                earlyRefreshBeta,
+                // Refreshes run the cached method again, so they keep the caller's authentication
+                new DelegatingSecurityContextExecutor(cacheRefreshExecutor));
+
+        TwoLevelCacheManager cacheManager = new TwoLevelCacheManager(redisCacheManager, localSpecs,
+                new LocalCacheSpec(1_000, Duration.ofMinutes(1)), cacheInvalidationBus, ResilientCache.guard(redisKeyScanner::evictByPrefix),
+                loadOptions, cacheMetricsRegistry);
+        redisCircuitBreaker.onRecovery(cacheManager::invalidateLocalCaches);
+        return cacheManager;
+    }
+
+    // Also carries the catalog snapshot's change feed
+    @Bean
+    public CacheInvalidationBus cacheInvalidationBus(RedisConnectionFactory redisConnectionFactory,
+                                                     RedisMessageListenerContainer cacheInvalidationListenerContainer,
+                                                     RedisCircuitBreaker redisCircuitBreaker) {
+        StringRedisTemplate redisTemplate = new StringRedisTemplate(redisConnectionFactory);
+        redisTemplate.afterPropertiesSet();
+        return new RedisCacheInvalidationBus(redisTemplate, cacheInvalidationListenerContainer, invalidationChannel, redisCircuitBreaker);
+    }
+
+    @Bean
+    public RedisCircuitBreaker redisCircuitBreaker() {
+        return new RedisCircuitBreaker(circuitFailureThreshold, Duration.ofMillis(circuitSlowCallMs), Duration.ofMillis(circuitOpenMs));
+    }
+
+    @Bean
+    public CacheMetricsRegistry cacheMetricsRegistry() {
+        return new CacheMetricsRegistry();
+    }
+
+    // Key generators for the @Cacheable methods, building the keys without evaluating SpEL per call
+    @Bean
+    public KeyGenerator adminProductKeys() {
+        return new CountKeyGenerator("admin-product-");
+    }
+
+    @Bean
+    public KeyGenerator topPopularKeys() {
+        return new CountKeyGenerator("top-popular-");
+    }
+
+    @Bean
+    public KeyGenerator recentProductKeys() {
+        return new UserScopedKeyGenerator("recent-");
+    }
+
+    @Bean
+    public KeyGenerator frequentProductKeys() {
+        return new UserScopedKeyGenerator("frequent-");
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor cacheRefreshExecutor() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        // Bounded, refreshes beyond the queue are dropped and the entries simply expire
+        return new ThreadPoolExecutor(2, 2, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(100), runnable -> {
+            Thread thread = new Thread(runnable, "cache-refresh-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor cacheWarmupExecutor() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        // Bounded so a warmup cannot take over the database pool; keys beyond the queue count as failed
+        return new ThreadPoolExecutor(warmupThreads, warmupThreads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1_000), runnable -> {
+            Thread thread = new Thread(runnable, "cache-warmup-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Most requested replayable reads over the last hour, in 5 minute buckets
+    @Bean
+    public HotKeyWindow cacheHotKeys() {
+        return new HotKeyWindow(Duration.ofMinutes(warmupWindowMinutes), 12, 10_000);
+    }
+
     @Bean
-    public CacheManager cacheManager(RedisConnectionFactory redisConnectionFactory) {
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(RedisConnectionFactory redisConnectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        return container;
+    }
+
+    private RedisCacheManager redisCacheManager(RedisConnectionFactory redisConnectionFactory) {
+        RedisSerializer<Object> json = jsonSerializer();
+        RedisSerializationContext.SerializationPair<Object> compactValues = RedisSerializationContext.SerializationPair.fromSerializer(
+                compactSerializerEnabled ? new CompactRedisSerializer(json, 0) : json);
+        RedisSerializationContext.SerializationPair<Object> compressedValues = RedisSerializationContext.SerializationPair.fromSerializer(
+                compactSerializerEnabled ? new CompactRedisSerializer(json, compressionThresholdBytes) : json);
+
         RedisCacheConfiguration defaultCacheConfig = RedisCacheConfiguration.defaultCacheConfig()
                 .entryTtl(Duration.ofMinutes(10)) // Default TTL: 10 minutes
                 .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
-                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(new GenericJackson2JsonRedisSerializer()));
+                .serializeValuesWith(compactValues);
 
         Map<String, RedisCacheConfiguration> cacheConfigurations = new HashMap<>();
-        
-        // Products cache - longer TTL since products don't change frequently
-        cacheConfigurations.put("products", defaultCacheConfig.entryTtl(Duration.ofMinutes(30)));
-        
+
+        // Products cache - static catalog fields only, stock levels are kept in the stock level store
+        cacheConfigurations.put("products", defaultCacheConfig.entryTtl(PRODUCTS_TTL).serializeValuesWith(compressedValues));
+
         // Products for admin - shorter TTL due to sensitive data
-        cacheConfigurations.put("admin-products", defaultCacheConfig.entryTtl(Duration.ofMinutes(15)));
-        
-        // Top products caches - longer TTL since rankings don't change frequently
-        cacheConfigurations.put("top-profitable-products", defaultCacheConfig.entryTtl(Duration.ofMinutes(60)));
-        cacheConfigurations.put("top-popular-products", defaultCacheConfig.entryTtl(Duration.ofMinutes(30)));
-        
+        cacheConfigurations.put("admin-products", defaultCacheConfig.entryTtl(Duration.ofMinutes(15)).serializeValuesWith(compressedValues));
+
+        // Top products cache - longer TTL since rankings don't change frequently
+        cacheConfigurations.put("top-popular-products", defaultCacheConfig.entryTtl(TOP_POPULAR_TTL).serializeValuesWith(compressedValues));
+
         // User-specific caches - shorter TTL
         cacheConfigurations.put("user-recent-products", defaultCacheConfig.entryTtl(Duration.ofMinutes(5)));
         cacheConfigurations.put("user-frequent-products", defaultCacheConfig.entryTtl(Duration.ofMinutes(15)));
-        
-        // Orders cache - short TTL due to frequent updates
+
+        // Orders cache - one snapshot per order plus the id index of all orders
         cacheConfigurations.put("orders", defaultCacheConfig.entryTtl(Duration.ofMinutes(5)));
+        // Order id index per user
         cacheConfigurations.put("user-orders", defaultCacheConfig.entryTtl(Duration.ofMinutes(3)));
 
-        return RedisCacheManager.builder(redisConnectionFactory)
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(redisConnectionFactory)
                 .cacheDefaults(defaultCacheConfig)
                 .withInitialCacheConfigurations(cacheConfigurations)
                 .build();
+        // Not a bean of its own, so initialize the configured caches here
+        redisCacheManager.afterPropertiesSet();
+        return redisCacheManager;
+    }
+
+    // JSON with class hints like GenericJackson2JsonRedisSerializer's default, plus java.time support for the DTO timestamps
+    public static RedisSerializer<Object> jsonSerializer() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        objectMapper.activateDefaultTyping(objectMapper.getPolymorphicTypeValidator(),
+                ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
+        GenericJackson2JsonRedisSerializer.registerNullValueSerializer(objectMapper, null);
+        return new GenericJackson2JsonRedisSerializer(objectMapper);
     }
-} 
\ No newline at end of file
+}
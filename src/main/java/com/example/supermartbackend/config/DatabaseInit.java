@@ -7,8 +7,10 @@ import com.example.supermartbackend.entity.Role;
 import com.example.supermartbackend.entity.User;
 import com.example.supermartbackend.repository.OrderRepository;
 import com.example.supermartbackend.repository.ProductRepository;
+import com.example.supermartbackend.repository.PurchaseSummaryRepository;
 import com.example.supermartbackend.repository.RoleRepository;
 import com.example.supermartbackend.repository.UserRepository;
+import com.example.supermartbackend.service.CacheInvalidationService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -18,9 +20,12 @@ import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 
@@ -33,7 +38,9 @@ public class DatabaseInit implements CommandLineRunner {
     private final UserRepository userRepository;
     private final ProductRepository productRepository;
     private final OrderRepository orderRepository;
+    private final PurchaseSummaryRepository purchaseSummaryRepository;
     private final PasswordEncoder passwordEncoder;
+    private final CacheInvalidationService cacheInvalidationService;
     
     @Value("${app.admin.username:admin}")
     private String adminUsername;
@@ -44,14 +51,29 @@ public class DatabaseInit implements CommandLineRunner {
     @Value("${app.admin.password:admin123}")
     private String adminPassword;
     
+    @Value("${app.products.order-counts.rebuild-on-startup:false}")
+    private boolean rebuildOrderCounts;
+    
+    @Value("${app.products.purchase-history.rebuild-on-startup:false}")
+    private boolean rebuildPurchaseHistory;
+    
     @Override
     @Transactional
     public void run(String... args) {
         log.info("Initializing Database");
+        orderRepository.alignIdSequences();
         initRoles();
         initUsers();
         initProducts();
         initOrders();
+        if (rebuildOrderCounts) {
+            // One-shot backfill for orders placed before the counts were maintained; scans all order items
+            log.info("Recounted the orders of {} products", productRepository.rebuildOrderCounts());
+        }
+        if (rebuildPurchaseHistory) {
+            // Same for the purchase summaries; it replaces all of them, so no other node may be taking orders
+            log.info("Rebuilt {} purchase summaries", purchaseSummaryRepository.rebuild());
+        }
     }
     
     private void initRoles() {
@@ -137,6 +159,8 @@ public class DatabaseInit implements CommandLineRunner {
                 
                 for (Product product : products) {
                     productRepository.save(product);
+                    // The startup warmup may already have loaded the empty catalog
+                    cacheInvalidationService.productChanged("product-added", product.getId());
                 }
             }
         } catch (Exception e) {
@@ -187,6 +211,14 @@ public class DatabaseInit implements CommandLineRunner {
             
             orderRepository.save(completedOrder);
             
+            // Seed orders reserve no stock, so they are counted here rather than by the inventory engine
+            Map<Long, Integer> orderCounts = new HashMap<>();
+            orderCounts.put(product1.getId(), 1);
+            orderCounts.put(product2.getId(), 1);
+            orderCounts.put(product3.getId(), 1);
+            productRepository.addOrderCounts(orderCounts);
+            purchaseSummaryRepository.recordPurchases(user.getId(), orderCounts, LocalDateTime.now());
+            
             log.info("Created test orders successfully");
         } catch (Exception e) {
             log.error("Error creating test orders: {}", e.getMessage());
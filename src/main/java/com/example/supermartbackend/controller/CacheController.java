@@ -1,15 +1,20 @@
 package com.example.supermartbackend.controller;
 
+import com.example.supermartbackend.cache.CircuitBreakerStats;
+import com.example.supermartbackend.cache.NearCacheStats;
+import com.example.supermartbackend.cache.RedisCircuitBreaker;
+import com.example.supermartbackend.cache.TwoLevelCacheManager;
+import com.example.supermartbackend.service.CacheInvalidationService;
+import com.example.supermartbackend.service.CacheStatsService;
+import com.example.supermartbackend.service.CacheWarmupService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.cache.CacheManager;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
 
 @RestController
 @RequestMapping("/admin/cache")
@@ -18,25 +23,36 @@ import java.util.Set;
 public class CacheController {
 
     private final CacheManager cacheManager;
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final CacheInvalidationService cacheInvalidationService;
+    private final CacheStatsService cacheStatsService;
+    private final CacheWarmupService cacheWarmupService;
+    private final RedisCircuitBreaker redisCircuitBreaker;
 
     @GetMapping("/stats")
     public ResponseEntity<Map<String, Object>> getCacheStats() {
-        Map<String, Object> stats = new HashMap<>();
-        
-        // Get all cache names
-        stats.put("cacheNames", cacheManager.getCacheNames());
-        
-        // Get Redis info
-        try {
-            Set<String> keys = redisTemplate.keys("*");
-            stats.put("totalKeys", keys != null ? keys.size() : 0);
-            stats.put("redisKeys", keys);
-        } catch (Exception e) {
-            stats.put("redisError", e.getMessage());
+        // Hits, misses, puts, evictions and load latency percentiles per cache, plus Redis key counts
+        return ResponseEntity.ok(cacheStatsService.getStats());
+    }
+
+    @GetMapping("/levels")
+    public ResponseEntity<Map<String, NearCacheStats>> getLevelStats() {
+        // L1 (node local) and L2 (Redis) hit ratios per cache, empty when local caches are disabled
+        if (cacheManager instanceof TwoLevelCacheManager) {
+            return ResponseEntity.ok(((TwoLevelCacheManager) cacheManager).getStats());
         }
-        
-        return ResponseEntity.ok(stats);
+        return ResponseEntity.ok(new HashMap<>());
+    }
+
+    @GetMapping("/redis")
+    public ResponseEntity<CircuitBreakerStats> getRedisCircuitStats() {
+        // Circuit state, failed, slow and short-circuited Redis calls, and Redis call latency
+        return ResponseEntity.ok(redisCircuitBreaker.getStats());
+    }
+
+    @GetMapping("/invalidations")
+    public ResponseEntity<Map<String, CacheInvalidationService.InvalidationStats>> getInvalidationStats() {
+        // Keys evicted per kind of write since startup
+        return ResponseEntity.ok(cacheInvalidationService.getStats());
     }
 
     @DeleteMapping("/clear")
@@ -70,8 +86,14 @@ public class CacheController {
     }
 
     @PostMapping("/warmup")
-    public ResponseEntity<String> warmupCache() {
-        // This endpoint can be used to manually trigger cache warmup
-        return ResponseEntity.ok("Cache warmup triggered (will run asynchronously)");
+    public ResponseEntity<CacheWarmupService.WarmupProgress> warmupCache() {
+        // Starts a warmup in the background, or reports the one already running
+        return ResponseEntity.accepted().body(cacheWarmupService.triggerWarmup());
+    }
+
+    @GetMapping("/warmup")
+    public ResponseEntity<CacheWarmupService.WarmupProgress> getWarmupProgress() {
+        CacheWarmupService.WarmupProgress progress = cacheWarmupService.getProgress();
+        return progress != null ? ResponseEntity.ok(progress) : ResponseEntity.noContent().build();
     }
 } 
\ No newline at end of file
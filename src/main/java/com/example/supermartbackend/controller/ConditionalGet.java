@@ -0,0 +1,53 @@
+package com.example.supermartbackend.controller;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.function.Supplier;
+
+/**
+ * Answers polling clients whose copy is still current with 304 Not Modified. The validators are
+ * worked out before the body, from versions and timestamps, and the body is only built and
+ * serialized when the client's copy is out of date.
+ */
+final class ConditionalGet {
+
+    // Responses depend on who asks, so shared caches must not keep them and clients must revalidate
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
+    private ConditionalGet() {
+    }
+
+    static <T> ResponseEntity<T> respond(WebRequest request, String etag, Supplier<T> body) {
+        return respond(request, etag, -1, body);
+    }
+
+    // A lastModified below zero sends the ETag only
+    static <T> ResponseEntity<T> respond(WebRequest request, String etag, long lastModified, Supplier<T> body) {
+        if (isNotModified(request, etag, lastModified)) {
+            return notModified().build();
+        }
+        return ok().body(body.get());
+    }
+
+    // Sets the validators on the response and checks If-None-Match, or If-Modified-Since without one
+    static boolean isNotModified(WebRequest request, String etag, long lastModified) {
+        return request.checkNotModified(etag, lastModified);
+    }
+
+    static ResponseEntity.BodyBuilder notModified() {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(REVALIDATE);
+    }
+
+    static ResponseEntity.BodyBuilder ok() {
+        return ResponseEntity.ok().cacheControl(REVALIDATE);
+    }
+
+    static long toEpochMillis(LocalDateTime timestamp) {
+        return timestamp != null ? timestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : 0;
+    }
+}
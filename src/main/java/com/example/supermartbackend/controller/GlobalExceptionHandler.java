@@ -1,6 +1,8 @@
 package com.example.supermartbackend.controller;
 
 import com.example.supermartbackend.dto.ErrorResponse;
+import com.example.supermartbackend.exception.IdempotencyConflictException;
+import com.example.supermartbackend.exception.IdempotencyKeyReuseException;
 import com.example.supermartbackend.exception.InvalidCredentialsException;
 import com.example.supermartbackend.exception.NotEnoughInventoryException;
 import com.example.supermartbackend.exception.OrderModificationException;
@@ -107,4 +109,24 @@ public class GlobalExceptionHandler {
         );
         return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
     }
-} 
\ No newline at end of file
+    
+    @ExceptionHandler(IdempotencyConflictException.class)
+    public ResponseEntity<ErrorResponse> handleIdempotencyConflictException(IdempotencyConflictException ex) {
+        ErrorResponse errorResponse = new ErrorResponse(
+                HttpStatus.CONFLICT.value(),
+                "Conflict",
+                ex.getMessage()
+        );
+        return new ResponseEntity<>(errorResponse, HttpStatus.CONFLICT);
+    }
+    
+    @ExceptionHandler(IdempotencyKeyReuseException.class)
+    public ResponseEntity<ErrorResponse> handleIdempotencyKeyReuseException(IdempotencyKeyReuseException ex) {
+        ErrorResponse errorResponse = new ErrorResponse(
+                HttpStatus.UNPROCESSABLE_ENTITY.value(),
+                "Unprocessable Entity",
+                ex.getMessage()
+        );
+        return new ResponseEntity<>(errorResponse, HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+}
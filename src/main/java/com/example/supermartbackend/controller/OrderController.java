@@ -1,14 +1,23 @@
 package com.example.supermartbackend.controller;
 
+import com.example.supermartbackend.dto.BatchOrderRequest;
+import com.example.supermartbackend.dto.BatchOrderResponse;
+import com.example.supermartbackend.dto.CursorPage;
 import com.example.supermartbackend.dto.OrderRequest;
 import com.example.supermartbackend.dto.OrderResponse;
+import com.example.supermartbackend.service.OrderIdempotencyService;
 import com.example.supermartbackend.service.OrderService;
+import com.example.supermartbackend.service.PageCursor;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import javax.validation.Valid;
 import java.util.List;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/orders")
@@ -16,20 +25,71 @@ import java.util.List;
 public class OrderController {
     
     private final OrderService orderService;
+    private final OrderIdempotencyService orderIdempotencyService;
+    
+    @Value("${app.orders.async.enabled:false}")
+    private boolean asyncCheckout;
     
     @PostMapping
-    public ResponseEntity<OrderResponse> placeOrder(@Valid @RequestBody OrderRequest orderRequest) {
-        return ResponseEntity.ok(orderService.placeOrder(orderRequest));
+    public ResponseEntity<OrderResponse> placeOrder(
+            @Valid @RequestBody OrderRequest orderRequest,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        Supplier<OrderResponse> placement = asyncCheckout
+                ? () -> orderService.submitOrder(orderRequest)
+                : () -> orderService.placeOrder(orderRequest);
+        
+        // Retries with the same key replay the first result instead of placing the order again
+        OrderResponse response = StringUtils.hasText(idempotencyKey)
+                ? orderIdempotencyService.execute(idempotencyKey, orderRequest, placement)
+                : placement.get();
+        
+        if (asyncCheckout) {
+            // The order is PENDING until a worker reserves its stock, poll GET /orders/{id} for progress
+            return ResponseEntity.accepted().body(response);
+        }
+        return ResponseEntity.ok(response);
+    }
+    
+    @PostMapping("/batch")
+    public ResponseEntity<BatchOrderResponse> placeOrders(@Valid @RequestBody BatchOrderRequest batchOrderRequest) {
+        return ResponseEntity.ok(orderService.placeOrders(batchOrderRequest.getOrders()));
     }
     
     @GetMapping("/all")
-    public ResponseEntity<List<OrderResponse>> getAllOrders() {
-        return ResponseEntity.ok(orderService.getAllOrders());
+    public ResponseEntity<List<OrderResponse>> getAllOrders(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + PageCursor.DEFAULT_LIMIT) int limit,
+            WebRequest request) {
+        // The snapshots are cached, so the validators cost a pass over them and no query
+        CursorPage<OrderResponse> page = orderService.getAllOrders(cursor, limit);
+        List<OrderResponse> orders = page.getItems();
+        
+        // Orders are never deleted and every change moves the status and updatedAt
+        long hash = page.getNextCursor() != null ? 2 : 1;
+        long lastModified = -1;
+        for (OrderResponse order : orders) {
+            long updatedAt = ConditionalGet.toEpochMillis(order.getUpdatedAt());
+            hash = 31 * (31 * (31 * hash + order.getId()) + order.getStatus().hashCode()) + updatedAt;
+            lastModified = Math.max(lastModified, updatedAt);
+        }
+        String etag = orders.size() + "-" + Long.toHexString(hash);
+        if (ConditionalGet.isNotModified(request, etag, lastModified)) {
+            return ConditionalGet.notModified().build();
+        }
+        
+        ResponseEntity.BodyBuilder response = ConditionalGet.ok();
+        if (page.getNextCursor() != null) {
+            response.header(PageCursor.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(orders);
     }
     
     @GetMapping("/{id}")
-    public ResponseEntity<OrderResponse> getOrderById(@PathVariable Long id) {
-        return ResponseEntity.ok(orderService.getOrderById(id));
+    public ResponseEntity<OrderResponse> getOrderById(@PathVariable Long id, WebRequest request) {
+        OrderResponse order = orderService.getOrderById(id);
+        long updatedAt = ConditionalGet.toEpochMillis(order.getUpdatedAt());
+        String etag = order.getId() + "-" + order.getStatus() + "-" + updatedAt;
+        return ConditionalGet.respond(request, etag, updatedAt, () -> order);
     }
     
     @PatchMapping("/{id}/cancel")
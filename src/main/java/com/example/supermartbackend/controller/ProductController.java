@@ -1,17 +1,32 @@
 package com.example.supermartbackend.controller;
 
+import com.example.supermartbackend.dto.AdminProductResponse;
+import com.example.supermartbackend.dto.CursorPage;
 import com.example.supermartbackend.dto.ProductRequest;
 import com.example.supermartbackend.dto.ProductResponse;
+import com.example.supermartbackend.service.CatalogListing;
+import com.example.supermartbackend.service.CatalogPayloadCache;
+import com.example.supermartbackend.service.PageCursor;
 import com.example.supermartbackend.service.ProductService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import javax.validation.Valid;
+import java.time.LocalDateTime;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/products")
@@ -20,35 +35,88 @@ public class ProductController {
     
     private final ProductService productService;
     
+    private final CatalogPayloadCache catalogPayloadCache;
+    
+    @Value("${app.catalog.payload-cache.enabled:true}")
+    private boolean payloadCache;
+    
+    static final String CATALOG_VERSION_HEADER = "X-Catalog-Version";
+    
     @GetMapping("/all")
-    public ResponseEntity<?> getAllProducts() {
+    public ResponseEntity<?> getAllProducts(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            WebRequest request) {
         // Check if user has admin role
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         boolean isAdmin = authentication.getAuthorities().stream()
                 .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
         
-        if (isAdmin) {
-            // Admin gets all products with complete information including wholesale price
-            return ResponseEntity.ok(productService.getAllProductsForAdmin());
-        } else {
-            // Regular users only get in-stock products with limited information
-            return ResponseEntity.ok(productService.getAllInStockProducts());
+        // Paged only when asked for, the whole listing stays a single cached document
+        if (cursor != null || limit != null) {
+            // Read before the page, so the version sent is never newer than the contents
+            long catalogVersion = productService.getCatalogVersion();
+            int pageSize = limit != null ? limit : PageCursor.DEFAULT_LIMIT;
+            return isAdmin
+                    ? page(request, "admin-" + catalogVersion, productService.getProductsPageForAdmin(cursor, pageSize),
+                            AdminProductResponse::getId, AdminProductResponse::getQuantity)
+                    : page(request, "storefront-" + catalogVersion, productService.getInStockProductsPage(cursor, pageSize),
+                            ProductResponse::getId, ProductResponse::getQuantity);
+        }
+        
+        // The tag and the listing come from one read of the snapshot and its stock levels, so a body
+        // is never sent or cached under a tag older or newer than itself; admins see another listing, so another tag
+        CatalogListing catalog = productService.getCatalogListing();
+        String listing = isAdmin ? CatalogPayloadCache.ADMIN : CatalogPayloadCache.STOREFRONT;
+        boolean gzip = payloadCache && acceptsGzip(request);
+        // Each encoding is its own representation and needs its own tag
+        String etag = listing + "-" + catalog.getTag() + (gzip ? "-gzip" : "");
+        if (ConditionalGet.isNotModified(request, etag, -1)) {
+            return ConditionalGet.notModified().varyBy(HttpHeaders.ACCEPT_ENCODING).build();
         }
+        
+        // Admin gets all products with complete information including wholesale price,
+        // regular users only get in-stock products with limited information
+        Supplier<List<?>> products = isAdmin ? catalog::getProductsForAdmin : catalog::getInStockProducts;
+        ResponseEntity.BodyBuilder response = ConditionalGet.ok()
+                .header(CATALOG_VERSION_HEADER, Long.toString(catalog.getVersion()))
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (!payloadCache) {
+            return response.body(products.get());
+        }
+        
+        // Written as is, without building or serializing the listing while the catalog tag stays the same
+        CatalogPayloadCache.Payload payload = catalogPayloadCache.getListing(listing, catalog);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.contentType(MediaType.APPLICATION_JSON)
+                .body(gzip ? payload.getGzip() : payload.getIdentity());
+    }
+    
+    @GetMapping("/version")
+    public ResponseEntity<Map<String, Long>> getCatalogVersion() {
+        return ResponseEntity.ok(Collections.singletonMap("version", productService.getCatalogVersion()));
     }
     
     @GetMapping("/{id}")
-    public ResponseEntity<?> getProductById(@PathVariable Long id) {
+    public ResponseEntity<?> getProductById(@PathVariable Long id, WebRequest request) {
         // Check if user has admin role
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         boolean isAdmin = authentication.getAuthorities().stream()
                 .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
         
+        // Both come from caches, a 304 only saves the serialization and the transfer
         if (isAdmin) {
             // Admin gets complete product information including wholesale price
-            return ResponseEntity.ok(productService.getProductByIdForAdmin(id));
+            AdminProductResponse product = productService.getProductByIdForAdmin(id);
+            return ConditionalGet.respond(request,
+                    productTag("admin-", product.getId(), product.getUpdatedAt(), product.getQuantity()), () -> product);
         } else {
             // Regular users get limited product information
-            return ResponseEntity.ok(productService.getProductById(id));
+            ProductResponse product = productService.getProductById(id);
+            return ConditionalGet.respond(request,
+                    productTag("", product.getId(), product.getUpdatedAt(), product.getQuantity()), () -> product);
         }
     }
     
@@ -78,6 +146,13 @@ public class ProductController {
         return ResponseEntity.ok(productService.getTopPopularProducts(count));
     }
     
+    @PostMapping("/popular/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<String> rebuildPopularity() {
+        // Order counts are kept up to date by order writes, this repairs them from the orders table
+        return ResponseEntity.ok("Recounted the orders of " + productService.rebuildPopularity() + " products");
+    }
+    
     @GetMapping("/recent/{count}")
     @PreAuthorize("hasRole('USER')")
     public ResponseEntity<List<ProductResponse>> getRecentlyPurchasedProducts(@PathVariable int count) {
@@ -89,4 +164,38 @@ public class ProductController {
     public ResponseEntity<List<ProductResponse>> getFrequentlyPurchasedProducts(@PathVariable int count) {
         return ResponseEntity.ok(productService.getFrequentlyPurchasedProducts(count));
     }
-} 
\ No newline at end of file
+    
+    @PostMapping("/purchases/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<String> rebuildPurchaseHistory() {
+        // Purchase summaries are kept up to date by order writes, this repairs them from the orders table
+        return ResponseEntity.ok("Rebuilt " + productService.rebuildPurchaseHistory() + " purchase summaries");
+    }
+    
+    // The catalog version covers the static fields, so only the page's stock levels go into the tag
+    private static <T> ResponseEntity<List<T>> page(WebRequest request, String etagPrefix, CursorPage<T> page,
+                                                    Function<T, Long> id, Function<T, Integer> quantity) {
+        long hash = page.getNextCursor() != null ? 2 : 1;
+        for (T product : page.getItems()) {
+            hash = 31 * (31 * hash + id.apply(product)) + quantity.apply(product);
+        }
+        if (ConditionalGet.isNotModified(request, etagPrefix + "-" + Long.toHexString(hash), -1)) {
+            return ConditionalGet.notModified().build();
+        }
+        ResponseEntity.BodyBuilder response = ConditionalGet.ok();
+        if (page.getNextCursor() != null) {
+            response.header(PageCursor.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
+    }
+    
+    private static boolean acceptsGzip(WebRequest request) {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        return acceptEncoding != null && acceptEncoding.toLowerCase(Locale.ROOT).contains("gzip");
+    }
+    
+    // Stock moves without touching the cached updatedAt, so the quantity is part of the tag and no Last-Modified is sent
+    private static String productTag(String prefix, Long id, LocalDateTime updatedAt, Integer quantity) {
+        return prefix + id + "-" + ConditionalGet.toEpochMillis(updatedAt) + "-" + quantity;
+    }
+}
\ No newline at end of file
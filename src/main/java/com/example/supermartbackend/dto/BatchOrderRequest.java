@@ -0,0 +1,21 @@
+package com.example.supermartbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchOrderRequest {
+    
+    @NotEmpty
+    @Size(max = 1000)
+    @Valid
+    private List<OrderRequest> orders;
+}
@@ -0,0 +1,29 @@
+package com.example.supermartbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchOrderResponse {
+    
+    private int placed;
+    private int rejected;
+    private List<BatchOrderResult> results = new ArrayList<>();
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class BatchOrderResult {
+        // Position of the order in the request
+        private int index;
+        private boolean placed;
+        private OrderResponse order;
+        private String error;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.supermartbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// The rarely changing part of a product; stock levels are kept separately
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatalogProduct {
+    
+    private Long id;
+    private String name;
+    private String description;
+    private BigDecimal retailPrice;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
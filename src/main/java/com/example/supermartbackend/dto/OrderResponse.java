@@ -20,6 +20,7 @@ public class OrderResponse {
     private List<OrderItemResponse> items = new ArrayList<>();
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+    private String rejectionReason;
     
     @Data
     @NoArgsConstructor
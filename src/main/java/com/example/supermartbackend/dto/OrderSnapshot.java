@@ -0,0 +1,15 @@
+package com.example.supermartbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// A cached order, with the owner kept next to the response so access can be checked on a cache hit
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderSnapshot {
+    
+    private String username;
+    private OrderResponse order;
+}
@@ -14,14 +14,20 @@ import java.util.HashSet;
 import java.util.Set;
 
 @Entity
-@Table(name = "orders")
+// Serve the keyset paginated listings, newest first, of all orders and of each user's
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_created_at_id", columnList = "createdAt, id"),
+        @Index(name = "idx_orders_user_created_at_id", columnList = "user_id, createdAt, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Order {
     
+    // Pooled ids instead of IDENTITY so Hibernate can batch the inserts of bulk orders
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_seq")
+    @SequenceGenerator(name = "order_seq", sequenceName = "order_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne
@@ -40,6 +46,13 @@ public class Order {
     @Column(nullable = false)
     private BigDecimal totalAmount = BigDecimal.ZERO;
     
+    // Set while the stock of this order is only reserved in the in-memory inventory ledger
+    @Column(nullable = false)
+    private boolean inventoryPending = false;
+    
+    // Why an asynchronously submitted order was rejected
+    private String rejectionReason;
+    
     @CreationTimestamp
     private LocalDateTime createdAt;
     
@@ -50,7 +63,8 @@ public class Order {
         PENDING,
         PROCESSING,
         COMPLETED,
-        CANCELED
+        CANCELED,
+        REJECTED
     }
     
     // Helper method to add item to order
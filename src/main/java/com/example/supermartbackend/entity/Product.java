@@ -18,7 +18,8 @@ import java.util.HashSet;
 import java.util.Set;
 
 @Entity
-@Table(name = "products")
+// Serves the popularity ranking, read newest id first among equal counts
+@Table(name = "products", indexes = @Index(name = "idx_products_order_count_id", columnList = "orderCount, id"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -50,6 +51,11 @@ public class Product {
     @Column(nullable = false)
     private Integer quantity;
     
+    // Placed, not canceled orders containing this product; only ever changed by the inventory engines
+    // along with the stock and the rebuild in ProductRepository, never by saving the entity, which may hold a stale value
+    @Column(nullable = false, updatable = false)
+    private long orderCount;
+    
     @ManyToMany(mappedBy = "watchlist")
     @EqualsAndHashCode.Exclude
     private Set<User> usersWatching = new HashSet<>();
@@ -0,0 +1,45 @@
+package com.example.supermartbackend.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+// How often and when a user last bought a product, kept by the order writes for the purchase history reads
+@Entity
+@Table(name = "purchase_summaries", indexes = {
+        @Index(name = "idx_purchase_summaries_user_last", columnList = "user_id, last_purchased_at"),
+        @Index(name = "idx_purchase_summaries_user_count", columnList = "user_id, purchase_count")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PurchaseSummary {
+    
+    @EmbeddedId
+    private Key id;
+    
+    // Placed, not canceled orders of the user containing the product
+    @Column(name = "purchase_count", nullable = false)
+    private long purchaseCount;
+    
+    // Placement time of the latest of those orders, or of a since canceled one
+    @Column(name = "last_purchased_at", nullable = false)
+    private LocalDateTime lastPurchasedAt;
+    
+    @Embeddable
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        
+        @Column(name = "user_id", nullable = false)
+        private Long userId;
+        
+        @Column(name = "product_id", nullable = false)
+        private Long productId;
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.supermartbackend.exception;
+
+public class IdempotencyConflictException extends RuntimeException {
+    
+    public IdempotencyConflictException(String message) {
+        super(message);
+    }
+    
+    public IdempotencyConflictException() {
+        super("A request with this Idempotency-Key is still being processed");
+    }
+}
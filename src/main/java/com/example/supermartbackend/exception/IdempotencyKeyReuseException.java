@@ -0,0 +1,8 @@
+package com.example.supermartbackend.exception;
+
+public class IdempotencyKeyReuseException extends RuntimeException {
+    
+    public IdempotencyKeyReuseException() {
+        super("This Idempotency-Key was already used for a different request");
+    }
+}
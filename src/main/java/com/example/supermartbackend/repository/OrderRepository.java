@@ -1,19 +1,35 @@
 package com.example.supermartbackend.repository;
 
+import com.example.supermartbackend.dto.OrderResponse;
+import com.example.supermartbackend.dto.OrderSnapshot;
 import com.example.supermartbackend.entity.Order;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
 import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Repository
 public class OrderRepository {
     
+    private static final int ID_ALLOCATION_SIZE = 50;
+    
     @PersistenceContext
     private EntityManager entityManager;
     
@@ -26,10 +42,39 @@ public class OrderRepository {
         }
     }
     
+    public void flush() {
+        entityManager.flush();
+    }
+    
     public Optional<Order> findById(Long id) {
         return Optional.ofNullable(entityManager.find(Order.class, id));
     }
     
+    public Optional<Order> findByIdForUpdate(Long id) {
+        return Optional.ofNullable(entityManager.find(Order.class, id, LockModeType.PESSIMISTIC_WRITE));
+    }
+    
+    public List<Order> findAllByIdsForUpdate(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // Locked in ascending id order, like the product rows, so overlapping batches cannot deadlock
+        String hql = "FROM Order o WHERE o.id IN :ids ORDER BY o.id";
+        return entityManager.createQuery(hql, Order.class)
+                .setParameter("ids", ids)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+    }
+    
+    public List<Long> findIdsByStatusCreatedBefore(Order.OrderStatus status, LocalDateTime createdBefore, int limit) {
+        String hql = "SELECT o.id FROM Order o WHERE o.status = :status AND o.createdAt < :createdBefore ORDER BY o.id";
+        return entityManager.createQuery(hql, Long.class)
+                .setParameter("status", status)
+                .setParameter("createdBefore", createdBefore)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+    
     public List<Order> findAllByUserId(Long userId) {
         // Using HQL
         String hql = "FROM Order o WHERE o.user.id = :userId ORDER BY o.createdAt DESC";
@@ -38,6 +83,125 @@ public class OrderRepository {
                 .getResultList();
     }
     
+    // Newest first; seeks past (createdAt, id) of the previous page's last order, or starts at the top when null
+    public List<Long> findIdsByUsername(String username, LocalDateTime afterCreatedAt, Long afterId, int limit) {
+        String hql = "SELECT o.id FROM Order o WHERE o.user.username = :username" + seek(" AND ", afterCreatedAt) +
+                " ORDER BY o.createdAt DESC, o.id DESC";
+        TypedQuery<Long> query = entityManager.createQuery(hql, Long.class)
+                .setParameter("username", username);
+        return page(query, afterCreatedAt, afterId, limit);
+    }
+    
+    public List<Long> findIds(LocalDateTime afterCreatedAt, Long afterId, int limit) {
+        String hql = "SELECT o.id FROM Order o" + seek(" WHERE ", afterCreatedAt) +
+                " ORDER BY o.createdAt DESC, o.id DESC";
+        return page(entityManager.createQuery(hql, Long.class), afterCreatedAt, afterId, limit);
+    }
+    
+    // Row value comparisons are not portable, this form still lets the (created_at, id) index seek
+    private static String seek(String keyword, LocalDateTime afterCreatedAt) {
+        return afterCreatedAt == null ? ""
+                : keyword + "(o.createdAt < :afterCreatedAt OR (o.createdAt = :afterCreatedAt AND o.id < :afterId))";
+    }
+    
+    private static List<Long> page(TypedQuery<Long> query, LocalDateTime afterCreatedAt, Long afterId, int limit) {
+        if (afterCreatedAt != null) {
+            query.setParameter("afterCreatedAt", afterCreatedAt)
+                    .setParameter("afterId", afterId);
+        }
+        return query.setMaxResults(limit).getResultList();
+    }
+    
+    // Read model of the listings: two flat projections instead of entities, so neither the eager owner
+    // and its roles nor the items' products are loaded, however many orders are asked for
+    public List<OrderSnapshot> findSnapshotsByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String orderHql = "SELECT o.id, u.username, o.status, o.totalAmount, o.createdAt, o.updatedAt, o.rejectionReason " +
+                "FROM Order o JOIN o.user u WHERE o.id IN :ids";
+        Map<Long, OrderSnapshot> snapshots = new LinkedHashMap<>();
+        for (Object[] row : entityManager.createQuery(orderHql, Object[].class).setParameter("ids", ids).getResultList()) {
+            OrderResponse order = new OrderResponse((Long) row[0], ((Order.OrderStatus) row[2]).name(), (BigDecimal) row[3],
+                    new ArrayList<>(), (LocalDateTime) row[4], (LocalDateTime) row[5], (String) row[6]);
+            snapshots.put(order.getId(), new OrderSnapshot((String) row[1], order));
+        }
+        
+        // The product id is read from the foreign key column, without a join
+        String itemHql = "SELECT oi.order.id, oi.product.id, oi.productName, oi.productDescription, oi.quantity, oi.price " +
+                "FROM OrderItem oi WHERE oi.order.id IN :ids ORDER BY oi.product.id";
+        for (Object[] row : entityManager.createQuery(itemHql, Object[].class).setParameter("ids", ids).getResultList()) {
+            Integer quantity = (Integer) row[4];
+            BigDecimal price = (BigDecimal) row[5];
+            snapshots.get((Long) row[0]).getOrder().getItems().add(new OrderResponse.OrderItemResponse(
+                    (Long) row[1], (String) row[2], (String) row[3], quantity, price, price.multiply(new BigDecimal(quantity))));
+        }
+        return new ArrayList<>(snapshots.values());
+    }
+    
+    public Map<Long, Integer> sumPendingInventoryByProduct() {
+        String hql = "SELECT oi.product.id, SUM(oi.quantity) FROM OrderItem oi " +
+                "WHERE oi.order.inventoryPending = true GROUP BY oi.product.id";
+        Map<Long, Integer> quantities = new HashMap<>();
+        for (Object[] row : entityManager.createQuery(hql, Object[].class).getResultList()) {
+            quantities.put((Long) row[0], ((Number) row[1]).intValue());
+        }
+        return quantities;
+    }
+    
+    public Map<Long, Integer> countPendingInventoryOrdersByProduct() {
+        String hql = "SELECT oi.product.id, COUNT(DISTINCT oi.order.id) FROM OrderItem oi " +
+                "WHERE oi.order.inventoryPending = true GROUP BY oi.product.id";
+        Map<Long, Integer> orders = new HashMap<>();
+        for (Object[] row : entityManager.createQuery(hql, Object[].class).getResultList()) {
+            orders.put((Long) row[0], ((Number) row[1]).intValue());
+        }
+        return orders;
+    }
+    
+    public int clearInventoryPending() {
+        String hql = "UPDATE Order o SET o.inventoryPending = false WHERE o.inventoryPending = true";
+        return entityManager.createQuery(hql).executeUpdate();
+    }
+    
+    public int clearInventoryPending(Collection<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return 0;
+        }
+        String hql = "UPDATE Order o SET o.inventoryPending = false WHERE o.id IN :ids";
+        return entityManager.createQuery(hql)
+                .setParameter("ids", orderIds)
+                .executeUpdate();
+    }
+    
+    public void alignIdSequences() {
+        alignIdSequence("order_seq", "orders");
+        alignIdSequence("order_item_seq", "order_items");
+    }
+    
+    private void alignIdSequence(String sequenceName, String tableName) {
+        // Rows inserted before the switch from IDENTITY ids must never be handed out again
+        Number maxId = (Number) entityManager.createNativeQuery("SELECT COALESCE(MAX(id), 0) FROM " + tableName)
+                .getSingleResult();
+        long minimum = maxId.longValue() + ID_ALLOCATION_SIZE + 1;
+        
+        Dialect dialect = entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices().getDialect();
+        if (dialect.supportsSequences()) {
+            Number next = (Number) entityManager.createNativeQuery(dialect.getSequenceNextValString(sequenceName))
+                    .getSingleResult();
+            if (next.longValue() < minimum) {
+                entityManager.createNativeQuery("ALTER SEQUENCE " + sequenceName + " RESTART WITH " + minimum)
+                        .executeUpdate();
+            }
+        } else {
+            // Dialects without sequences (MySQL) emulate them with a single row table
+            entityManager.createNativeQuery("UPDATE " + sequenceName + " SET next_val = :minimum WHERE next_val < :minimum")
+                    .setParameter("minimum", minimum)
+                    .executeUpdate();
+        }
+    }
+    
     public List<Order> findAll() {
         // Using Criteria API
         CriteriaBuilder cb = entityManager.getCriteriaBuilder();
@@ -1,17 +1,24 @@
 package com.example.supermartbackend.repository;
 
 import com.example.supermartbackend.entity.Product;
+import org.hibernate.Session;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
 import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
-import javax.persistence.criteria.Join;
 import javax.persistence.criteria.Root;
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.TreeMap;
 
 @Repository
 public class ProductRepository {
@@ -25,6 +32,16 @@ public class ProductRepository {
         return entityManager.createQuery(hql, Product.class).getResultList();
     }
     
+    // Keyset paginated by id, from the first product when afterId is null
+    public List<Product> findPage(Long afterId, int limit) {
+        String hql = afterId == null ? "FROM Product p ORDER BY p.id" : "FROM Product p WHERE p.id > :afterId ORDER BY p.id";
+        TypedQuery<Product> query = entityManager.createQuery(hql, Product.class);
+        if (afterId != null) {
+            query.setParameter("afterId", afterId);
+        }
+        return query.setMaxResults(limit).getResultList();
+    }
+    
     public List<Product> findAllInStock() {
         // Using HQL
         String hql = "FROM Product p WHERE p.quantity > 0";
@@ -45,6 +62,32 @@ public class ProductRepository {
         }
     }
     
+    public Optional<Product> findByIdForUpdate(Long id) {
+        return Optional.ofNullable(entityManager.find(Product.class, id, LockModeType.PESSIMISTIC_WRITE));
+    }
+    
+    public List<Product> findAllByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String hql = "FROM Product p WHERE p.id IN :ids ORDER BY p.id";
+        return entityManager.createQuery(hql, Product.class)
+                .setParameter("ids", ids)
+                .getResultList();
+    }
+    
+    public List<Product> findAllByIdsForUpdate(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // One IN query for the whole basket; rows are locked in ascending id order so overlapping baskets cannot deadlock
+        String hql = "FROM Product p WHERE p.id IN :ids ORDER BY p.id";
+        return entityManager.createQuery(hql, Product.class)
+                .setParameter("ids", ids)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+    }
+    
     public Product save(Product product) {
         if (product.getId() == null) {
             entityManager.persist(product);
@@ -54,45 +97,115 @@ public class ProductRepository {
         }
     }
     
-    public List<Product> findTopXByProfit(int count) {
-        // Profit = (retailPrice - wholesalePrice) * quantity
-        String hql = "SELECT p FROM Product p " +
-                "ORDER BY (p.retailPrice - p.wholesalePrice) DESC";
-        return entityManager.createQuery(hql, Product.class)
-                .setMaxResults(count)
-                .getResultList();
+    // Reserves quantity for that many orders; the order count rides on the stock write, which already holds the row.
+    // Stock writes leave updated_at alone: it dates the static fields that the catalog caches and snapshot hold.
+    public int decrementQuantity(Long id, int quantity, int orders) {
+        // Guarded update: only succeeds when enough stock is left, so concurrent checkouts cannot oversell
+        String sql = "UPDATE products SET quantity = quantity - :quantity, order_count = order_count + :orders " +
+                "WHERE id = :id AND quantity >= :quantity";
+        return entityManager.createNativeQuery(sql)
+                .setParameter("quantity", quantity)
+                .setParameter("orders", orders)
+                .setParameter("id", id)
+                .executeUpdate();
+    }
+    
+    // Returns the quantity of that many canceled orders
+    public int incrementQuantity(Long id, int quantity, int orders) {
+        String sql = "UPDATE products SET quantity = quantity + :quantity, order_count = order_count - :orders " +
+                "WHERE id = :id";
+        return entityManager.createNativeQuery(sql)
+                .setParameter("quantity", quantity)
+                .setParameter("orders", orders)
+                .setParameter("id", id)
+                .executeUpdate();
+    }
+    
+    public Map<Long, Integer> findQuantitiesByIds(Collection<Long> ids) {
+        Map<Long, Integer> quantities = new HashMap<>();
+        if (ids.isEmpty()) {
+            return quantities;
+        }
+        String hql = "SELECT p.id, p.quantity FROM Product p WHERE p.id IN :ids";
+        for (Object[] row : entityManager.createQuery(hql, Object[].class).setParameter("ids", ids).getResultList()) {
+            quantities.put((Long) row[0], (Integer) row[1]);
+        }
+        return quantities;
+    }
+    
+    public Map<Long, Integer> findAllQuantities() {
+        String hql = "SELECT p.id, p.quantity FROM Product p";
+        Map<Long, Integer> quantities = new HashMap<>();
+        for (Object[] row : entityManager.createQuery(hql, Object[].class).getResultList()) {
+            quantities.put((Long) row[0], (Integer) row[1]);
+        }
+        return quantities;
+    }
+    
+    // Stock deltas of the ledger's flush, with the number of orders they add per product
+    public void applyQuantityDeltas(Map<Long, Integer> deltas, Map<Long, Integer> orderCounts) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        // Plain JDBC batch so a whole flush costs one round trip instead of one statement per product
+        entityManager.flush();
+        entityManager.unwrap(Session.class).doWork(connection -> {
+            String sql = "UPDATE products SET quantity = quantity + ?, order_count = order_count + ? WHERE id = ?";
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (Map.Entry<Long, Integer> delta : deltas.entrySet()) {
+                    statement.setInt(1, delta.getValue());
+                    statement.setInt(2, orderCounts.getOrDefault(delta.getKey(), 0));
+                    statement.setLong(3, delta.getKey());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        });
     }
     
     public List<Product> findTopXByPopularity(int count) {
-        // Using JPQL instead of Criteria API for clearer join semantics
-        String jpql = "SELECT p, COUNT(oi) as orderCount " +
-                "FROM Product p " +
-                "LEFT JOIN p.orderItems oi " +
-                "GROUP BY p.id " +
-                "ORDER BY orderCount DESC";
-        
-        List<Object[]> results = entityManager.createQuery(jpql, Object[].class)
+        // A scan of the order count index instead of counting all order items
+        String hql = "FROM Product p ORDER BY p.orderCount DESC, p.id DESC";
+        return entityManager.createQuery(hql, Product.class)
                 .setMaxResults(count)
                 .getResultList();
-        
-        // Extract just the products from the results
-        return results.stream()
-                .map(result -> (Product) result[0])
-                .collect(Collectors.toList());
+    }
+    
+    // Order counts of orders placed without a reservation; checkouts count theirs with the stock writes above
+    public void addOrderCounts(Map<Long, Integer> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        // Ascending ids like the stock updates, so concurrent writers lock the rows in the same order
+        Map<Long, Integer> sorted = new TreeMap<>(deltas);
+        entityManager.unwrap(Session.class).doWork(connection -> {
+            String sql = "UPDATE products SET order_count = order_count + ? WHERE id = ?";
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (Map.Entry<Long, Integer> delta : sorted.entrySet()) {
+                    statement.setInt(1, delta.getValue());
+                    statement.setLong(2, delta.getKey());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        });
+    }
+    
+    public int rebuildOrderCounts() {
+        // Recounts from the orders themselves, for rows written before the counter existed or after a repair
+        String sql = "UPDATE products SET order_count = (SELECT COUNT(DISTINCT oi.order_id) FROM order_items oi " +
+                "JOIN orders o ON o.id = oi.order_id WHERE oi.product_id = products.id AND o.status IN ('PROCESSING', 'COMPLETED'))";
+        return entityManager.createNativeQuery(sql).executeUpdate();
     }
     
     public void delete(Product product) {
         entityManager.remove(product);
     }
     
+    // Point lookups on the user's purchase summaries instead of joining and grouping their order items
     public List<Product> findMostRecentlyPurchased(Long userId, int count) {
-        // HQL query to find most recently purchased products by user
-        String hql = "SELECT p FROM Product p " +
-                "JOIN p.orderItems oi " +
-                "JOIN oi.order o " +
-                "WHERE o.user.id = :userId " +
-                "ORDER BY o.createdAt DESC";
-        
+        String hql = "SELECT p FROM PurchaseSummary s, Product p WHERE p.id = s.id.productId AND s.id.userId = :userId " +
+                "ORDER BY s.lastPurchasedAt DESC, s.id.productId DESC";
         return entityManager.createQuery(hql, Product.class)
                 .setParameter("userId", userId)
                 .setMaxResults(count)
@@ -100,24 +213,10 @@ public class ProductRepository {
     }
     
     public List<Product> findMostFrequentlyPurchased(Long userId, int count) {
-        // Using Criteria API
-        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
-        CriteriaQuery<Product> query = cb.createQuery(Product.class);
-        Root<Product> product = query.from(Product.class);
-        
-        // Join with OrderItem and Order
-        Join<Object, Object> orderItems = product.join("orderItems");
-        Join<Object, Object> order = orderItems.join("order");
-        
-        // Where user id matches
-        query.where(cb.equal(order.get("user").get("id"), userId));
-        
-        // Group by product and order by count
-        query.select(product);
-        query.groupBy(product.get("id"));
-        query.orderBy(cb.desc(cb.count(orderItems)));
-        
-        return entityManager.createQuery(query)
+        String hql = "SELECT p FROM PurchaseSummary s, Product p WHERE p.id = s.id.productId AND s.id.userId = :userId " +
+                "ORDER BY s.purchaseCount DESC, s.lastPurchasedAt DESC";
+        return entityManager.createQuery(hql, Product.class)
+                .setParameter("userId", userId)
                 .setMaxResults(count)
                 .getResultList();
     }
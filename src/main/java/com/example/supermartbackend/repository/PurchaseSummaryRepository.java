@@ -0,0 +1,128 @@
+package com.example.supermartbackend.repository;
+
+import com.example.supermartbackend.entity.PurchaseSummary;
+import org.hibernate.Session;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Repository
+public class PurchaseSummaryRepository {
+    
+    // MySQL only takes the lock on the existing row, no gap lock two inserting transactions could deadlock on
+    private static final String MYSQL_UPSERT = "INSERT INTO purchase_summaries " +
+            "(user_id, product_id, purchase_count, last_purchased_at) VALUES (?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE purchase_count = purchase_count + ?, last_purchased_at = GREATEST(last_purchased_at, ?)";
+    
+    // Standard SQL for the other databases, H2 in the tests
+    private static final String MERGE_UPSERT = "MERGE INTO purchase_summaries s USING (SELECT CAST(? AS BIGINT) AS user_id, " +
+            "CAST(? AS BIGINT) AS product_id, CAST(? AS BIGINT) AS purchase_count, CAST(? AS TIMESTAMP) AS last_purchased_at) v " +
+            "ON s.user_id = v.user_id AND s.product_id = v.product_id " +
+            "WHEN MATCHED THEN UPDATE SET purchase_count = s.purchase_count + v.purchase_count, " +
+            "last_purchased_at = GREATEST(s.last_purchased_at, v.last_purchased_at) " +
+            "WHEN NOT MATCHED THEN INSERT (user_id, product_id, purchase_count, last_purchased_at) " +
+            "VALUES (v.user_id, v.product_id, v.purchase_count, v.last_purchased_at)";
+    
+    private static final int MERGE_ATTEMPTS = 3;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    // Adds the given number of orders per product with one upsert per row, so two orders of the same user
+    // racing on a product they never bought before cannot both insert it
+    public void recordPurchases(Long userId, Map<Long, Integer> orderCounts, LocalDateTime purchasedAt) {
+        if (orderCounts.isEmpty()) {
+            return;
+        }
+        boolean mySql = entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices().getDialect() instanceof MySQLDialect;
+        // Ascending ids, so concurrent orders of one user lock their rows in the same order
+        Map<Long, Integer> sorted = new TreeMap<>(orderCounts);
+        Timestamp timestamp = Timestamp.valueOf(purchasedAt);
+        entityManager.flush();
+        entityManager.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(mySql ? MYSQL_UPSERT : MERGE_UPSERT)) {
+                for (Map.Entry<Long, Integer> entry : sorted.entrySet()) {
+                    statement.setLong(1, userId);
+                    statement.setLong(2, entry.getKey());
+                    statement.setLong(3, entry.getValue());
+                    statement.setTimestamp(4, timestamp);
+                    if (mySql) {
+                        statement.setLong(5, entry.getValue());
+                        statement.setTimestamp(6, timestamp);
+                        statement.addBatch();
+                    } else {
+                        merge(statement);
+                    }
+                }
+                if (mySql) {
+                    statement.executeBatch();
+                }
+            }
+        });
+    }
+    
+    // A MERGE that lost the race to insert a row fails on the key once the winner commits; by then the row is there to update
+    private static void merge(PreparedStatement statement) throws SQLException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                statement.executeUpdate();
+                return;
+            } catch (SQLException e) {
+                boolean duplicateKey = e.getSQLState() != null && e.getSQLState().startsWith("23");
+                if (!duplicateKey || attempt == MERGE_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+    
+    // Takes back one order per product; the last purchase time is kept unless nothing is left
+    public void removePurchases(Long userId, Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        for (PurchaseSummary summary : findForUpdate(userId, productIds).values()) {
+            if (summary.getPurchaseCount() <= 1) {
+                entityManager.remove(summary);
+            } else {
+                summary.setPurchaseCount(summary.getPurchaseCount() - 1);
+            }
+        }
+    }
+    
+    public int rebuild() {
+        // Recounts from the orders themselves, for orders placed before the summaries existed or after a repair
+        entityManager.createNativeQuery("DELETE FROM purchase_summaries").executeUpdate();
+        String sql = "INSERT INTO purchase_summaries (user_id, product_id, purchase_count, last_purchased_at) " +
+                "SELECT o.user_id, oi.product_id, COUNT(DISTINCT o.id), MAX(o.created_at) FROM order_items oi " +
+                "JOIN orders o ON o.id = oi.order_id WHERE o.status IN ('PROCESSING', 'COMPLETED') " +
+                "GROUP BY o.user_id, oi.product_id";
+        return entityManager.createNativeQuery(sql).executeUpdate();
+    }
+    
+    private Map<Long, PurchaseSummary> findForUpdate(Long userId, Collection<Long> productIds) {
+        String hql = "FROM PurchaseSummary s WHERE s.id.userId = :userId AND s.id.productId IN :productIds " +
+                "ORDER BY s.id.productId";
+        return entityManager.createQuery(hql, PurchaseSummary.class)
+                .setParameter("userId", userId)
+                .setParameter("productIds", productIds)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList().stream()
+                .collect(Collectors.toMap(summary -> summary.getId().getProductId(), Function.identity()));
+    }
+}
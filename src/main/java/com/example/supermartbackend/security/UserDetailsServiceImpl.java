@@ -3,13 +3,13 @@ package com.example.supermartbackend.security;
 import com.example.supermartbackend.entity.User;
 import com.example.supermartbackend.exception.InvalidCredentialsException;
 import com.example.supermartbackend.repository.UserRepository;
+import com.example.supermartbackend.service.NegativeLookupCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -19,12 +19,19 @@ import java.util.stream.Collectors;
 public class UserDetailsServiceImpl implements UserDetailsService {
 
     private final UserRepository userRepository;
+    private final NegativeLookupCache negativeLookupCache;
 
+    // Roles are fetched eagerly, so no transaction is needed and a known missing user costs no connection
     @Override
-    @Transactional
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new InvalidCredentialsException("User not found with username: " + username));
+        if (negativeLookupCache.isMissing(NegativeLookupCache.USER, username)) {
+            throw new InvalidCredentialsException("User not found with username: " + username);
+        }
+        User user = userRepository.findByUsername(username).orElse(null);
+        if (user == null) {
+            negativeLookupCache.markMissing(NegativeLookupCache.USER, username);
+            throw new InvalidCredentialsException("User not found with username: " + username);
+        }
 
         List<SimpleGrantedAuthority> authorities = user.getRoles().stream()
                 .map(role -> new SimpleGrantedAuthority(role.getName().name()))
@@ -0,0 +1,23 @@
+package com.example.supermartbackend.service;
+
+import com.example.supermartbackend.entity.Product;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Map;
+
+@Getter
+@AllArgsConstructor
+public class BatchReservation {
+    
+    // Every product referenced by the baskets, keyed by id
+    private final Map<Long, Product> products;
+    
+    // Per basket, the reason it could not be reserved or null when its stock is reserved
+    private final List<RuntimeException> failures;
+    
+    public boolean isReserved(int basket) {
+        return failures.get(basket) == null;
+    }
+}
@@ -0,0 +1,272 @@
+package com.example.supermartbackend.service;
+
+import com.example.supermartbackend.cache.KeyEvictor;
+import com.example.supermartbackend.cache.MeteredCache;
+import com.example.supermartbackend.cache.PrefixEvictor;
+import com.example.supermartbackend.cache.ResilientCache;
+import com.example.supermartbackend.cache.TwoLevelCache;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Evicts only the cache entries a write actually touched instead of whole caches.
+ * Evictions run after the surrounding transaction commits so a reader cannot re-cache stale rows.
+ * Popularity and purchase history keys are looked up in the {@link CacheKeyIndex} and deleted directly;
+ * the stats count only keys that were actually present.
+ */
+@Service
+@Slf4j
+public class CacheInvalidationService {
+
+    public static final String TOP_POPULAR_CACHE = "top-popular-products";
+    public static final String TOP_POPULAR_PREFIX = "top-popular-";
+    public static final String RECENT_CACHE = "user-recent-products";
+    public static final String FREQUENT_CACHE = "user-frequent-products";
+
+    private final CacheManager cacheManager;
+    private final PrefixEvictor prefixEvictor;
+    private final KeyEvictor keyEvictor;
+    private final CacheKeyIndex cacheKeyIndex;
+    private final StockLevelStore stockLevelStore;
+    private final CatalogSnapshotService catalogSnapshotService;
+    private final NegativeLookupCache negativeLookupCache;
+
+    private final Map<String, InvalidationStats> stats = new ConcurrentHashMap<>();
+
+    public CacheInvalidationService(CacheManager cacheManager,
+                                    RedisKeyScanner redisKeyScanner,
+                                    CacheKeyIndex cacheKeyIndex,
+                                    StockLevelStore stockLevelStore,
+                                    CatalogSnapshotService catalogSnapshotService,
+                                    NegativeLookupCache negativeLookupCache) {
+        this.cacheManager = cacheManager;
+        this.prefixEvictor = ResilientCache.guard((cache, keyPrefix) -> redisKeyScanner.evictByPrefix(cache, keyPrefix));
+        this.keyEvictor = ResilientCache.guardKeys((cache, keys) -> redisKeyScanner.evictKeys(cache, keys));
+        this.cacheKeyIndex = cacheKeyIndex;
+        this.stockLevelStore = stockLevelStore;
+        this.catalogSnapshotService = catalogSnapshotService;
+        this.negativeLookupCache = negativeLookupCache;
+    }
+
+    // New orders change the order indexes of their users, not any cached order
+    public void ordersPlaced(String operation, Collection<String> usernames, Collection<Long> productIds) {
+        afterCommit(operation, () -> evictOrderIndexes(usernames) + evictPurchases(usernames, productIds));
+    }
+
+    // Submitted orders accepted by the intake workers are already indexed, only their own entries change
+    public void ordersAccepted(String operation, Collection<String> usernames, Collection<Long> orderIds, Collection<Long> productIds) {
+        afterCommit(operation, () -> evictOrderEntries(orderIds) + evictPurchases(usernames, productIds));
+    }
+
+    public void orderSubmitted(String username) {
+        afterCommit("order-submitted", () -> evictOrderIndexes(Collections.singleton(username)));
+    }
+
+    public void orderUpdated(String operation, Long orderId, Collection<Long> restockedProductIds) {
+        afterCommit(operation, () -> evictOrderEntries(Collections.singleton(orderId)) + evictStock(restockedProductIds));
+    }
+
+    // Canceled orders no longer count towards the popularity ranking or their user's purchase history
+    public void orderCanceled(Long orderId, String username, Collection<Long> restockedProductIds) {
+        afterCommit("order-canceled", () -> evictOrderEntries(Collections.singleton(orderId))
+                + evictPurchases(Collections.singleton(username), restockedProductIds));
+    }
+
+    public void popularityRebuilt() {
+        afterCommit("popularity-rebuilt", () -> evictIndexed(TOP_POPULAR_CACHE, TOP_POPULAR_PREFIX));
+    }
+
+    public void purchaseHistoryRebuilt() {
+        // Every user's keys at once, rare enough for a scan
+        afterCommit("purchase-history-rebuilt", () -> evictByPrefix(RECENT_CACHE, "recent-")
+                + evictByPrefix(FREQUENT_CACHE, "frequent-"));
+    }
+
+    public void stockChanged(String operation, Collection<Long> productIds) {
+        afterCommit(operation, () -> evictStock(productIds));
+    }
+
+    // Order counts written behind by the inventory ledger, after the placing orders already evicted
+    public void orderCountsChanged(String operation, Collection<Long> productIds) {
+        afterCommit(operation, () -> evictStock(productIds) + evictIndexed(TOP_POPULAR_CACHE, TOP_POPULAR_PREFIX));
+    }
+
+    public void productChanged(String operation, Long productId) {
+        afterCommit(operation, () -> {
+            catalogSnapshotService.productChanged(productId);
+            return forgetMissing(NegativeLookupCache.PRODUCT, productId)
+                    + evict(ProductCatalog.CACHE_NAME, ProductCatalog.productKey(productId))
+                    + evictStock(Collections.singleton(productId))
+                    + evictIndexed(TOP_POPULAR_CACHE, TOP_POPULAR_PREFIX);
+        });
+    }
+
+    public void userCreated(String username) {
+        afterCommit("user-created", () -> forgetMissing(NegativeLookupCache.USER, username));
+    }
+
+    private long forgetMissing(String kind, Object key) {
+        return negativeLookupCache.forget(kind, key) ? 1 : 0;
+    }
+
+    // Called by the cached method on a fill, so an eviction of the key's group finds the key
+    public void keyCached(String cacheName, String keyPrefix, Object suffix) {
+        cacheKeyIndex.keyCached(cacheName, keyPrefix, suffix);
+    }
+
+    public Map<String, InvalidationStats> getStats() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(stats));
+    }
+
+    // Key groups of the user scoped caches, the layout of UserScopedKeyGenerator
+    public static String recentPrefix(String username) {
+        return "recent-" + username + "-";
+    }
+
+    public static String frequentPrefix(String username) {
+        return "frequent-" + username + "-";
+    }
+
+    private long evictOrderIndexes(Collection<String> usernames) {
+        long keys = evict(OrderSnapshots.CACHE_NAME, OrderSnapshots.ALL_KEY);
+        for (String username : usernames) {
+            keys += evict(OrderSnapshots.INDEX_CACHE_NAME, username);
+        }
+        return keys;
+    }
+
+    private long evictOrderEntries(Collection<Long> orderIds) {
+        long keys = 0;
+        for (Long orderId : orderIds) {
+            keys += evict(OrderSnapshots.CACHE_NAME, OrderSnapshots.orderKey(orderId));
+        }
+        return keys;
+    }
+
+    private long evictPurchases(Collection<String> usernames, Collection<Long> productIds) {
+        long keys = evictStock(productIds);
+        // Popularity and purchase history change with every placed or canceled order
+        keys += evictIndexed(TOP_POPULAR_CACHE, TOP_POPULAR_PREFIX);
+        for (String username : usernames) {
+            keys += evictIndexed(RECENT_CACHE, recentPrefix(username));
+            keys += evictIndexed(FREQUENT_CACHE, frequentPrefix(username));
+        }
+        return keys;
+    }
+
+    private long evictStock(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return 0;
+        }
+        // Storefront reads only need fresh stock levels; admin views embed the quantity
+        long keys = stockLevelStore.evict(productIds);
+        List<String> adminKeys = new ArrayList<>(productIds.size());
+        for (Long productId : productIds) {
+            adminKeys.add("admin-product-" + productId);
+        }
+        return keys + evictKeys("admin-products", adminKeys);
+    }
+
+    private long evict(String cacheName, Object key) {
+        return evictKeys(cacheName, Collections.singleton(key));
+    }
+
+    private long evictKeys(String cacheName, Collection<?> keys) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache == null || keys.isEmpty()) {
+            return 0;
+        }
+        if (cache instanceof TwoLevelCache) {
+            // Also drops the keys from every node's local cache
+            return ((TwoLevelCache) cache).evictKeys(keyEvictor, keys);
+        }
+        if (cache instanceof MeteredCache) {
+            return ((MeteredCache) cache).evictKeys(keyEvictor, keys);
+        }
+        return keyEvictor.evictKeys(cache, keys);
+    }
+
+    // Deletes the keys the index lists for the prefix; only if Redis cannot be asked is the keyspace scanned
+    private long evictIndexed(String cacheName, String keyPrefix) {
+        Set<String> keys = cacheKeyIndex.keys(cacheName, keyPrefix);
+        if (keys == null) {
+            return evictByPrefix(cacheName, keyPrefix);
+        }
+        return evictKeys(cacheName, keys);
+    }
+
+    private long evictByPrefix(String cacheName, String keyPrefix) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache == null) {
+            return 0;
+        }
+        if (cache instanceof TwoLevelCache) {
+            // Also drops the prefix from every node's local cache
+            return ((TwoLevelCache) cache).evictByPrefix(keyPrefix);
+        }
+        if (cache instanceof MeteredCache) {
+            return ((MeteredCache) cache).evictByPrefix(prefixEvictor, keyPrefix);
+        }
+        return prefixEvictor.evictByPrefix(cache, keyPrefix);
+    }
+
+    private void afterCommit(String operation, KeyEviction eviction) {
+        Runnable run = () -> {
+            try {
+                long keys = eviction.evict();
+                stats.computeIfAbsent(operation, name -> new InvalidationStats()).record(keys);
+                log.debug("Cache invalidation for {} evicted {} keys", operation, keys);
+            } catch (RuntimeException e) {
+                log.error("Cache invalidation for {} failed: {}", operation, e.getMessage());
+            }
+        };
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    run.run();
+                }
+            });
+        } else {
+            run.run();
+        }
+    }
+
+    @FunctionalInterface
+    private interface KeyEviction {
+        long evict();
+    }
+
+    @Getter
+    public static class InvalidationStats {
+        private final AtomicLong writes = new AtomicLong();
+        private final AtomicLong keysInvalidated = new AtomicLong();
+        private volatile long lastKeysInvalidated;
+        private volatile long maxKeysInvalidated;
+
+        private void record(long keys) {
+            writes.incrementAndGet();
+            keysInvalidated.addAndGet(keys);
+            lastKeysInvalidated = keys;
+            if (keys > maxKeysInvalidated) {
+                maxKeysInvalidated = keys;
+            }
+        }
+    }
+}
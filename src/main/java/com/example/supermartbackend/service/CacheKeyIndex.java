@@ -0,0 +1,61 @@
+package com.example.supermartbackend.service;
+
+import com.example.supermartbackend.cache.RedisCircuitBreaker;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Remembers which keys of a key group, e.g. {@code recent-alice-}, have been cached, one Redis set per
+ * group shared by all nodes, so the group can be evicted by deleting those keys instead of scanning the
+ * keyspace. Members are only added: a key filled again right after an eviction stays listed for the next one.
+ * The sets outlive the entries they list, so the TTL must not be shorter than the caches' TTLs.
+ */
+@Component
+public class CacheKeyIndex {
+
+    private static final String INDEX_PREFIX = "cache-keys:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisCircuitBreaker circuitBreaker;
+    private final long ttlSeconds;
+
+    public CacheKeyIndex(RedisConnectionFactory redisConnectionFactory,
+                         RedisCircuitBreaker circuitBreaker,
+                         @Value("${app.cache.key-index.ttl-minutes:60}") long ttlMinutes) {
+        this.redisTemplate = new StringRedisTemplate(redisConnectionFactory);
+        this.redisTemplate.afterPropertiesSet();
+        this.circuitBreaker = circuitBreaker;
+        this.ttlSeconds = ttlMinutes * 60;
+    }
+
+    // Called by the cached method when it runs, so only fills are recorded; keys are keyPrefix + suffix
+    public void keyCached(String cacheName, String keyPrefix, Object suffix) {
+        String indexKey = indexKey(cacheName, keyPrefix);
+        circuitBreaker.run(() -> redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            stringConnection.sAdd(indexKey, String.valueOf(suffix));
+            stringConnection.expire(indexKey, ttlSeconds);
+            return null;
+        }), () -> { });
+    }
+
+    // The cached keys of the group, or null if Redis cannot be asked and the caller has to evict by prefix
+    public Set<String> keys(String cacheName, String keyPrefix) {
+        Set<String> suffixes = circuitBreaker.call(() -> redisTemplate.opsForSet().members(indexKey(cacheName, keyPrefix)), () -> null);
+        if (suffixes == null) {
+            return null;
+        }
+        return suffixes.stream().map(suffix -> keyPrefix + suffix).collect(Collectors.toSet());
+    }
+
+    private static String indexKey(String cacheName, String keyPrefix) {
+        return INDEX_PREFIX + cacheName + ":" + keyPrefix;
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.supermartbackend.service;
+
+import com.example.supermartbackend.cache.CacheMetricsRegistry;
+import com.example.supermartbackend.cache.MeteredCache;
+import com.example.supermartbackend.cache.RedisCircuitBreaker;
+import com.example.supermartbackend.cache.ResilientCache;
+import com.example.supermartbackend.cache.TwoLevelCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Statistics for /admin/cache/stats. Counters come from memory; Redis key counts come from a
+ * paged SCAN that runs at most once per refresh interval, so polling the endpoint stays cheap.
+ */
+@Service
+@Slf4j
+public class CacheStatsService {
+
+    private final CacheManager cacheManager;
+    private final CacheMetricsRegistry metricsRegistry;
+    private final RedisKeyScanner redisKeyScanner;
+    private final RedisCircuitBreaker redisCircuitBreaker;
+    private final long keyCountRefreshMs;
+
+    private final AtomicBoolean scanning = new AtomicBoolean();
+    private volatile KeyCounts keyCounts = new KeyCounts(Collections.emptyMap(), 0, 0);
+
+    public CacheStatsService(CacheManager cacheManager,
+                             CacheMetricsRegistry metricsRegistry,
+                             RedisKeyScanner redisKeyScanner,
+                             RedisCircuitBreaker redisCircuitBreaker,
+                             @Value("${app.cache.stats.key-count-refresh-ms:60000}") long keyCountRefreshMs) {
+        this.cacheManager = cacheManager;
+        this.metricsRegistry = metricsRegistry;
+        this.redisKeyScanner = redisKeyScanner;
+        this.redisCircuitBreaker = redisCircuitBreaker;
+        this.keyCountRefreshMs = keyCountRefreshMs;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("cacheNames", cacheManager.getCacheNames());
+        stats.put("caches", metricsRegistry.snapshot());
+        stats.put("redis", redisCircuitBreaker.getStats());
+
+        try {
+            KeyCounts counts = currentKeyCounts();
+            stats.put("totalKeys", counts.totalKeys);
+            stats.put("keysPerCache", counts.perCache);
+            stats.put("keyCountsAgeMs", counts.scannedAt == 0 ? null : System.currentTimeMillis() - counts.scannedAt);
+        } catch (Exception e) {
+            stats.put("redisError", e.getMessage());
+        }
+        return stats;
+    }
+
+    private KeyCounts currentKeyCounts() {
+        KeyCounts counts = keyCounts;
+        boolean stale = System.currentTimeMillis() - counts.scannedAt >= keyCountRefreshMs;
+        // One poller rescans, concurrent pollers keep getting the previous counts, as do all while Redis is down
+        if (stale && redisCircuitBreaker.isClosed() && scanning.compareAndSet(false, true)) {
+            try {
+                counts = scanKeyCounts();
+                keyCounts = counts;
+            } finally {
+                scanning.set(false);
+            }
+        }
+        return counts;
+    }
+
+    private KeyCounts scanKeyCounts() {
+        Map<String, String> prefixes = new LinkedHashMap<>();
+        for (String cacheName : cacheManager.getCacheNames()) {
+            Cache cache = cacheManager.getCache(cacheName);
+            if (cache != null) {
+                prefixes.put(keyPrefixOf(cache), cacheName);
+            }
+        }
+
+        long start = System.currentTimeMillis();
+        Map<String, Long> countsByPrefix = redisKeyScanner.countByPrefix(prefixes.keySet());
+        Map<String, Long> perCache = new LinkedHashMap<>();
+        countsByPrefix.forEach((prefix, count) -> perCache.put(prefixes.get(prefix), count));
+        long totalKeys = redisKeyScanner.dbSize();
+        log.debug("Counted cache keys in {} ms", System.currentTimeMillis() - start);
+        return new KeyCounts(perCache, totalKeys, System.currentTimeMillis());
+    }
+
+    private static String keyPrefixOf(Cache cache) {
+        Cache target = cache;
+        if (target instanceof TwoLevelCache) {
+            target = ((TwoLevelCache) target).getRemote();
+        } else if (target instanceof MeteredCache) {
+            target = ((MeteredCache) target).getDelegate();
+        }
+        if (target instanceof ResilientCache) {
+            target = ((ResilientCache) target).getDelegate();
+        }
+        if (target instanceof RedisCache) {
+            return ((RedisCache) target).getCacheConfiguration().getKeyPrefixFor(cache.getName());
+        }
+        return cache.getName() + "::";
+    }
+
+    private static final class KeyCounts {
+        private final Map<String, Long> perCache;
+        private final long totalKeys;
+        private final long scannedAt;
+
+        private KeyCounts(Map<String, Long> perCache, long totalKeys, long scannedAt) {
+            this.perCache = perCache;
+            this.totalKeys = totalKeys;
+            this.scannedAt = scannedAt;
+        }
+    }
+}
@@ -1,42 +1,282 @@
 package com.example.supermartbackend.service;
 
-import com.example.supermartbackend.service.impl.ProductServiceImpl;
-import lombok.RequiredArgsConstructor;
+import com.example.supermartbackend.cache.HotKeyWindow;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
 import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutor;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
-import java.util.concurrent.CompletableFuture;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
+/**
+ * Warms the shared caches with the reads that were requested most recently. Replayable product
+ * reads are counted in a sliding {@link HotKeyWindow}, and every node publishes its hottest keys
+ * to Redis, so a freshly started node replays what the cluster is busy with, not a fixed list.
+ * Replays run on a bounded executor as a system principal holding the admin and user roles.
+ * The full catalog listings are warmed as the serialized payloads {@code /products/all} writes,
+ * so the first request after a deploy does not build and compress them.
+ * Per-user caches are not warmed, they are only ever read by their own user.
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class CacheWarmupService {
 
-    private final ProductServiceImpl productService;
+    public static final String WARMUP_PRINCIPAL = "cache-warmup";
 
-    @EventListener(ApplicationReadyEvent.class)
-    public void warmupCache() {
-        log.info("Starting cache warmup...");
-        
-        CompletableFuture.runAsync(() -> {
+    static final String HOT_KEYS_KEY = "cache-warmup:hot-keys";
+
+    private static final String LISTING_KEY_PREFIX = "getListing:";
+
+    // Always warmed, whether or not anything has been recorded yet
+    private static final List<String> DEFAULT_KEYS = Arrays.asList(
+            LISTING_KEY_PREFIX + CatalogPayloadCache.STOREFRONT,
+            LISTING_KEY_PREFIX + CatalogPayloadCache.ADMIN,
+            "getTopPopularProducts:10",
+            "getTopPopularProducts:20");
+
+    private final ProductService productService;
+    private final CatalogPayloadCache catalogPayloadCache;
+    private final StringRedisTemplate redisTemplate;
+    private final Executor executor;
+    private final HotKeyWindow hotKeys;
+    private final Map<String, Consumer<String>> replays = new HashMap<>();
+    private final AtomicReference<WarmupRun> currentRun = new AtomicReference<>();
+
+    @Value("${app.catalog.payload-cache.enabled:true}")
+    private boolean payloadCache;
+
+    @Value("${app.cache.warmup.max-keys:500}")
+    private int maxKeys;
+
+    @Value("${app.cache.warmup.startup-wait-seconds:30}")
+    private long startupWaitSeconds;
+
+    @Value("${app.cache.warmup.hot-keys-ttl-minutes:60}")
+    private long hotKeysTtlMinutes;
+
+    public CacheWarmupService(ProductService productService,
+                              CatalogPayloadCache catalogPayloadCache,
+                              RedisConnectionFactory redisConnectionFactory,
+                              @Qualifier("cacheWarmupExecutor") ThreadPoolExecutor cacheWarmupExecutor,
+                              HotKeyWindow cacheHotKeys) {
+        this.productService = productService;
+        this.catalogPayloadCache = catalogPayloadCache;
+        this.redisTemplate = new StringRedisTemplate(redisConnectionFactory);
+        this.redisTemplate.afterPropertiesSet();
+        this.executor = new DelegatingSecurityContextExecutor(cacheWarmupExecutor, systemContext());
+        this.hotKeys = cacheHotKeys;
+
+        replays.put("getListing", listing -> catalogPayloadCache.getListing(listing, productService.getCatalogListing()));
+        replays.put("getProductById", arg -> productService.getProductById(Long.valueOf(arg)));
+        replays.put("getProductByIdForAdmin", arg -> productService.getProductByIdForAdmin(Long.valueOf(arg)));
+        replays.put("getTopPopularProducts", arg -> productService.getTopPopularProducts(Integer.parseInt(arg)));
+    }
+
+    // The hot key of a replayable ProductService read, as recorded by CacheWarmupRecordingAspect
+    public static String hotKey(String method, Object[] args) {
+        return args.length == 0 ? method : method + ":" + args[0];
+    }
+
+    public static boolean isWarmup() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && WARMUP_PRINCIPAL.equals(authentication.getName());
+    }
+
+    // Holds startup back until the caches are warm or the wait runs out, the rest finishes in the background
+    @EventListener(ApplicationStartedEvent.class)
+    public void warmupOnStartup() {
+        WarmupRun run = warmup("startup");
+        try {
+            if (!run.done.await(startupWaitSeconds, TimeUnit.SECONDS)) {
+                log.warn("Cache warmup still running after {} s, continuing startup: {}", startupWaitSeconds, run.progress());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public WarmupProgress triggerWarmup() {
+        return warmup("manual").progress();
+    }
+
+    public WarmupProgress getProgress() {
+        WarmupRun run = currentRun.get();
+        return run != null ? run.progress() : null;
+    }
+
+    @Scheduled(fixedDelayString = "${app.cache.warmup.publish-interval-ms:60000}")
+    public void publishHotKeys() {
+        Map<String, Long> top = hotKeys.top(maxKeys);
+        if (top.isEmpty()) {
+            return;
+        }
+        Set<ZSetOperations.TypedTuple<String>> tuples = top.entrySet().stream()
+                .map(entry -> new DefaultTypedTuple<>(entry.getKey(), entry.getValue().doubleValue()))
+                .collect(Collectors.toSet());
+        try {
+            // Written aside and renamed, so readers never see a half written set
+            String staging = HOT_KEYS_KEY + ":" + UUID.randomUUID();
+            redisTemplate.opsForZSet().add(staging, tuples);
+            redisTemplate.rename(staging, HOT_KEYS_KEY);
+            redisTemplate.expire(HOT_KEYS_KEY, Duration.ofMinutes(hotKeysTtlMinutes));
+        } catch (RuntimeException e) {
+            log.warn("Could not publish hot cache keys: {}", e.getMessage());
+        }
+    }
+
+    private WarmupRun warmup(String trigger) {
+        WarmupRun running = currentRun.get();
+        if (running != null && running.done.getCount() > 0) {
+            return running;
+        }
+
+        List<String> keys = keysToWarm();
+        WarmupRun run = new WarmupRun(trigger, keys.size());
+        if (!currentRun.compareAndSet(running, run)) {
+            return currentRun.get();
+        }
+        log.info("Starting {} cache warmup of {} keys", trigger, keys.size());
+
+        for (String key : keys) {
             try {
-                // Warm up most frequently accessed product caches
-                log.info("Warming up products cache...");
-                productService.getAllInStockProducts();
-                
-                // Warm up top products caches with common count values
-                log.info("Warming up top products caches...");
-                productService.getTopProfitableProducts(10);
-                productService.getTopProfitableProducts(20);
-                productService.getTopPopularProducts(10);
-                productService.getTopPopularProducts(20);
-                
-                log.info("Cache warmup completed successfully");
-            } catch (Exception e) {
-                log.error("Error during cache warmup: {}", e.getMessage(), e);
+                executor.execute(() -> {
+                    try {
+                        replay(key);
+                        run.completed.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        log.debug("Warming {} failed: {}", key, e.getMessage());
+                        run.failed.incrementAndGet();
+                    } finally {
+                        run.finishOne();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                run.failed.incrementAndGet();
+                run.finishOne();
             }
-        });
+        }
+        return run;
+    }
+
+    private List<String> keysToWarm() {
+        Set<String> keys = new LinkedHashSet<>(DEFAULT_KEYS);
+        try {
+            Set<String> published = redisTemplate.opsForZSet().reverseRange(HOT_KEYS_KEY, 0, maxKeys - 1);
+            if (published != null) {
+                keys.addAll(published);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not read hot cache keys, warming this node's own: {}", e.getMessage());
+        }
+        keys.addAll(hotKeys.top(maxKeys).keySet());
+        return keys.stream()
+                // Without the payload cache the listings are built per request, there is nothing to warm
+                .filter(key -> payloadCache || !key.startsWith(LISTING_KEY_PREFIX))
+                .limit(maxKeys)
+                .collect(Collectors.toList());
+    }
+
+    private void replay(String key) {
+        int separator = key.indexOf(':');
+        String method = separator < 0 ? key : key.substring(0, separator);
+        Consumer<String> replay = replays.get(method);
+        if (replay == null) {
+            throw new IllegalArgumentException("Not a replayable cache key: " + key);
+        }
+        replay.accept(separator < 0 ? null : key.substring(separator + 1));
+    }
+
+    private static SecurityContext systemContext() {
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+        context.setAuthentication(new UsernamePasswordAuthenticationToken(WARMUP_PRINCIPAL, null,
+                AuthorityUtils.createAuthorityList("ROLE_ADMIN", "ROLE_USER")));
+        return context;
+    }
+
+    private static final class WarmupRun {
+        private final String trigger;
+        private final int total;
+        private final long startedAt = System.currentTimeMillis();
+        private final AtomicInteger completed = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final CountDownLatch done;
+        private volatile long finishedAt;
+
+        private WarmupRun(String trigger, int total) {
+            this.trigger = trigger;
+            this.total = total;
+            this.done = new CountDownLatch(total);
+            this.finishedAt = total == 0 ? startedAt : 0;
+        }
+
+        private void finishOne() {
+            done.countDown();
+            if (done.getCount() == 0) {
+                finishedAt = System.currentTimeMillis();
+                log.info("Cache warmup finished in {} ms: {} warmed, {} failed", finishedAt - startedAt, completed.get(), failed.get());
+            }
+        }
+
+        private WarmupProgress progress() {
+            return new WarmupProgress(trigger, total, completed.get(), failed.get(), startedAt, finishedAt);
+        }
+    }
+
+    @Getter
+    public static class WarmupProgress {
+        private final String trigger;
+        private final boolean running;
+        private final int totalKeys;
+        private final int warmedKeys;
+        private final int failedKeys;
+        private final long elapsedMs;
+        // Projected from the pace so far while running, 0 once finished
+        private final long estimatedRemainingMs;
+
+        private WarmupProgress(String trigger, int totalKeys, int warmedKeys, int failedKeys, long startedAt, long finishedAt) {
+            int finishedKeys = warmedKeys + failedKeys;
+            this.trigger = trigger;
+            this.running = finishedKeys < totalKeys;
+            this.totalKeys = totalKeys;
+            this.warmedKeys = warmedKeys;
+            this.failedKeys = failedKeys;
+            this.elapsedMs = (running ? System.currentTimeMillis() : finishedAt) - startedAt;
+            this.estimatedRemainingMs = !running || finishedKeys == 0 ? 0
+                    : elapsedMs * (totalKeys - finishedKeys) / finishedKeys;
+        }
+
+        public double getPercentComplete() {
+            return totalKeys == 0 ? 100 : 100.0 * (warmedKeys + failedKeys) / totalKeys;
+        }
     }
-} 
\ No newline at end of file
+}
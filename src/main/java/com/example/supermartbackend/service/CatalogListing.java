@@ -0,0 +1,37 @@
+package com.example.supermartbackend.service;
+
+import com.example.supermartbackend.dto.AdminProductResponse;
+import com.example.supermartbackend.dto.ProductResponse;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * One read of the catalog snapshot and its stock levels. The tag and both listings come from that
+ * same read, so a listing is never newer or older than the tag it is sent and cached under.
+ * The listings are only built when asked for; a 304 needs the tag alone.
+ */
+@RequiredArgsConstructor
+public class CatalogListing {
+
+    @Getter
+    private final long version;
+
+    // The snapshot version plus a hash of the stock levels read with it
+    @Getter
+    private final String tag;
+
+    private final Supplier<List<ProductResponse>> inStockProducts;
+    private final Supplier<List<AdminProductResponse>> productsForAdmin;
+
+    public List<ProductResponse> getInStockProducts() {
+        return inStockProducts.get();
+    }
+
+    // Callers check the admin role, as for the admin page of the listing
+    public List<AdminProductResponse> getProductsForAdmin() {
+        return productsForAdmin.get();
+    }
+}
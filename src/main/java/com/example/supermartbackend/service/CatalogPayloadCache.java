@@ -0,0 +1,90 @@
+package com.example.supermartbackend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the latest catalog listings as ready-to-send JSON, plain and gzipped, so a request whose
+ * listing has not changed since the last one writes bytes instead of building and serializing it
+ * again. Each listing is tagged with the catalog tag it was built for and rebuilt once, by one
+ * caller, when the tag moves on.
+ */
+@Component
+@Slf4j
+public class CatalogPayloadCache {
+
+    public static final String STOREFRONT = "storefront";
+    public static final String ADMIN = "admin";
+
+    private final ObjectMapper objectMapper;
+    private final Map<String, Payload> payloads = new ConcurrentHashMap<>();
+    private final Map<String, Object> buildLocks = new ConcurrentHashMap<>();
+
+    // The MVC object mapper, so the bytes match what the message converter would write
+    public CatalogPayloadCache(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    // The storefront or admin listing of the catalog read, built from that read when its tag is new
+    public Payload getListing(String listing, CatalogListing catalog) {
+        Supplier<?> body = ADMIN.equals(listing) ? catalog::getProductsForAdmin : catalog::getInStockProducts;
+        return get(listing, catalog.getTag(), body);
+    }
+
+    public Payload get(String listing, String tag, Supplier<?> body) {
+        Payload payload = payloads.get(listing);
+        if (payload != null && payload.getTag().equals(tag)) {
+            return payload;
+        }
+        synchronized (buildLocks.computeIfAbsent(listing, name -> new Object())) {
+            payload = payloads.get(listing);
+            if (payload == null || !payload.getTag().equals(tag)) {
+                payload = build(tag, body.get());
+                payloads.put(listing, payload);
+                log.debug("Rebuilt the {} catalog payload for tag {}: {} bytes, {} gzipped",
+                        listing, tag, payload.getIdentity().length, payload.getGzip().length);
+            }
+            return payload;
+        }
+    }
+
+    private Payload build(String tag, Object body) {
+        try {
+            byte[] identity = objectMapper.writeValueAsBytes(body);
+            return new Payload(tag, identity, gzip(identity));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize the catalog listing", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    // Shared between requests, the arrays must not be modified
+    @Getter
+    @RequiredArgsConstructor
+    public static final class Payload {
+        private final String tag;
+        private final byte[] identity;
+        private final byte[] gzip;
+    }
+}
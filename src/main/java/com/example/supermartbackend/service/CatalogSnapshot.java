@@ -0,0 +1,109 @@
+package com.example.supermartbackend.service;
+
+import com.example.supermartbackend.dto.CatalogProduct;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * One version of the static fields of every product, sorted by id. Snapshots never change:
+ * a write produces a patched copy, so a reader keeps a consistent catalog for as long as it
+ * holds one. The items are shared between readers and must not be mutated.
+ */
+public final class CatalogSnapshot {
+
+    private final long version;
+    private final long[] ids;
+    private final Item[] items;
+
+    private CatalogSnapshot(long version, Item[] items) {
+        this.version = version;
+        this.items = items;
+        this.ids = new long[items.length];
+        for (int i = 0; i < items.length; i++) {
+            ids[i] = items[i].getProduct().getId();
+        }
+    }
+
+    public static CatalogSnapshot of(long version, List<Item> items) {
+        Item[] sorted = items.toArray(new Item[0]);
+        Arrays.sort(sorted, Comparator.comparing(item -> item.getProduct().getId()));
+        return new CatalogSnapshot(version, sorted);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return items.length;
+    }
+
+    public List<Item> getItems() {
+        return Collections.unmodifiableList(Arrays.asList(items));
+    }
+
+    // Up to max items with ids above afterId, from the first one when it is null
+    public List<Item> getItemsAfter(Long afterId, int max) {
+        int from = 0;
+        if (afterId != null) {
+            int index = Arrays.binarySearch(ids, afterId);
+            from = index >= 0 ? index + 1 : -index - 1;
+        }
+        return Collections.unmodifiableList(Arrays.asList(items).subList(from, Math.min(items.length, from + max)));
+    }
+
+    public Item get(Long id) {
+        int index = Arrays.binarySearch(ids, id);
+        return index >= 0 ? items[index] : null;
+    }
+
+    // Adds or replaces the item under the next version; an unchanged item keeps this snapshot
+    public CatalogSnapshot with(Item item) {
+        int index = Arrays.binarySearch(ids, item.getProduct().getId());
+        if (index >= 0) {
+            if (items[index].equals(item)) {
+                return this;
+            }
+            Item[] patched = items.clone();
+            patched[index] = item;
+            return new CatalogSnapshot(version + 1, patched);
+        }
+        int insertAt = -index - 1;
+        Item[] patched = new Item[items.length + 1];
+        System.arraycopy(items, 0, patched, 0, insertAt);
+        patched[insertAt] = item;
+        System.arraycopy(items, insertAt, patched, insertAt + 1, items.length - insertAt);
+        return new CatalogSnapshot(version + 1, patched);
+    }
+
+    public CatalogSnapshot without(Long id) {
+        int index = Arrays.binarySearch(ids, id);
+        if (index < 0) {
+            return this;
+        }
+        Item[] patched = new Item[items.length - 1];
+        System.arraycopy(items, 0, patched, 0, index);
+        System.arraycopy(items, index + 1, patched, index, items.length - index - 1);
+        return new CatalogSnapshot(version + 1, patched);
+    }
+
+    public boolean hasSameItems(CatalogSnapshot other) {
+        return Arrays.equals(items, other.items);
+    }
+
+    // The storefront fields plus the wholesale price admins see
+    @Getter
+    @EqualsAndHashCode
+    @RequiredArgsConstructor
+    public static final class Item {
+        private final CatalogProduct product;
+        private final BigDecimal wholesalePrice;
+    }
+}
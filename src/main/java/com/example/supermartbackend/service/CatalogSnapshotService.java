@@ -0,0 +1,167 @@
+package com.example.supermartbackend.service;
+
+import com.example.supermartbackend.cache.CacheInvalidationBus;
+import com.example.supermartbackend.cache.CacheInvalidationMessage;
+import com.example.supermartbackend.cache.RedisCircuitBreaker;
+import com.example.supermartbackend.dto.CatalogProduct;
+import com.example.supermartbackend.entity.Product;
+import com.example.supermartbackend.repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps the whole catalog in memory as a {@link CatalogSnapshot}. Readers take the current snapshot
+ * without locking; a product write re-reads that one row and swaps in a patched copy, and the change
+ * is broadcast on the invalidation bus so every node patches its own. Changes missed while Redis was
+ * unreachable are caught up by a full reload, as is any drift by the periodic resync.
+ * <p>
+ * The profit ranking is kept next to the snapshot as a {@link ProfitIndex} and patched by the same
+ * writes, so it follows the same feed on every node.
+ */
+@Service
+@Slf4j
+public class CatalogSnapshotService {
+
+    static final String FEED_NAME = "catalog-snapshot";
+    private static final int LOAD_PAGE_SIZE = 1000;
+
+    private final ProductRepository productRepository;
+    private final CacheInvalidationBus changeFeed;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final AtomicReference<CatalogSnapshot> current = new AtomicReference<>();
+    private volatile ProfitIndex profitIndex;
+    // Serializes writers, so a patch can never be overwritten by an older reload
+    private final Object writeLock = new Object();
+
+    public CatalogSnapshotService(ProductRepository productRepository,
+                                  CacheInvalidationBus cacheInvalidationBus,
+                                  RedisCircuitBreaker redisCircuitBreaker) {
+        this.productRepository = productRepository;
+        this.changeFeed = cacheInvalidationBus;
+        changeFeed.subscribe(this::onChange);
+        redisCircuitBreaker.onRecovery(this::resync);
+    }
+
+    public CatalogSnapshot current() {
+        CatalogSnapshot snapshot = current.get();
+        return snapshot != null ? snapshot : load();
+    }
+
+    public long getVersion() {
+        return current().getVersion();
+    }
+
+    // The count items with the highest margin, highest first
+    public List<CatalogSnapshot.Item> getTopByProfit(int count) {
+        current();
+        return profitIndex.top(count);
+    }
+
+    // Called once the product write committed
+    public void productChanged(Long productId) {
+        refresh(productId);
+        changeFeed.publish(new CacheInvalidationMessage(nodeId, CacheInvalidationMessage.Type.EVICT, FEED_NAME, productId.toString()));
+    }
+
+    // Only static fields are compared: stock writes leave updated_at alone, so checkouts never look like drift
+    @Scheduled(fixedDelayString = "${app.catalog.snapshot.resync-interval-ms:600000}")
+    public void resync() {
+        if (current.get() == null) {
+            return;
+        }
+        try {
+            synchronized (writeLock) {
+                CatalogSnapshot snapshot = current.get();
+                CatalogSnapshot loaded = CatalogSnapshot.of(snapshot.getVersion() + 1, loadItems());
+                if (!loaded.hasSameItems(snapshot)) {
+                    log.debug("Catalog snapshot was out of date, resynced to version {}", loaded.getVersion());
+                    profitIndex = ProfitIndex.of(loaded.getItems());
+                    current.set(loaded);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not resync the catalog snapshot: {}", e.getMessage());
+        }
+    }
+
+    private CatalogSnapshot load() {
+        synchronized (writeLock) {
+            CatalogSnapshot snapshot = current.get();
+            if (snapshot == null) {
+                // Starting from the clock keeps versions increasing across restarts
+                snapshot = CatalogSnapshot.of(System.currentTimeMillis(), loadItems());
+                profitIndex = ProfitIndex.of(snapshot.getItems());
+                current.set(snapshot);
+            }
+            return snapshot;
+        }
+    }
+
+    private void refresh(Long productId) {
+        synchronized (writeLock) {
+            CatalogSnapshot snapshot = current.get();
+            if (snapshot == null) {
+                // Not loaded yet, the first read will see the change
+                return;
+            }
+            Optional<Product> product = productRepository.findById(productId);
+            CatalogSnapshot.Item previous = snapshot.get(productId);
+            if (product.isPresent()) {
+                CatalogSnapshot.Item item = toItem(product.get());
+                profitIndex.put(previous, item);
+                current.set(snapshot.with(item));
+            } else {
+                if (previous != null) {
+                    profitIndex.remove(previous);
+                }
+                current.set(snapshot.without(productId));
+            }
+        }
+    }
+
+    private void onChange(CacheInvalidationMessage message) {
+        if (!FEED_NAME.equals(message.getCacheName()) || nodeId.equals(message.getNodeId())) {
+            return;
+        }
+        try {
+            refresh(Long.valueOf(message.getKey()));
+        } catch (RuntimeException e) {
+            log.warn("Could not apply catalog change for product {}: {}", message.getKey(), e.getMessage());
+        }
+    }
+
+    // Read a page at a time, so the rows of one page are all that is held besides the items
+    private List<CatalogSnapshot.Item> loadItems() {
+        List<CatalogSnapshot.Item> items = new ArrayList<>();
+        List<Product> page = productRepository.findPage(null, LOAD_PAGE_SIZE);
+        while (!page.isEmpty()) {
+            for (Product product : page) {
+                items.add(toItem(product));
+            }
+            if (page.size() < LOAD_PAGE_SIZE) {
+                break;
+            }
+            page = productRepository.findPage(page.get(page.size() - 1).getId(), LOAD_PAGE_SIZE);
+        }
+        return items;
+    }
+
+    private CatalogSnapshot.Item toItem(Product product) {
+        return new CatalogSnapshot.Item(new CatalogProduct(
+                product.getId(),
+                product.getName(),
+                product.getDescription(),
+                product.getRetailPrice(),
+                product.getCreatedAt(),
+                product.getUpdatedAt()
+        ), product.getWholesalePrice());
+    }
+}
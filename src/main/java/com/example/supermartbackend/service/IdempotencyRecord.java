@@ -0,0 +1,18 @@
+package com.example.supermartbackend.service;
+
+import com.example.supermartbackend.dto.OrderResponse;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// What an idempotency key is bound to: the hash of the first request body and, once it completed, its response
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotencyRecord {
+    
+    private String requestHash;
+    
+    // Null while the first request is still in progress
+    private OrderResponse response;
+}
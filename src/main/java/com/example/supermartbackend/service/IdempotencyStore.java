@@ -0,0 +1,23 @@
+package com.example.supermartbackend.service;
+
+import com.example.supermartbackend.dto.OrderResponse;
+
+import java.util.Optional;
+
+public interface IdempotencyStore {
+    
+    // The claimed or completed request of the key
+    Optional<IdempotencyRecord> find(String key);
+    
+    // Marks the key as in progress for the request, false when another request already claimed or completed it
+    boolean claim(String key, String requestHash);
+    
+    void complete(String key, String requestHash, OrderResponse response);
+    
+    // Extends the request's claim while it is still running, false when the key no longer holds that claim
+    boolean renew(String key, String requestHash);
+    
+    // Forgets the request's in-progress claim so the client can retry after a failed placement;
+    // a completed key, or a claim taken since by another request, is left alone
+    void release(String key, String requestHash);
+}
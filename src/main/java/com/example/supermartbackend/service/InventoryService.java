@@ -0,0 +1,26 @@
+package com.example.supermartbackend.service;
+
+import com.example.supermartbackend.entity.Order;
+import com.example.supermartbackend.entity.Product;
+
+import java.util.List;
+import java.util.Map;
+
+public interface InventoryService {
+    
+    // Reserves stock for a basket of product id -> quantity and returns the products of the basket;
+    // every product of a reserved basket counts one more order, written along with its stock
+    Map<Long, Product> reserve(Map<Long, Integer> quantities);
+    
+    // Reserves several baskets in one go; a basket without enough stock is rejected without affecting the others
+    BatchReservation reserveAll(List<Map<Long, Integer>> baskets);
+    
+    // Returns stock of a canceled basket and takes its order back from the order counts
+    void release(Map<Long, Integer> quantities);
+    
+    // Called with the order holding a reservation before its transaction commits
+    void recordReservation(Order order, Map<Long, Integer> quantities);
+    
+    // Called after an admin changed the stored quantity of a product by delta
+    void stockAdjusted(Long productId, int delta);
+}
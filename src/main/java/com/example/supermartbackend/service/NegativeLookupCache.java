@@ -0,0 +1,76 @@
+package com.example.supermartbackend.service;
+
+import com.example.supermartbackend.cache.CacheInvalidationBus;
+import com.example.supermartbackend.cache.CacheInvalidationMessage;
+import com.example.supermartbackend.cache.RedisCircuitBreaker;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Remembers for a short while that a product id or username does not exist, so repeated lookups
+ * of unknown keys (bots, stale links, expired accounts) stop reaching the database after the
+ * first miss. The entries are held on this node only: checking a key that exists, as every
+ * authenticated request does for its user, costs a local lookup and never a Redis round trip.
+ * Each node pays its own first miss per key.
+ * <p>
+ * When a key is created, {@link CacheInvalidationService} calls {@link #forget} and the eviction is
+ * broadcast on the invalidation bus, so the other nodes drop their entry too. Broadcasts missed while
+ * Redis was unreachable are covered by dropping every entry on recovery. A lookup racing with the
+ * creation can still leave an entry behind until it expires.
+ */
+@Component
+public class NegativeLookupCache {
+
+    static final String FEED_NAME = "missing-keys";
+
+    public static final String PRODUCT = "product";
+    public static final String USER = "user";
+
+    private final Cache<String, Boolean> missing;
+    private final CacheInvalidationBus changeFeed;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    public NegativeLookupCache(CacheInvalidationBus cacheInvalidationBus,
+                               RedisCircuitBreaker redisCircuitBreaker,
+                               @Value("${app.cache.negative.ttl-seconds:60}") long ttlSeconds,
+                               @Value("${app.cache.negative.max-entries:10000}") long maxEntries) {
+        this.missing = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+        this.changeFeed = cacheInvalidationBus;
+        changeFeed.subscribe(this::onChange);
+        redisCircuitBreaker.onRecovery(missing::invalidateAll);
+    }
+
+    public boolean isMissing(String kind, Object key) {
+        return missing.getIfPresent(key(kind, key)) != null;
+    }
+
+    public void markMissing(String kind, Object key) {
+        missing.put(key(kind, key), Boolean.TRUE);
+    }
+
+    // Called once the key's creation committed; returns whether this node had it marked missing
+    public boolean forget(String kind, Object key) {
+        String missingKey = key(kind, key);
+        boolean forgotten = missing.asMap().remove(missingKey) != null;
+        changeFeed.publish(new CacheInvalidationMessage(nodeId, CacheInvalidationMessage.Type.EVICT, FEED_NAME, missingKey));
+        return forgotten;
+    }
+
+    static String key(String kind, Object key) {
+        return kind + "-" + key;
+    }
+
+    private void onChange(CacheInvalidationMessage message) {
+        if (FEED_NAME.equals(message.getCacheName()) && !nodeId.equals(message.getNodeId())) {
+            missing.invalidate(message.getKey());
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.supermartbackend.service;
+
+import com.example.supermartbackend.dto.OrderItemRequest;
+import com.example.supermartbackend.dto.OrderRequest;
+import com.example.supermartbackend.dto.OrderResponse;
+import com.example.supermartbackend.exception.IdempotencyConflictException;
+import com.example.supermartbackend.exception.IdempotencyKeyReuseException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Runs an order placement at most once per user and Idempotency-Key.
+ * Duplicates arriving on the same node wait for the running request, duplicates on other nodes
+ * are held off by the claim in the store and poll it for the stored result.
+ * The key is bound to a hash of the first request's basket; reusing it for a different basket is rejected.
+ * <p>
+ * The claim is renewed while the placement runs, however long it takes. Once an order is placed its key is
+ * never released: if its response cannot be stored, the order is still returned and the key stays claimed,
+ * so retries get a conflict rather than a second order.
+ */
+@Service
+@Slf4j
+public class OrderIdempotencyService {
+
+    private static final long POLL_INTERVAL_MS = 100;
+
+    private final IdempotencyStore idempotencyStore;
+    private final long waitTimeoutMs;
+    private final long claimRenewalMs;
+
+    private final ConcurrentMap<String, InFlight> inFlight = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService claimRenewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "idempotency-claim-renewer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public OrderIdempotencyService(IdempotencyStore idempotencyStore,
+                                   @Value("${app.idempotency.wait-timeout-ms:30000}") long waitTimeoutMs,
+                                   @Value("${app.idempotency.claim-ttl-seconds:60}") long claimTtlSeconds) {
+        this.idempotencyStore = idempotencyStore;
+        this.waitTimeoutMs = waitTimeoutMs;
+        // Renewed well before it expires, so one slow or failed renewal does not lose the claim
+        this.claimRenewalMs = Math.max(1, claimTtlSeconds * 1000 / 3);
+    }
+
+    @PreDestroy
+    public void stop() {
+        claimRenewer.shutdownNow();
+    }
+
+    public OrderResponse execute(String idempotencyKey, OrderRequest orderRequest, Supplier<OrderResponse> placement) {
+        String key = SecurityContextHolder.getContext().getAuthentication().getName() + ":" + idempotencyKey;
+        String requestHash = requestHash(orderRequest);
+
+        InFlight request = new InFlight(requestHash);
+        InFlight running = inFlight.putIfAbsent(key, request);
+        if (running != null) {
+            checkSameRequest(running.requestHash, requestHash);
+            // Coalesce with the request already running on this node
+            return await(running.future);
+        }
+
+        try {
+            OrderResponse response = runOnce(key, requestHash, placement);
+            request.future.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            request.future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, request);
+        }
+    }
+
+    // Hex SHA-256 of the basket's items in request order
+    static String requestHash(OrderRequest orderRequest) {
+        StringBuilder basket = new StringBuilder();
+        for (OrderItemRequest item : orderRequest.getOrder()) {
+            basket.append(item.getProductId()).append('x').append(item.getQuantity()).append(';');
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(basket.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every JRE ships SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private OrderResponse runOnce(String key, String requestHash, Supplier<OrderResponse> placement) {
+        Optional<IdempotencyRecord> stored = idempotencyStore.find(key);
+        if (stored.isPresent()) {
+            checkSameRequest(stored.get().getRequestHash(), requestHash);
+            if (stored.get().getResponse() != null) {
+                log.debug("Replaying stored order response for idempotency key {}", key);
+                return stored.get().getResponse();
+            }
+            return awaitStored(key, requestHash);
+        }
+
+        if (!idempotencyStore.claim(key, requestHash)) {
+            return awaitStored(key, requestHash);
+        }
+
+        OrderResponse response;
+        ScheduledFuture<?> renewal = claimRenewer.scheduleAtFixedRate(() -> renewClaim(key, requestHash),
+                claimRenewalMs, claimRenewalMs, TimeUnit.MILLISECONDS);
+        try {
+            response = placement.get();
+        } catch (RuntimeException e) {
+            renewal.cancel(false);
+            idempotencyStore.release(key, requestHash);
+            throw e;
+        }
+        renewal.cancel(false);
+
+        try {
+            idempotencyStore.complete(key, requestHash, response);
+        } catch (RuntimeException e) {
+            // The order is committed, so it is returned; the claim is left for retries to wait on until it expires
+            log.error("Could not store the response of order {} for idempotency key {}: {}", response.getId(), key, e.getMessage());
+        }
+        return response;
+    }
+
+    private void renewClaim(String key, String requestHash) {
+        try {
+            if (!idempotencyStore.renew(key, requestHash)) {
+                log.warn("Idempotency claim for key {} was lost while its order was being placed", key);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not renew the idempotency claim for key {}: {}", key, e.getMessage());
+        }
+    }
+
+    private static void checkSameRequest(String storedHash, String requestHash) {
+        if (!requestHash.equals(storedHash)) {
+            throw new IdempotencyKeyReuseException();
+        }
+    }
+
+    private OrderResponse await(CompletableFuture<OrderResponse> running) {
+        try {
+            return running.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new IdempotencyConflictException();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyConflictException();
+        }
+    }
+
+    private OrderResponse awaitStored(String key, String requestHash) {
+        // Another node holds the claim, wait for it to publish its result
+        long deadline = System.currentTimeMillis() + waitTimeoutMs;
+        while (System.currentTimeMillis() < deadline) {
+            Optional<IdempotencyRecord> stored = idempotencyStore.find(key);
+            if (stored.isPresent()) {
+                // Released and claimed again by a retry of another basket
+                checkSameRequest(stored.get().getRequestHash(), requestHash);
+                if (stored.get().getResponse() != null) {
+                    return stored.get().getResponse();
+                }
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        throw new IdempotencyConflictException();
+    }
+
+    private static final class InFlight {
+        private final String requestHash;
+        private final CompletableFuture<OrderResponse> future = new CompletableFuture<>();
+
+        private InFlight(String requestHash) {
+            this.requestHash = requestHash;
+        }
+    }
+}
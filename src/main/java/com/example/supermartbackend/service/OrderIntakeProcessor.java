@@ -0,0 +1,233 @@
+package com.example.supermartbackend.service;
+
+import com.example.supermartbackend.entity.Order;
+import com.example.supermartbackend.entity.OrderItem;
+import com.example.supermartbackend.repository.OrderRepository;
+import com.example.supermartbackend.repository.PurchaseSummaryRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Moves asynchronously submitted PENDING orders to PROCESSING or REJECTED.
+ * Order ids are queued in memory after the submitting transaction commits and drained by a pool of
+ * workers in micro-batches. Each batch is locked, reserved and committed in one transaction; an order
+ * without enough stock is rejected in it without affecting the others. If the batch transaction fails
+ * its orders are retried one transaction each. Orders that never made it into the queue (full queue,
+ * restart) are picked up again by a periodic sweep.
+ */
+@Service
+@Slf4j
+public class OrderIntakeProcessor {
+
+    private final OrderRepository orderRepository;
+    private final PurchaseSummaryRepository purchaseSummaryRepository;
+    private final InventoryService inventoryService;
+    private final CacheInvalidationService cacheInvalidationService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.orders.async.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.orders.async.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${app.orders.async.workers:4}")
+    private int workerCount;
+
+    @Value("${app.orders.async.batch-size:50}")
+    private int batchSize;
+
+    @Value("${app.orders.async.stale-after-seconds:30}")
+    private long staleAfterSeconds;
+
+    private BlockingQueue<Long> queue;
+    private ExecutorService workers;
+    private volatile boolean running;
+
+    public OrderIntakeProcessor(OrderRepository orderRepository,
+                                PurchaseSummaryRepository purchaseSummaryRepository,
+                                InventoryService inventoryService,
+                                CacheInvalidationService cacheInvalidationService,
+                                PlatformTransactionManager transactionManager) {
+        this.orderRepository = orderRepository;
+        this.purchaseSummaryRepository = purchaseSummaryRepository;
+        this.inventoryService = inventoryService;
+        this.cacheInvalidationService = cacheInvalidationService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        if (!enabled) {
+            return;
+        }
+
+        running = true;
+        AtomicInteger threadNumber = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "order-intake-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workerCount; i++) {
+            workers.submit(this::runWorker);
+        }
+        log.info("Started {} order intake workers", workerCount);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (workers != null) {
+            workers.shutdownNow();
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getQueuedOrders() {
+        return queue.size();
+    }
+
+    public boolean enqueue(Long orderId) {
+        if (!enabled) {
+            return false;
+        }
+        if (!queue.offer(orderId)) {
+            log.warn("Order intake queue is full, order {} is left for the recovery sweep", orderId);
+            return false;
+        }
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${app.orders.async.sweep-interval-ms:60000}")
+    public void recoverPendingOrders() {
+        int capacity = queue.remainingCapacity();
+        if (!enabled || capacity == 0) {
+            return;
+        }
+
+        LocalDateTime staleBefore = LocalDateTime.now().minusSeconds(staleAfterSeconds);
+        List<Long> orderIds = transactionTemplate.execute(status ->
+                orderRepository.findIdsByStatusCreatedBefore(Order.OrderStatus.PENDING, staleBefore, capacity));
+        if (orderIds != null && !orderIds.isEmpty()) {
+            log.info("Re-queuing {} pending orders", orderIds.size());
+            orderIds.forEach(this::enqueue);
+        }
+    }
+
+    private void runWorker() {
+        List<Long> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                Long first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                processBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Order intake batch failed: {}", e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    void processBatch(List<Long> orderIds) {
+        Set<String> affectedUsers = new HashSet<>();
+        Set<Long> affectedOrders = new HashSet<>();
+        Set<Long> reservedProducts = new HashSet<>();
+        try {
+            process(orderIds, affectedUsers, affectedOrders, reservedProducts);
+        } catch (RuntimeException e) {
+            if (orderIds.size() == 1) {
+                log.error("Could not process pending order {}, it will be retried: {}", orderIds.get(0), e.getMessage());
+                return;
+            }
+            // Find the order that fails the batch instead of holding back all of them
+            log.warn("Order intake batch of {} orders failed, processing them one by one: {}", orderIds.size(), e.getMessage());
+            orderIds.forEach(orderId -> processBatch(Collections.singletonList(orderId)));
+            return;
+        }
+
+        // One round of cache invalidation per batch instead of one per order
+        if (!affectedUsers.isEmpty()) {
+            cacheInvalidationService.ordersAccepted("order-intake", affectedUsers, affectedOrders, reservedProducts);
+        }
+    }
+
+    private void process(List<Long> orderIds, Set<String> affectedUsers, Set<Long> affectedOrders, Set<Long> reservedProducts) {
+        transactionTemplate.executeWithoutResult(status -> {
+            // Locked so duplicates in the queue and cancellations are serialized
+            List<Order> orders = new ArrayList<>();
+            for (Order order : orderRepository.findAllByIdsForUpdate(new TreeSet<>(orderIds))) {
+                if (order.getStatus() == Order.OrderStatus.PENDING) {
+                    orders.add(order);
+                }
+            }
+            if (orders.isEmpty()) {
+                return;
+            }
+
+            List<Map<Long, Integer>> baskets = new ArrayList<>(orders.size());
+            for (Order order : orders) {
+                Map<Long, Integer> quantities = new TreeMap<>();
+                for (OrderItem item : order.getItems()) {
+                    quantities.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
+                }
+                baskets.add(quantities);
+            }
+            BatchReservation reservation = inventoryService.reserveAll(baskets);
+
+            for (int i = 0; i < orders.size(); i++) {
+                Order order = orders.get(i);
+                if (reservation.isReserved(i)) {
+                    Map<Long, Integer> quantities = baskets.get(i);
+                    inventoryService.recordReservation(order, quantities);
+                    // Pending orders only count as placed from here on
+                    Map<Long, Integer> orderCounts = new TreeMap<>();
+                    quantities.keySet().forEach(productId -> orderCounts.put(productId, 1));
+                    purchaseSummaryRepository.recordPurchases(order.getUser().getId(), orderCounts, order.getCreatedAt());
+                    order.setStatus(Order.OrderStatus.PROCESSING);
+                    reservedProducts.addAll(quantities.keySet());
+                } else {
+                    order.setStatus(Order.OrderStatus.REJECTED);
+                    order.setRejectionReason(reservation.getFailures().get(i).getMessage());
+                }
+                affectedUsers.add(order.getUser().getUsername());
+                affectedOrders.add(order.getId());
+            }
+        });
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.supermartbackend.service;
 
+import com.example.supermartbackend.dto.BatchOrderResponse;
+import com.example.supermartbackend.dto.CursorPage;
 import com.example.supermartbackend.dto.OrderRequest;
 import com.example.supermartbackend.dto.OrderResponse;
 
@@ -9,7 +11,11 @@ public interface OrderService {
     
     OrderResponse placeOrder(OrderRequest orderRequest);
     
-    List<OrderResponse> getAllOrders();
+    OrderResponse submitOrder(OrderRequest orderRequest);
+    
+    BatchOrderResponse placeOrders(List<OrderRequest> orderRequests);
+    
+    CursorPage<OrderResponse> getAllOrders(String cursor, int limit);
     
     OrderResponse getOrderById(Long id);
     
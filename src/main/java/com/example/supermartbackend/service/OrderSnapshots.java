@@ -0,0 +1,165 @@
+package com.example.supermartbackend.service;
+
+import com.example.supermartbackend.dto.CursorPage;
+import com.example.supermartbackend.dto.OrderResponse;
+import com.example.supermartbackend.dto.OrderSnapshot;
+import com.example.supermartbackend.entity.Order;
+import com.example.supermartbackend.entity.OrderItem;
+import com.example.supermartbackend.repository.OrderRepository;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityNotFoundException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Read model for orders. Each order is cached once as a mapped {@link OrderSnapshot}, and order
+ * lists are cached as indexes of order ids, so a hit never touches an entity and a status change
+ * only evicts that one order's entry. Missing snapshots of a list are read as projections, in two
+ * queries per chunk of orders.
+ * <p>
+ * Lists are keyset paginated and each page's index is cached apart. New orders only ever go on
+ * the first page, so placing one evicts just that; later pages could only gain an order that
+ * committed after a newer one was listed, which their expiry bounds.
+ */
+@Component
+public class OrderSnapshots {
+    
+    static final String CACHE_NAME = "orders";
+    static final String INDEX_CACHE_NAME = "user-orders";
+    static final String ALL_KEY = "all";
+    
+    private static final int LOAD_CHUNK_SIZE = 500;
+    // Every cached index holds one page of the largest size, plus one id telling whether another page follows
+    private static final int INDEX_SIZE = PageCursor.MAX_LIMIT + 1;
+    
+    private final OrderRepository orderRepository;
+    private final CacheManager cacheManager;
+    
+    public OrderSnapshots(OrderRepository orderRepository, CacheManager cacheManager) {
+        this.orderRepository = orderRepository;
+        this.cacheManager = cacheManager;
+    }
+    
+    // Newest first, a page at a time; see PageCursor
+    public CursorPage<OrderSnapshot> getPage(String cursor, int limit) {
+        PageCursor.OrderPosition after = PageCursor.orderPosition(cursor);
+        String key = after == null ? ALL_KEY : "all-after-" + PageCursor.ofOrder(after.getCreatedAt(), after.getId());
+        return page(load(cacheManager.getCache(CACHE_NAME), key, () -> orderRepository.findIds(
+                after != null ? after.getCreatedAt() : null, after != null ? after.getId() : null, INDEX_SIZE)), limit);
+    }
+    
+    public CursorPage<OrderSnapshot> getPageByUsername(String username, String cursor, int limit) {
+        PageCursor.OrderPosition after = PageCursor.orderPosition(cursor);
+        Callable<List<Long>> loader = () -> orderRepository.findIdsByUsername(username,
+                after != null ? after.getCreatedAt() : null, after != null ? after.getId() : null, INDEX_SIZE);
+        if (after == null) {
+            return page(load(cacheManager.getCache(INDEX_CACHE_NAME), username, loader), limit);
+        }
+        // Cursors never contain ':', so no user's key can be made to look like another's
+        String key = "user-after-" + PageCursor.ofOrder(after.getCreatedAt(), after.getId()) + ":" + username;
+        return page(load(cacheManager.getCache(CACHE_NAME), key, loader), limit);
+    }
+    
+    public OrderSnapshot get(Long id) {
+        Cache cache = cacheManager.getCache(CACHE_NAME);
+        return load(cache, orderKey(id), () -> orderRepository.findSnapshotsByIds(Collections.singleton(id)).stream()
+                .findFirst()
+                .orElseThrow(() -> new EntityNotFoundException("Order not found")));
+    }
+    
+    public static OrderResponse toResponse(Order order) {
+        List<OrderResponse.OrderItemResponse> itemResponses = new ArrayList<>();
+        
+        for (OrderItem item : order.getItems()) {
+            BigDecimal subtotal = item.getPrice().multiply(new BigDecimal(item.getQuantity()));
+            
+            itemResponses.add(new OrderResponse.OrderItemResponse(
+                    item.getProduct().getId(),
+                    item.getProductName(),
+                    item.getProductDescription(),
+                    item.getQuantity(),
+                    item.getPrice(),
+                    subtotal
+            ));
+        }
+        // Items are a set, keep the response stable between loads
+        itemResponses.sort(Comparator.comparing(OrderResponse.OrderItemResponse::getProductId));
+        
+        return new OrderResponse(
+                order.getId(),
+                order.getStatus().name(),
+                order.getTotalAmount(),
+                itemResponses,
+                order.getCreatedAt(),
+                order.getUpdatedAt(),
+                order.getRejectionReason()
+        );
+    }
+    
+    static String orderKey(Long id) {
+        return "order-" + id;
+    }
+    
+    private CursorPage<OrderSnapshot> page(List<Long> index, int limit) {
+        List<OrderSnapshot> snapshots = getAll(index.size() > limit ? index.subList(0, limit) : index);
+        if (index.size() <= limit || snapshots.isEmpty()) {
+            return new CursorPage<>(snapshots, null);
+        }
+        OrderResponse last = snapshots.get(snapshots.size() - 1).getOrder();
+        return new CursorPage<>(snapshots, PageCursor.ofOrder(last.getCreatedAt(), last.getId()));
+    }
+    
+    private List<OrderSnapshot> getAll(List<Long> ids) {
+        Cache cache = cacheManager.getCache(CACHE_NAME);
+        Map<Long, OrderSnapshot> snapshots = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            OrderSnapshot snapshot = cache.get(orderKey(id), OrderSnapshot.class);
+            if (snapshot != null) {
+                snapshots.put(id, snapshot);
+            } else {
+                missing.add(id);
+            }
+        }
+        
+        for (int start = 0; start < missing.size(); start += LOAD_CHUNK_SIZE) {
+            List<Long> chunk = missing.subList(start, Math.min(missing.size(), start + LOAD_CHUNK_SIZE));
+            for (OrderSnapshot snapshot : orderRepository.findSnapshotsByIds(chunk)) {
+                Long id = snapshot.getOrder().getId();
+                cache.put(orderKey(id), snapshot);
+                snapshots.put(id, snapshot);
+            }
+        }
+        
+        // Keep the index order; ids of orders deleted since the index was cached are skipped
+        List<OrderSnapshot> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            OrderSnapshot snapshot = snapshots.get(id);
+            if (snapshot != null) {
+                result.add(snapshot);
+            }
+        }
+        return result;
+    }
+    
+    // Goes through the cache's single-flight load, so concurrent misses run the query once
+    private <T> T load(Cache cache, String key, Callable<T> loader) {
+        try {
+            return cache.get(key, loader);
+        } catch (Cache.ValueRetrievalException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.supermartbackend.service;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Opaque cursors for keyset pagination. A cursor holds the sort key of the last row of a page,
+ * {@code id} for products and {@code (createdAt, id)} for orders, and the next page seeks past it
+ * instead of skipping rows, so a page costs the same however deep it is.
+ */
+public final class PageCursor {
+    
+    // Sent with every page but the last
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 200;
+    
+    private static final String SEPARATOR = "|";
+    
+    private PageCursor() {
+    }
+    
+    public static int checkLimit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Page limit must be at least 1");
+        }
+        return Math.min(limit, MAX_LIMIT);
+    }
+    
+    public static String ofProduct(Long id) {
+        return encode(id.toString());
+    }
+    
+    // Null for the first page
+    public static Long productId(String cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(decode(cursor));
+        } catch (NumberFormatException e) {
+            throw invalid();
+        }
+    }
+    
+    public static String ofOrder(LocalDateTime createdAt, Long id) {
+        return encode(createdAt + SEPARATOR + id);
+    }
+    
+    public static OrderPosition orderPosition(String cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        String[] parts = decode(cursor).split("\\" + SEPARATOR);
+        if (parts.length != 2) {
+            throw invalid();
+        }
+        try {
+            return new OrderPosition(LocalDateTime.parse(parts[0]), Long.valueOf(parts[1]));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw invalid();
+        }
+    }
+    
+    private static String encode(String position) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static String decode(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw invalid();
+        }
+    }
+    
+    private static IllegalArgumentException invalid() {
+        return new IllegalArgumentException("Invalid page cursor");
+    }
+    
+    // The last order of a page, in the (createdAt DESC, id DESC) order of order listings
+    @Getter
+    @RequiredArgsConstructor
+    public static final class OrderPosition {
+        private final LocalDateTime createdAt;
+        private final Long id;
+    }
+}
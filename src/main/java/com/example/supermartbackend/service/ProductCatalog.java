@@ -0,0 +1,94 @@
+package com.example.supermartbackend.service;
+
+import com.example.supermartbackend.dto.CatalogProduct;
+import com.example.supermartbackend.entity.Product;
+import com.example.supermartbackend.repository.ProductRepository;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityNotFoundException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Read model for the storefront. Static product fields are cached for a long time in the
+ * "products" cache, stock levels live in the much smaller {@link StockLevelStore}, and the two
+ * are combined at read time, so a checkout only invalidates the stock levels it changed.
+ * The full listing is served from the {@link CatalogSnapshotService} instead.
+ */
+@Component
+public class ProductCatalog {
+    
+    static final String CACHE_NAME = "products";
+    
+    private final ProductRepository productRepository;
+    private final StockLevelStore stockLevelStore;
+    private final CacheManager cacheManager;
+    private final NegativeLookupCache negativeLookupCache;
+    
+    public ProductCatalog(ProductRepository productRepository,
+                          StockLevelStore stockLevelStore,
+                          CacheManager cacheManager,
+                          NegativeLookupCache negativeLookupCache) {
+        this.productRepository = productRepository;
+        this.stockLevelStore = stockLevelStore;
+        this.cacheManager = cacheManager;
+        this.negativeLookupCache = negativeLookupCache;
+    }
+    
+    public CatalogProduct get(Long id) {
+        // Products that exist are found here, without looking at the negative cache at all
+        CatalogProduct cached = cache().get(productKey(id), CatalogProduct.class);
+        if (cached != null) {
+            return cached;
+        }
+        if (negativeLookupCache.isMissing(NegativeLookupCache.PRODUCT, id)) {
+            throw new EntityNotFoundException("Product not found");
+        }
+        try {
+            return load(productKey(id), () -> productRepository.findById(id)
+                    .map(this::toCatalogProduct)
+                    .orElseThrow(() -> new EntityNotFoundException("Product not found")));
+        } catch (EntityNotFoundException e) {
+            negativeLookupCache.markMissing(NegativeLookupCache.PRODUCT, id);
+            throw e;
+        }
+    }
+    
+    public Map<Long, Integer> getStockLevels(Collection<Long> productIds) {
+        return stockLevelStore.getAll(productIds, productRepository::findQuantitiesByIds);
+    }
+    
+    static String productKey(Long id) {
+        return "catalog-" + id;
+    }
+    
+    // Goes through the cache's single-flight load, so concurrent misses run the query once
+    private <T> T load(String key, Callable<T> loader) {
+        try {
+            return cache().get(key, loader);
+        } catch (Cache.ValueRetrievalException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+    
+    private Cache cache() {
+        return cacheManager.getCache(CACHE_NAME);
+    }
+    
+    private CatalogProduct toCatalogProduct(Product product) {
+        return new CatalogProduct(
+                product.getId(),
+                product.getName(),
+                product.getDescription(),
+                product.getRetailPrice(),
+                product.getCreatedAt(),
+                product.getUpdatedAt()
+        );
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.supermartbackend.service;
 
 import com.example.supermartbackend.dto.AdminProductResponse;
+import com.example.supermartbackend.dto.CursorPage;
 import com.example.supermartbackend.dto.ProductRequest;
 import com.example.supermartbackend.dto.ProductResponse;
 
@@ -10,6 +11,15 @@ public interface ProductService {
     
     List<ProductResponse> getAllInStockProducts();
     
+    // Keyset paginated by product id, see PageCursor
+    CursorPage<ProductResponse> getInStockProductsPage(String cursor, int limit);
+    
+    // Increases with every change to the catalog listing's static fields
+    long getCatalogVersion();
+    
+    // The listings' tag, with the listings built lazily from the same read of the catalog and its stock levels
+    CatalogListing getCatalogListing();
+    
     ProductResponse getProductById(Long id);
     
     // Admin-specific methods
@@ -17,6 +27,8 @@ public interface ProductService {
     
     List<AdminProductResponse> getAllProductsForAdmin();
     
+    CursorPage<AdminProductResponse> getProductsPageForAdmin(String cursor, int limit);
+    
     ProductResponse addProduct(ProductRequest productRequest);
     
     ProductResponse updateProduct(Long id, ProductRequest productRequest);
@@ -25,7 +37,13 @@ public interface ProductService {
     
     List<ProductResponse> getTopPopularProducts(int count);
     
+    // Recounts every product's orders, returns the number of products recounted
+    int rebuildPopularity();
+    
     List<ProductResponse> getRecentlyPurchasedProducts(int count);
     
     List<ProductResponse> getFrequentlyPurchasedProducts(int count);
+    
+    // Recounts every user's purchase summaries, returns the number of summaries written
+    int rebuildPurchaseHistory();
 } 
\ No newline at end of file
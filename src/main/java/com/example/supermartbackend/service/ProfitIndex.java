@@ -0,0 +1,95 @@
+package com.example.supermartbackend.service;
+
+import lombok.EqualsAndHashCode;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Catalog items ordered by margin (retail minus wholesale price), highest first and by id among
+ * equal margins, so the top N is a walk over N entries. Patched in place by a single writer, the
+ * catalog snapshot service, while any number of readers walk it without locking.
+ */
+final class ProfitIndex {
+
+    private final ConcurrentNavigableMap<Key, CatalogSnapshot.Item> items = new ConcurrentSkipListMap<>();
+
+    static ProfitIndex of(Iterable<CatalogSnapshot.Item> items) {
+        ProfitIndex index = new ProfitIndex();
+        for (CatalogSnapshot.Item item : items) {
+            index.put(null, item);
+        }
+        return index;
+    }
+
+    // Replaces the previous version of the item, if there was one
+    void put(CatalogSnapshot.Item previous, CatalogSnapshot.Item item) {
+        Key key = key(item);
+        if (key != null) {
+            items.put(key, item);
+        }
+        // Added before the old entry goes, so a reader never misses the product, at worst it sees it twice
+        Key previousKey = previous != null ? key(previous) : null;
+        if (previousKey != null && !previousKey.equals(key)) {
+            items.remove(previousKey);
+        }
+    }
+
+    void remove(CatalogSnapshot.Item previous) {
+        Key key = key(previous);
+        if (key != null) {
+            items.remove(key);
+        }
+    }
+
+    int size() {
+        return items.size();
+    }
+
+    List<CatalogSnapshot.Item> top(int count) {
+        List<CatalogSnapshot.Item> top = new ArrayList<>(Math.max(0, Math.min(count, 1024)));
+        Set<Long> seen = new HashSet<>();
+        for (CatalogSnapshot.Item item : items.values()) {
+            if (top.size() >= count) {
+                break;
+            }
+            // Skips the old entry of a product being patched while we walk
+            if (seen.add(item.getProduct().getId())) {
+                top.add(item);
+            }
+        }
+        return top;
+    }
+
+    private static Key key(CatalogSnapshot.Item item) {
+        BigDecimal retailPrice = item.getProduct().getRetailPrice();
+        BigDecimal wholesalePrice = item.getWholesalePrice();
+        if (retailPrice == null || wholesalePrice == null) {
+            return null;
+        }
+        // Stripped so equal margins written with different scales make equal keys
+        return new Key(retailPrice.subtract(wholesalePrice).stripTrailingZeros(), item.getProduct().getId());
+    }
+
+    @EqualsAndHashCode
+    private static final class Key implements Comparable<Key> {
+        private final BigDecimal margin;
+        private final long id;
+
+        private Key(BigDecimal margin, long id) {
+            this.margin = margin;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int byMargin = other.margin.compareTo(margin);
+            return byMargin != 0 ? byMargin : Long.compare(id, other.id);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.supermartbackend.service;
+
+import com.example.supermartbackend.cache.RedisCircuitBreaker;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Pings Redis while the circuit is open, so it closes without a request having to wait on Redis
+@Component
+public class RedisCircuitProbe {
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisCircuitBreaker redisCircuitBreaker;
+
+    public RedisCircuitProbe(RedisConnectionFactory redisConnectionFactory, RedisCircuitBreaker redisCircuitBreaker) {
+        this.redisTemplate = new StringRedisTemplate(redisConnectionFactory);
+        this.redisTemplate.afterPropertiesSet();
+        this.redisCircuitBreaker = redisCircuitBreaker;
+    }
+
+    @Scheduled(fixedDelayString = "${app.cache.circuit-breaker.probe-interval-ms:1000}")
+    public void probe() {
+        redisCircuitBreaker.probe(() -> redisTemplate.execute((RedisCallback<String>) connection -> connection.ping()));
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.supermartbackend.service;
+
+import org.springframework.cache.Cache;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pattern based key operations built on incremental SCAN, so they never block Redis like KEYS does.
+ */
+@Component
+public class RedisKeyScanner {
+
+    private static final int SCAN_PAGE_SIZE = 500;
+
+    private final StringRedisTemplate redisTemplate;
+
+    public RedisKeyScanner(RedisConnectionFactory redisConnectionFactory) {
+        this.redisTemplate = new StringRedisTemplate(redisConnectionFactory);
+        this.redisTemplate.afterPropertiesSet();
+    }
+
+    public long deleteByPattern(String pattern) {
+        long deleted = 0;
+        List<String> page = new ArrayList<>(SCAN_PAGE_SIZE);
+        try (Cursor<String> cursor = redisTemplate.scan(ScanOptions.scanOptions().match(pattern).count(SCAN_PAGE_SIZE).build())) {
+            while (cursor.hasNext()) {
+                page.add(cursor.next());
+                if (page.size() == SCAN_PAGE_SIZE) {
+                    deleted += delete(page);
+                }
+            }
+        }
+        return deleted + delete(page);
+    }
+
+    // Deletes the entries of a Redis backed cache whose key starts with the prefix
+    public long evictByPrefix(Cache cache, String keyPrefix) {
+        if (cache instanceof RedisCache) {
+            String redisPrefix = ((RedisCache) cache).getCacheConfiguration().getKeyPrefixFor(cache.getName());
+            return deleteByPattern(escape(redisPrefix + keyPrefix) + "*");
+        }
+        // Caches without key listing fall back to a full clear
+        cache.clear();
+        return 1;
+    }
+
+    // Deletes the given entries of a Redis backed cache in one DEL, returning how many existed
+    public long evictKeys(Cache cache, Collection<?> keys) {
+        if (cache instanceof RedisCache) {
+            String redisPrefix = ((RedisCache) cache).getCacheConfiguration().getKeyPrefixFor(cache.getName());
+            List<String> redisKeys = new ArrayList<>(keys.size());
+            keys.forEach(key -> redisKeys.add(redisPrefix + key));
+            return delete(redisKeys);
+        }
+        long evicted = 0;
+        for (Object key : keys) {
+            if (cache.evictIfPresent(key)) {
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    // Counts keys per prefix in a single SCAN pass, a page at a time; keys matching no prefix are not counted
+    public Map<String, Long> countByPrefix(Collection<String> prefixes) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        prefixes.forEach(prefix -> counts.put(prefix, 0L));
+        try (Cursor<String> cursor = redisTemplate.scan(ScanOptions.scanOptions().count(SCAN_PAGE_SIZE).build())) {
+            while (cursor.hasNext()) {
+                String key = cursor.next();
+                for (String prefix : prefixes) {
+                    if (key.startsWith(prefix)) {
+                        counts.merge(prefix, 1L, Long::sum);
+                        break;
+                    }
+                }
+            }
+        }
+        return counts;
+    }
+
+    public long dbSize() {
+        Long size = redisTemplate.execute(connection -> connection.dbSize(), true);
+        return size != null ? size : 0;
+    }
+
+    // Escapes glob characters so user supplied values only ever match literally
+    public static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            if (c == '*' || c == '?' || c == '[' || c == ']' || c == '\\') {
+                escaped.append('\\');
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    private long delete(List<String> keys) {
+        if (keys.isEmpty()) {
+            return 0;
+        }
+        Long deleted = redisTemplate.delete(keys);
+        keys.clear();
+        return deleted != null ? deleted : 0;
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.supermartbackend.service;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Function;
+
+public interface StockLevelStore {
+    
+    // Returns the stock level of every known id, loading the missing ones through the loader
+    Map<Long, Integer> getAll(Collection<Long> productIds, Function<Collection<Long>, Map<Long, Integer>> loader);
+    
+    // Returns how many of the products had a stored level
+    long evict(Collection<Long> productIds);
+}
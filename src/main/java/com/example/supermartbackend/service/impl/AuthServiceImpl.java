@@ -10,6 +10,7 @@ import com.example.supermartbackend.repository.RoleRepository;
 import com.example.supermartbackend.repository.UserRepository;
 import com.example.supermartbackend.security.JwtUtil;
 import com.example.supermartbackend.service.AuthService;
+import com.example.supermartbackend.service.CacheInvalidationService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
@@ -36,6 +37,7 @@ public class AuthServiceImpl implements AuthService {
     private final PasswordEncoder passwordEncoder;
     private final AuthenticationManager authenticationManager;
     private final JwtUtil jwtUtil;
+    private final CacheInvalidationService cacheInvalidationService;
     
     @Override
     @Transactional
@@ -62,6 +64,7 @@ public class AuthServiceImpl implements AuthService {
         user.setRoles(roles);
         
         userRepository.save(user);
+        cacheInvalidationService.userCreated(user.getUsername());
     }
     
     @Override
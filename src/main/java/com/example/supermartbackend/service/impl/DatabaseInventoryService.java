@@ -0,0 +1,113 @@
+package com.example.supermartbackend.service.impl;
+
+import com.example.supermartbackend.entity.Order;
+import com.example.supermartbackend.entity.Product;
+import com.example.supermartbackend.exception.NotEnoughInventoryException;
+import com.example.supermartbackend.repository.ProductRepository;
+import com.example.supermartbackend.service.BatchReservation;
+import com.example.supermartbackend.service.InventoryService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityNotFoundException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.inventory.mode", havingValue = "database", matchIfMissing = true)
+public class DatabaseInventoryService implements InventoryService {
+    
+    private final ProductRepository productRepository;
+    
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Map<Long, Product> reserve(Map<Long, Integer> quantities) {
+        BatchReservation reservation = reserveAll(Collections.singletonList(quantities));
+        if (!reservation.isReserved(0)) {
+            throw reservation.getFailures().get(0);
+        }
+        return reservation.getProducts();
+    }
+    
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public BatchReservation reserveAll(List<Map<Long, Integer>> baskets) {
+        // Lock every product of all baskets with one ordered query, then check stock before writing anything
+        Set<Long> productIds = new TreeSet<>();
+        baskets.forEach(basket -> productIds.addAll(basket.keySet()));
+        Map<Long, Product> products = productRepository.findAllByIdsForUpdate(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        
+        Map<Long, Integer> remaining = new HashMap<>();
+        products.values().forEach(product -> remaining.put(product.getId(), product.getQuantity()));
+        
+        Map<Long, Integer> reserved = new TreeMap<>();
+        Map<Long, Integer> orders = new HashMap<>();
+        List<RuntimeException> failures = new ArrayList<>(baskets.size());
+        for (Map<Long, Integer> basket : baskets) {
+            RuntimeException failure = checkStock(basket, remaining);
+            if (failure == null) {
+                basket.forEach((productId, quantity) -> {
+                    remaining.merge(productId, -quantity, Integer::sum);
+                    reserved.merge(productId, quantity, Integer::sum);
+                    orders.merge(productId, 1, Integer::sum);
+                });
+            }
+            failures.add(failure);
+        }
+        
+        // Reserve the accepted totals in ascending id order with guarded updates, counting the orders on the same rows
+        for (Map.Entry<Long, Integer> entry : reserved.entrySet()) {
+            if (productRepository.decrementQuantity(entry.getKey(), entry.getValue(), orders.get(entry.getKey())) == 0) {
+                Product product = products.get(entry.getKey());
+                throw new NotEnoughInventoryException(product.getId(), entry.getValue(), product.getQuantity());
+            }
+        }
+        
+        return new BatchReservation(products, failures);
+    }
+    
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void release(Map<Long, Integer> quantities) {
+        // Lock rows in the same order as reserve
+        Map<Long, Integer> sorted = new TreeMap<>(quantities);
+        productRepository.findAllByIdsForUpdate(sorted.keySet());
+        sorted.forEach((productId, quantity) -> productRepository.incrementQuantity(productId, quantity, 1));
+    }
+    
+    @Override
+    public void recordReservation(Order order, Map<Long, Integer> quantities) {
+        // Stock is already written by reserve
+    }
+    
+    @Override
+    public void stockAdjusted(Long productId, int delta) {
+        // The products table is the source of truth
+    }
+    
+    private RuntimeException checkStock(Map<Long, Integer> basket, Map<Long, Integer> remaining) {
+        for (Map.Entry<Long, Integer> entry : new TreeMap<>(basket).entrySet()) {
+            Integer available = remaining.get(entry.getKey());
+            if (available == null) {
+                return new EntityNotFoundException("Product not found with id: " + entry.getKey());
+            }
+            if (available < entry.getValue()) {
+                return new NotEnoughInventoryException(entry.getKey(), entry.getValue(), available);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.supermartbackend.service.impl;
+
+import com.example.supermartbackend.dto.OrderResponse;
+import com.example.supermartbackend.service.IdempotencyRecord;
+import com.example.supermartbackend.service.IdempotencyStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+@Service
+@ConditionalOnProperty(name = "app.idempotency.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    private final long ttlMillis;
+
+    // Access-ordered so the least recently used key is evicted once the store is full
+    private final Map<String, Entry> entries;
+
+    public InMemoryIdempotencyStore(@Value("${app.idempotency.ttl-seconds:86400}") long ttlSeconds,
+                                    @Value("${app.idempotency.max-entries:100000}") int maxEntries) {
+        this.ttlMillis = ttlSeconds * 1000;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    @Override
+    public synchronized Optional<IdempotencyRecord> find(String key) {
+        Entry entry = liveEntry(key);
+        return entry != null ? Optional.of(entry.record) : Optional.empty();
+    }
+
+    @Override
+    public synchronized boolean claim(String key, String requestHash) {
+        if (liveEntry(key) != null) {
+            return false;
+        }
+        entries.put(key, new Entry(new IdempotencyRecord(requestHash, null), System.currentTimeMillis() + ttlMillis));
+        return true;
+    }
+
+    @Override
+    public synchronized void complete(String key, String requestHash, OrderResponse response) {
+        entries.put(key, new Entry(new IdempotencyRecord(requestHash, response), System.currentTimeMillis() + ttlMillis));
+    }
+
+    // Claims here live as long as completed keys, so a running request never loses its claim
+    @Override
+    public synchronized boolean renew(String key, String requestHash) {
+        return isClaimOf(liveEntry(key), requestHash);
+    }
+
+    @Override
+    public synchronized void release(String key, String requestHash) {
+        if (isClaimOf(entries.get(key), requestHash)) {
+            entries.remove(key);
+        }
+    }
+
+    private static boolean isClaimOf(Entry entry, String requestHash) {
+        return entry != null && entry.record.getResponse() == null && entry.record.getRequestHash().equals(requestHash);
+    }
+
+    private Entry liveEntry(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAt < System.currentTimeMillis()) {
+            entries.remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    private static final class Entry {
+        private final IdempotencyRecord record;
+        private final long expiresAt;
+
+        private Entry(IdempotencyRecord record, long expiresAt) {
+            this.record = record;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.example.supermartbackend.service.impl;
+
+import com.example.supermartbackend.entity.Order;
+import com.example.supermartbackend.entity.Product;
+import com.example.supermartbackend.exception.NotEnoughInventoryException;
+import com.example.supermartbackend.repository.OrderRepository;
+import com.example.supermartbackend.repository.ProductRepository;
+import com.example.supermartbackend.service.BatchReservation;
+import com.example.supermartbackend.service.CacheInvalidationService;
+import com.example.supermartbackend.service.InventoryService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityNotFoundException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Inventory engine for flash sales: stock is reserved with CAS on per-product counters in memory
+ * and the net deltas are written to the products table in batches by a background flusher.
+ * The products' order counts are written behind with the stock, so a checkout never locks a
+ * product row. Orders placed through the ledger are flagged as inventory pending until their deltas
+ * are flushed, so a crash never loses a reservation: on startup the pending orders are applied
+ * before the counters are loaded. The ledger assumes it is the only writer of stock, i.e. a single node.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "app.inventory.mode", havingValue = "ledger")
+public class LedgerInventoryService implements InventoryService {
+
+    private final ProductRepository productRepository;
+    private final OrderRepository orderRepository;
+    private final CacheInvalidationService cacheInvalidationService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.inventory.ledger.flush-batch-size:500}")
+    private int flushBatchSize = 500;
+
+    // Available stock per product id; the map's bins stripe the counters so hot SKUs do not contend with each other
+    private final Map<Long, AtomicLong> available = new ConcurrentHashMap<>();
+
+    // Committed reservations whose deltas are not yet written to the products table
+    private final Queue<PendingReservation> journal = new ConcurrentLinkedQueue<>();
+
+    private final Object flushLock = new Object();
+
+    private volatile boolean ready;
+
+    public LedgerInventoryService(ProductRepository productRepository,
+                                  OrderRepository orderRepository,
+                                  CacheInvalidationService cacheInvalidationService,
+                                  PlatformTransactionManager transactionManager) {
+        this.productRepository = productRepository;
+        this.orderRepository = orderRepository;
+        this.cacheInvalidationService = cacheInvalidationService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcile() {
+        transactionTemplate.executeWithoutResult(status -> {
+            // Apply reservations that were committed but never flushed before the last shutdown
+            Map<Long, Integer> pending = orderRepository.sumPendingInventoryByProduct();
+            if (!pending.isEmpty()) {
+                log.warn("Reconciling unflushed inventory reservations for {} products", pending.size());
+                Map<Long, Integer> deltas = new TreeMap<>();
+                pending.forEach((productId, quantity) -> deltas.put(productId, -quantity));
+                productRepository.applyQuantityDeltas(deltas, orderRepository.countPendingInventoryOrdersByProduct());
+                orderRepository.clearInventoryPending();
+            }
+
+            available.clear();
+            productRepository.findAllQuantities()
+                    .forEach((productId, quantity) -> available.put(productId, new AtomicLong(quantity)));
+        });
+        ready = true;
+        log.info("Inventory ledger loaded with {} products", available.size());
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Map<Long, Product> reserve(Map<Long, Integer> quantities) {
+        BatchReservation reservation = reserveAll(Collections.singletonList(quantities));
+        if (!reservation.isReserved(0)) {
+            throw reservation.getFailures().get(0);
+        }
+        return reservation.getProducts();
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public BatchReservation reserveAll(List<Map<Long, Integer>> baskets) {
+        if (!ready) {
+            throw new IllegalStateException("Inventory ledger is not loaded yet");
+        }
+
+        Set<Long> productIds = new TreeSet<>();
+        baskets.forEach(basket -> productIds.addAll(basket.keySet()));
+        Map<Long, Product> products = productRepository.findAllByIds(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        Map<Long, Integer> acquired = new HashMap<>();
+        List<RuntimeException> failures = new ArrayList<>(baskets.size());
+        for (Map<Long, Integer> basket : baskets) {
+            RuntimeException failure = tryAcquireBasket(new TreeMap<>(basket), products);
+            if (failure == null) {
+                basket.forEach((productId, quantity) -> acquired.merge(productId, quantity, Integer::sum));
+            }
+            failures.add(failure);
+        }
+
+        // Give the stock back if the order transaction does not commit
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    addToCounters(acquired);
+                }
+            }
+        });
+
+        return new BatchReservation(products, failures);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void release(Map<Long, Integer> quantities) {
+        // Returned stock is written through, so only placements are ever pending
+        Map<Long, Integer> sorted = new TreeMap<>(quantities);
+        sorted.forEach((productId, quantity) -> productRepository.incrementQuantity(productId, quantity, 1));
+        afterCommit(() -> addToCounters(sorted));
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordReservation(Order order, Map<Long, Integer> quantities) {
+        order.setInventoryPending(true);
+        Map<Long, Integer> copy = new HashMap<>(quantities);
+        afterCommit(() -> journal.add(new PendingReservation(order.getId(), copy)));
+    }
+
+    @Override
+    public void stockAdjusted(Long productId, int delta) {
+        afterCommit(() -> counter(productId).addAndGet(delta));
+    }
+
+    @Scheduled(fixedDelayString = "${app.inventory.ledger.flush-interval-ms:200}")
+    public void flush() {
+        synchronized (flushLock) {
+            List<PendingReservation> batch;
+            while (!(batch = drainJournal()).isEmpty()) {
+                List<Long> orderIds = new ArrayList<>(batch.size());
+                // Ascending ids so the flusher locks rows in the same order as checkouts
+                Map<Long, Integer> deltas = new TreeMap<>();
+                // Order counts are written behind with the stock, so checkouts never lock a product row
+                Map<Long, Integer> orderCounts = new HashMap<>();
+                for (PendingReservation reservation : batch) {
+                    orderIds.add(reservation.orderId);
+                    reservation.quantities.forEach((productId, quantity) -> {
+                        deltas.merge(productId, -quantity, Integer::sum);
+                        orderCounts.merge(productId, 1, Integer::sum);
+                    });
+                }
+
+                try {
+                    transactionTemplate.executeWithoutResult(status -> {
+                        productRepository.applyQuantityDeltas(deltas, orderCounts);
+                        orderRepository.clearInventoryPending(orderIds);
+                        // Stock levels and the popularity ranking cached for the storefront follow the products table
+                        cacheInvalidationService.orderCountsChanged("inventory-flush", deltas.keySet());
+                    });
+                } catch (RuntimeException e) {
+                    log.error("Inventory ledger flush failed, {} reservations will be retried: {}", batch.size(), e.getMessage());
+                    journal.addAll(batch);
+                    return;
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    public long getAvailable(Long productId) {
+        AtomicLong counter = available.get(productId);
+        return counter != null ? counter.get() : 0;
+    }
+
+    public int getPendingReservations() {
+        return journal.size();
+    }
+
+    private List<PendingReservation> drainJournal() {
+        List<PendingReservation> batch = new ArrayList<>();
+        PendingReservation reservation;
+        while (batch.size() < flushBatchSize && (reservation = journal.poll()) != null) {
+            batch.add(reservation);
+        }
+        return batch;
+    }
+
+    private AtomicLong counter(Long productId) {
+        return available.computeIfAbsent(productId, id -> new AtomicLong());
+    }
+
+    private RuntimeException tryAcquireBasket(Map<Long, Integer> basket, Map<Long, Product> products) {
+        Map<Long, Integer> acquired = new HashMap<>();
+        for (Map.Entry<Long, Integer> entry : basket.entrySet()) {
+            if (!products.containsKey(entry.getKey())) {
+                addToCounters(acquired);
+                return new EntityNotFoundException("Product not found with id: " + entry.getKey());
+            }
+            AtomicLong counter = counter(entry.getKey());
+            if (!tryAcquire(counter, entry.getValue())) {
+                addToCounters(acquired);
+                return new NotEnoughInventoryException(entry.getKey(), entry.getValue(), (int) counter.get());
+            }
+            acquired.put(entry.getKey(), entry.getValue());
+        }
+        return null;
+    }
+
+    private boolean tryAcquire(AtomicLong counter, int quantity) {
+        long current;
+        do {
+            current = counter.get();
+            if (current < quantity) {
+                return false;
+            }
+        } while (!counter.compareAndSet(current, current - quantity));
+        return true;
+    }
+
+    private void addToCounters(Map<Long, Integer> quantities) {
+        quantities.forEach((productId, quantity) -> counter(productId).addAndGet(quantity));
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static final class PendingReservation {
+        private final Long orderId;
+        private final Map<Long, Integer> quantities;
+
+        private PendingReservation(Long orderId, Map<Long, Integer> quantities) {
+            this.orderId = orderId;
+            this.quantities = quantities;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.supermartbackend.service.impl;
+
+import com.example.supermartbackend.service.StockLevelStore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+// Stock levels held on this node only, for single node deployments
+@Service
+@ConditionalOnProperty(name = "app.catalog.stock-store", havingValue = "local")
+public class LocalStockLevelStore implements StockLevelStore {
+    
+    private final Map<Long, Integer> stockLevels = new ConcurrentHashMap<>();
+    
+    // Bumped on every eviction so a level loaded before a write is not stored after it
+    private final Map<Long, Long> generations = new ConcurrentHashMap<>();
+    
+    @Override
+    public Map<Long, Integer> getAll(Collection<Long> productIds, Function<Collection<Long>, Map<Long, Integer>> loader) {
+        Map<Long, Integer> found = new HashMap<>();
+        Map<Long, Long> missing = new HashMap<>();
+        for (Long productId : productIds) {
+            Integer quantity = stockLevels.get(productId);
+            if (quantity != null) {
+                found.put(productId, quantity);
+            } else {
+                missing.put(productId, generations.getOrDefault(productId, 0L));
+            }
+        }
+        if (missing.isEmpty()) {
+            return found;
+        }
+        
+        Map<Long, Integer> loaded = loader.apply(missing.keySet());
+        loaded.forEach((productId, quantity) -> stockLevels.compute(productId, (id, current) -> {
+            if (current != null) {
+                return current;
+            }
+            return Objects.equals(generations.getOrDefault(id, 0L), missing.get(id)) ? quantity : null;
+        }));
+        found.putAll(loaded);
+        return found;
+    }
+    
+    @Override
+    public long evict(Collection<Long> productIds) {
+        long evicted = 0;
+        for (Long productId : productIds) {
+            generations.merge(productId, 1L, Long::sum);
+            if (stockLevels.remove(productId) != null) {
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+}
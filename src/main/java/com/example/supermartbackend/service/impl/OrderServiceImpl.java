@@ -1,34 +1,53 @@
 package com.example.supermartbackend.service.impl;
 
+import com.example.supermartbackend.dto.BatchOrderResponse;
+import com.example.supermartbackend.dto.CursorPage;
 import com.example.supermartbackend.dto.OrderItemRequest;
 import com.example.supermartbackend.dto.OrderRequest;
 import com.example.supermartbackend.dto.OrderResponse;
+import com.example.supermartbackend.dto.OrderSnapshot;
 import com.example.supermartbackend.entity.Order;
 import com.example.supermartbackend.entity.OrderItem;
 import com.example.supermartbackend.entity.Product;
 import com.example.supermartbackend.entity.User;
 import com.example.supermartbackend.exception.InvalidCredentialsException;
-import com.example.supermartbackend.exception.NotEnoughInventoryException;
 import com.example.supermartbackend.exception.OrderModificationException;
 import com.example.supermartbackend.repository.OrderRepository;
 import com.example.supermartbackend.repository.ProductRepository;
+import com.example.supermartbackend.repository.PurchaseSummaryRepository;
 import com.example.supermartbackend.repository.UserRepository;
+import com.example.supermartbackend.service.BatchReservation;
+import com.example.supermartbackend.service.CacheInvalidationService;
+import com.example.supermartbackend.service.InventoryService;
+import com.example.supermartbackend.service.OrderIntakeProcessor;
 import com.example.supermartbackend.service.OrderService;
+import com.example.supermartbackend.service.OrderSnapshots;
+import com.example.supermartbackend.service.PageCursor;
 import lombok.RequiredArgsConstructor;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
-import org.springframework.cache.annotation.Caching;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.persistence.EntityNotFoundException;
-import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -37,109 +56,218 @@ public class OrderServiceImpl implements OrderService {
     
     private final OrderRepository orderRepository;
     private final ProductRepository productRepository;
+    private final PurchaseSummaryRepository purchaseSummaryRepository;
     private final UserRepository userRepository;
+    private final InventoryService inventoryService;
+    private final OrderIntakeProcessor orderIntakeProcessor;
+    private final CacheInvalidationService cacheInvalidationService;
+    private final OrderSnapshots orderSnapshots;
+    private final PlatformTransactionManager transactionManager;
+    
+    @Value("${app.orders.batch.chunk-size:100}")
+    private int batchChunkSize;
     
     @Override
     @PreAuthorize("hasRole('USER')")
     @Transactional
-    @Caching(evict = {
-        @CacheEvict(value = "orders", allEntries = true),
-        @CacheEvict(value = "user-orders", key = "T(org.springframework.security.core.context.SecurityContextHolder).getContext().getAuthentication().getName()"),
-        @CacheEvict(value = {"products", "admin-products", "top-popular-products", "user-recent-products", "user-frequent-products"}, allEntries = true)
-    })
     public OrderResponse placeOrder(OrderRequest orderRequest) {
         User currentUser = getCurrentUser();
         
         Order order = new Order();
         order.setUser(currentUser);
         
-        // Process each order item
+        // Reserve stock for the whole basket before building the order
+        Map<Long, Integer> quantities = aggregateQuantities(orderRequest.getOrder());
+        Map<Long, Product> products = inventoryService.reserve(quantities);
+        
+        // Create and add order items
         for (OrderItemRequest itemRequest : orderRequest.getOrder()) {
-            Product product = productRepository.findById(itemRequest.getProductId())
-                    .orElseThrow(() -> new EntityNotFoundException("Product not found with id: " + itemRequest.getProductId()));
-            
-            // Check if product is in stock
-            if (product.getQuantity() < itemRequest.getQuantity()) {
-                throw new NotEnoughInventoryException(product.getId(), itemRequest.getQuantity(), product.getQuantity());
-            }
-            
-            // Reduce product quantity
-            product.setQuantity(product.getQuantity() - itemRequest.getQuantity());
-            productRepository.save(product);
-            
-            // Create and add order item
-            OrderItem orderItem = new OrderItem(product, itemRequest.getQuantity());
+            OrderItem orderItem = new OrderItem(products.get(itemRequest.getProductId()), itemRequest.getQuantity());
             order.addItem(orderItem);
         }
+        inventoryService.recordReservation(order, quantities);
         
         // Save the order
         Order savedOrder = orderRepository.save(order);
+        purchaseSummaryRepository.recordPurchases(currentUser.getId(), orderCounts(quantities.keySet()), LocalDateTime.now());
+        cacheInvalidationService.ordersPlaced("order-placed",
+                Collections.singleton(currentUser.getUsername()), quantities.keySet());
         
         return mapToResponse(savedOrder);
     }
     
     @Override
-    @Transactional(readOnly = true)
-    public List<OrderResponse> getAllOrders() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        boolean isAdmin = authentication.getAuthorities().stream()
-                .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
+    @PreAuthorize("hasRole('USER')")
+    public BatchOrderResponse placeOrders(List<OrderRequest> orderRequests) {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        BatchOrderResponse response = new BatchOrderResponse();
         
-        List<Order> orders;
-        if (isAdmin) {
-            // Admins can see all orders - cache this expensive operation
-            orders = getAllOrdersCached();
-        } else {
-            // Users can only see their own orders
-            String username = authentication.getName();
-            orders = getUserOrdersCached(username);
+        // Each chunk is one transaction, so a failing chunk does not roll back the ones before it
+        for (int start = 0; start < orderRequests.size(); start += batchChunkSize) {
+            List<OrderRequest> chunk = orderRequests.subList(start, Math.min(orderRequests.size(), start + batchChunkSize));
+            List<BatchOrderResponse.BatchOrderResult> results;
+            try {
+                results = transactionTemplate.execute(status -> placeChunk(username, chunk));
+            } catch (RuntimeException e) {
+                results = new ArrayList<>();
+                for (int i = 0; i < chunk.size(); i++) {
+                    results.add(new BatchOrderResponse.BatchOrderResult(0, false, null, e.getMessage()));
+                }
+            }
+            
+            for (int i = 0; i < results.size(); i++) {
+                BatchOrderResponse.BatchOrderResult result = results.get(i);
+                result.setIndex(start + i);
+                if (result.isPlaced()) {
+                    response.setPlaced(response.getPlaced() + 1);
+                } else {
+                    response.setRejected(response.getRejected() + 1);
+                }
+                response.getResults().add(result);
+            }
         }
         
-        return orders.stream()
-                .map(this::mapToResponse)
+        // Chunks commit independently, so evict once after the last one
+        if (response.getPlaced() > 0) {
+            Set<Long> productIds = new TreeSet<>();
+            for (OrderRequest orderRequest : orderRequests) {
+                for (OrderItemRequest itemRequest : orderRequest.getOrder()) {
+                    productIds.add(itemRequest.getProductId());
+                }
+            }
+            cacheInvalidationService.ordersPlaced("order-batch-placed",
+                    Collections.singleton(username), productIds);
+        }
+        
+        return response;
+    }
+    
+    private List<BatchOrderResponse.BatchOrderResult> placeChunk(String username, List<OrderRequest> chunk) {
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new InvalidCredentialsException("User not found"));
+        
+        List<Map<Long, Integer>> baskets = chunk.stream()
+                .map(orderRequest -> aggregateQuantities(orderRequest.getOrder()))
                 .collect(Collectors.toList());
+        BatchReservation reservation = inventoryService.reserveAll(baskets);
+        
+        List<Order> orders = new ArrayList<>();
+        Map<Long, Integer> orderCounts = new HashMap<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            if (!reservation.isReserved(i)) {
+                orders.add(null);
+                continue;
+            }
+            
+            Order order = new Order();
+            order.setUser(user);
+            for (OrderItemRequest itemRequest : chunk.get(i).getOrder()) {
+                order.addItem(new OrderItem(reservation.getProducts().get(itemRequest.getProductId()), itemRequest.getQuantity()));
+            }
+            inventoryService.recordReservation(order, baskets.get(i));
+            orderRepository.save(order);
+            orders.add(order);
+            baskets.get(i).keySet().forEach(productId -> orderCounts.merge(productId, 1, Integer::sum));
+        }
+        // All orders of a chunk are the same user's
+        purchaseSummaryRepository.recordPurchases(user.getId(), orderCounts, LocalDateTime.now());
+        
+        // Insert the chunk now so ids and timestamps are set; pooled ids let Hibernate batch these statements
+        orderRepository.flush();
+        
+        List<BatchOrderResponse.BatchOrderResult> results = new ArrayList<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            if (orders.get(i) != null) {
+                results.add(new BatchOrderResponse.BatchOrderResult(0, true, mapToResponse(orders.get(i)), null));
+            } else {
+                results.add(new BatchOrderResponse.BatchOrderResult(0, false, null, reservation.getFailures().get(i).getMessage()));
+            }
+        }
+        return results;
     }
     
-    @Cacheable(value = "orders", key = "'all'")
-    @Transactional(readOnly = true)
-    public List<Order> getAllOrdersCached() {
-        return orderRepository.findAll();
+    @Override
+    @PreAuthorize("hasRole('USER')")
+    @Transactional
+    public OrderResponse submitOrder(OrderRequest orderRequest) {
+        User currentUser = getCurrentUser();
+        
+        // Only validate the basket here, stock is reserved later by the intake workers
+        Map<Long, Integer> quantities = aggregateQuantities(orderRequest.getOrder());
+        Map<Long, Product> products = productRepository.findAllByIds(quantities.keySet()).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        for (Long productId : quantities.keySet()) {
+            if (!products.containsKey(productId)) {
+                throw new EntityNotFoundException("Product not found with id: " + productId);
+            }
+        }
+        
+        Order order = new Order();
+        order.setUser(currentUser);
+        order.setStatus(Order.OrderStatus.PENDING);
+        for (OrderItemRequest itemRequest : orderRequest.getOrder()) {
+            order.addItem(new OrderItem(products.get(itemRequest.getProductId()), itemRequest.getQuantity()));
+        }
+        
+        Order savedOrder = orderRepository.save(order);
+        cacheInvalidationService.orderSubmitted(currentUser.getUsername());
+        
+        // Hand the order to the workers once it is visible to them
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                orderIntakeProcessor.enqueue(savedOrder.getId());
+            }
+        });
+        
+        return mapToResponse(savedOrder);
     }
     
-    @Cacheable(value = "user-orders", key = "#username")
-    @Transactional(readOnly = true)
-    public List<Order> getUserOrdersCached(String username) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new InvalidCredentialsException("User not found"));
-        return orderRepository.findAllByUserId(user.getId());
+    // Served from cached snapshots, a hit needs no transaction, entity or mapping
+    @Override
+    public CursorPage<OrderResponse> getAllOrders(String cursor, int limit) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        boolean isAdmin = authentication.getAuthorities().stream()
+                .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
+        
+        // Admins can see all orders, users only their own
+        int pageSize = PageCursor.checkLimit(limit);
+        CursorPage<OrderSnapshot> page = isAdmin
+                ? orderSnapshots.getPage(cursor, pageSize)
+                : orderSnapshots.getPageByUsername(authentication.getName(), cursor, pageSize);
+        
+        return new CursorPage<>(page.getItems().stream()
+                .map(OrderSnapshot::getOrder)
+                .collect(Collectors.toList()), page.getNextCursor());
     }
     
     @Override
-    @Transactional(readOnly = true)
-    @Cacheable(value = "orders", key = "'order-' + #id")
     public OrderResponse getOrderById(Long id) {
-        Order order = orderRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException("Order not found"));
+        OrderSnapshot snapshot = orderSnapshots.get(id);
         
-        // Check authorization
-        checkOrderAccess(order);
+        // Checked on every read, cached or not
+        checkOrderAccess(snapshot.getUsername());
         
-        return mapToResponse(order);
+        return snapshot.getOrder();
     }
     
     @Override
     @Transactional
-    @Caching(evict = {
-        @CacheEvict(value = "orders", allEntries = true),
-        @CacheEvict(value = "user-orders", allEntries = true),
-        @CacheEvict(value = {"products", "admin-products"}, allEntries = true)
-    })
     public OrderResponse cancelOrder(Long id) {
-        Order order = orderRepository.findById(id)
+        // Locked so a cancellation cannot race with the intake workers
+        Order order = orderRepository.findByIdForUpdate(id)
                 .orElseThrow(() -> new EntityNotFoundException("Order not found"));
         
         // Check authorization
-        checkOrderAccess(order);
+        checkOrderAccess(order.getUser().getUsername());
+        
+        // Pending orders have not reserved any stock yet
+        if (order.getStatus() == Order.OrderStatus.PENDING) {
+            order.setStatus(Order.OrderStatus.CANCELED);
+            cacheInvalidationService.orderUpdated("order-canceled", id, Collections.emptySet());
+            return mapToResponse(orderRepository.save(order));
+        }
         
         // Check if order can be canceled
         if (order.getStatus() != Order.OrderStatus.PROCESSING) {
@@ -147,15 +275,17 @@ public class OrderServiceImpl implements OrderService {
         }
         
         // Return products to inventory
+        Map<Long, Integer> quantities = new TreeMap<>();
         for (OrderItem item : order.getItems()) {
-            Product product = item.getProduct();
-            product.setQuantity(product.getQuantity() + item.getQuantity());
-            productRepository.save(product);
+            quantities.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
         }
+        inventoryService.release(quantities);
+        purchaseSummaryRepository.removePurchases(order.getUser().getId(), quantities.keySet());
         
         // Update order status
         order.setStatus(Order.OrderStatus.CANCELED);
         Order savedOrder = orderRepository.save(order);
+        cacheInvalidationService.orderCanceled(id, order.getUser().getUsername(), quantities.keySet());
         
         return mapToResponse(savedOrder);
     }
@@ -163,10 +293,6 @@ public class OrderServiceImpl implements OrderService {
     @Override
     @PreAuthorize("hasRole('ADMIN')")
     @Transactional
-    @Caching(evict = {
-        @CacheEvict(value = "orders", allEntries = true),
-        @CacheEvict(value = "user-orders", allEntries = true)
-    })
     public OrderResponse completeOrder(Long id) {
         Order order = orderRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException("Order not found"));
@@ -179,36 +305,27 @@ public class OrderServiceImpl implements OrderService {
         // Update order status
         order.setStatus(Order.OrderStatus.COMPLETED);
         Order savedOrder = orderRepository.save(order);
+        cacheInvalidationService.orderUpdated("order-completed", id, Collections.emptySet());
         
         return mapToResponse(savedOrder);
     }
     
     private OrderResponse mapToResponse(Order order) {
-        List<OrderResponse.OrderItemResponse> itemResponses = new ArrayList<>();
-        
-        for (OrderItem item : order.getItems()) {
-            BigDecimal subtotal = item.getPrice().multiply(new BigDecimal(item.getQuantity()));
-            
-            OrderResponse.OrderItemResponse itemResponse = new OrderResponse.OrderItemResponse(
-                    item.getProduct().getId(),
-                    item.getProductName(),
-                    item.getProductDescription(),
-                    item.getQuantity(),
-                    item.getPrice(),
-                    subtotal
-            );
-            
-            itemResponses.add(itemResponse);
+        return OrderSnapshots.toResponse(order);
+    }
+    
+    private static Map<Long, Integer> orderCounts(Collection<Long> productIds) {
+        Map<Long, Integer> orderCounts = new HashMap<>();
+        productIds.forEach(productId -> orderCounts.put(productId, 1));
+        return orderCounts;
+    }
+    
+    private Map<Long, Integer> aggregateQuantities(List<OrderItemRequest> itemRequests) {
+        Map<Long, Integer> quantities = new TreeMap<>();
+        for (OrderItemRequest itemRequest : itemRequests) {
+            quantities.merge(itemRequest.getProductId(), itemRequest.getQuantity(), Integer::sum);
         }
-        
-        return new OrderResponse(
-                order.getId(),
-                order.getStatus().name(),
-                order.getTotalAmount(),
-                itemResponses,
-                order.getCreatedAt(),
-                order.getUpdatedAt()
-        );
+        return quantities;
     }
     
     private User getCurrentUser() {
@@ -217,12 +334,12 @@ public class OrderServiceImpl implements OrderService {
                 .orElseThrow(() -> new InvalidCredentialsException("User not found"));
     }
     
-    private void checkOrderAccess(Order order) {
+    private void checkOrderAccess(String ownerUsername) {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         boolean isAdmin = authentication.getAuthorities().stream()
                 .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
         
-        if (!isAdmin && !order.getUser().getUsername().equals(authentication.getName())) {
+        if (!isAdmin && !ownerUsername.equals(authentication.getName())) {
             throw new AccessDeniedException("You do not have permission to access this order");
         }
     }
@@ -1,15 +1,25 @@
 package com.example.supermartbackend.service.impl;
 
 import com.example.supermartbackend.dto.AdminProductResponse;
+import com.example.supermartbackend.dto.CatalogProduct;
+import com.example.supermartbackend.dto.CursorPage;
 import com.example.supermartbackend.dto.ProductRequest;
 import com.example.supermartbackend.dto.ProductResponse;
 import com.example.supermartbackend.entity.Product;
 import com.example.supermartbackend.entity.User;
 import com.example.supermartbackend.repository.ProductRepository;
+import com.example.supermartbackend.repository.PurchaseSummaryRepository;
 import com.example.supermartbackend.repository.UserRepository;
+import com.example.supermartbackend.service.CacheInvalidationService;
+import com.example.supermartbackend.service.CatalogListing;
+import com.example.supermartbackend.service.CatalogSnapshot;
+import com.example.supermartbackend.service.CatalogSnapshotService;
+import com.example.supermartbackend.service.InventoryService;
+import com.example.supermartbackend.service.NegativeLookupCache;
+import com.example.supermartbackend.service.PageCursor;
+import com.example.supermartbackend.service.ProductCatalog;
 import com.example.supermartbackend.service.ProductService;
 import lombok.RequiredArgsConstructor;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
@@ -17,7 +27,11 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityNotFoundException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -26,49 +40,123 @@ public class ProductServiceImpl implements ProductService {
     
     private final ProductRepository productRepository;
     private final UserRepository userRepository;
+    private final InventoryService inventoryService;
+    private final ProductCatalog productCatalog;
+    private final CatalogSnapshotService catalogSnapshotService;
+    private final CacheInvalidationService cacheInvalidationService;
+    private final NegativeLookupCache negativeLookupCache;
+    private final PurchaseSummaryRepository purchaseSummaryRepository;
     
     @Override
-    @Transactional(readOnly = true)
-    @Cacheable(value = "products", key = "'all-in-stock'")
     public List<ProductResponse> getAllInStockProducts() {
-        return productRepository.findAllInStock().stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+        // Static fields come from the in-memory snapshot and stock levels from their store, so checkouts leave the catalog alone
+        List<CatalogSnapshot.Item> catalog = catalogSnapshotService.current().getItems();
+        return inStockProducts(catalog, getStockLevels(catalog));
+    }
+    
+    @Override
+    public CursorPage<ProductResponse> getInStockProductsPage(String cursor, int limit) {
+        int pageSize = PageCursor.checkLimit(limit);
+        CatalogSnapshot snapshot = catalogSnapshotService.current();
+        Long afterId = PageCursor.productId(cursor);
+        
+        // Out of stock products are skipped, so scan on until the page and one more product are found
+        List<ProductResponse> page = new ArrayList<>(pageSize + 1);
+        while (page.size() <= pageSize) {
+            List<CatalogSnapshot.Item> chunk = snapshot.getItemsAfter(afterId, pageSize + 1);
+            if (chunk.isEmpty()) {
+                break;
+            }
+            Map<Long, Integer> stockLevels = getStockLevels(chunk);
+            for (CatalogSnapshot.Item item : chunk) {
+                int quantity = stockLevels.getOrDefault(item.getProduct().getId(), 0);
+                if (quantity > 0 && page.size() <= pageSize) {
+                    page.add(mapToResponse(item.getProduct(), quantity));
+                }
+            }
+            afterId = chunk.get(chunk.size() - 1).getProduct().getId();
+        }
+        
+        if (page.size() <= pageSize) {
+            return new CursorPage<>(page, null);
+        }
+        page.remove(pageSize);
+        return new CursorPage<>(page, PageCursor.ofProduct(page.get(pageSize - 1).getId()));
+    }
+    
+    @Override
+    public long getCatalogVersion() {
+        return catalogSnapshotService.getVersion();
+    }
+    
+    @Override
+    public CatalogListing getCatalogListing() {
+        // The snapshot version covers the static fields, a hash of the stock levels the quantities.
+        // The listings are built from the same snapshot and levels, never from a later read.
+        CatalogSnapshot snapshot = catalogSnapshotService.current();
+        List<CatalogSnapshot.Item> catalog = snapshot.getItems();
+        Map<Long, Integer> stockLevels = getStockLevels(catalog);
+        long stockHash = 1;
+        for (CatalogSnapshot.Item item : catalog) {
+            Long id = item.getProduct().getId();
+            stockHash = 31 * (31 * stockHash + id) + stockLevels.getOrDefault(id, 0);
+        }
+        return new CatalogListing(snapshot.getVersion(), snapshot.getVersion() + "-" + Long.toHexString(stockHash),
+                () -> inStockProducts(catalog, stockLevels),
+                () -> productsForAdmin(catalog, stockLevels));
     }
     
     @Override
-    @Transactional(readOnly = true)
-    @Cacheable(value = "products", key = "'product-' + #id")
     public ProductResponse getProductById(Long id) {
-        Product product = productRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Product not found"));
-        return mapToResponse(product);
+        CatalogProduct product = productCatalog.get(id);
+        Integer quantity = productCatalog.getStockLevels(Collections.singleton(id)).get(id);
+        if (quantity == null) {
+            throw new EntityNotFoundException("Product not found");
+        }
+        return mapToResponse(product, quantity);
     }
     
     @Override
     @PreAuthorize("hasRole('ADMIN')")
     @Transactional(readOnly = true)
-    @Cacheable(value = "admin-products", key = "'admin-product-' + #id")
+    @Cacheable(value = "admin-products", keyGenerator = "adminProductKeys", sync = true)
     public AdminProductResponse getProductByIdForAdmin(Long id) {
-        Product product = productRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Product not found"));
+        // Only reached on an admin-products miss, so products that exist never consult the negative cache
+        if (negativeLookupCache.isMissing(NegativeLookupCache.PRODUCT, id)) {
+            throw new EntityNotFoundException("Product not found");
+        }
+        Product product = productRepository.findById(id).orElse(null);
+        if (product == null) {
+            negativeLookupCache.markMissing(NegativeLookupCache.PRODUCT, id);
+            throw new EntityNotFoundException("Product not found");
+        }
         return mapToAdminResponse(product);
     }
     
     @Override
     @PreAuthorize("hasRole('ADMIN')")
-    @Transactional(readOnly = true)
-    @Cacheable(value = "admin-products", key = "'all-admin'")
     public List<AdminProductResponse> getAllProductsForAdmin() {
-        return productRepository.findAll().stream()
-                .map(this::mapToAdminResponse)
+        List<CatalogSnapshot.Item> catalog = catalogSnapshotService.current().getItems();
+        return productsForAdmin(catalog, getStockLevels(catalog));
+    }
+    
+    @Override
+    @PreAuthorize("hasRole('ADMIN')")
+    public CursorPage<AdminProductResponse> getProductsPageForAdmin(String cursor, int limit) {
+        int pageSize = PageCursor.checkLimit(limit);
+        List<CatalogSnapshot.Item> chunk = catalogSnapshotService.current().getItemsAfter(PageCursor.productId(cursor), pageSize + 1);
+        List<CatalogSnapshot.Item> page = chunk.subList(0, Math.min(pageSize, chunk.size()));
+        Map<Long, Integer> stockLevels = getStockLevels(page);
+        List<AdminProductResponse> products = page.stream()
+                .map(item -> mapToAdminResponse(item, stockLevels.getOrDefault(item.getProduct().getId(), 0)))
                 .collect(Collectors.toList());
+        String nextCursor = chunk.size() > pageSize ? PageCursor.ofProduct(page.get(pageSize - 1).getProduct().getId()) : null;
+        return new CursorPage<>(products, nextCursor);
     }
     
     @Override
     @PreAuthorize("hasRole('ADMIN')")
     @Transactional
-    @CacheEvict(value = {"products", "admin-products", "top-profitable-products", "top-popular-products"}, allEntries = true)
     public ProductResponse addProduct(ProductRequest productRequest) {
         Product product = new Product();
         product.setName(productRequest.getName());
@@ -78,15 +166,17 @@ public class ProductServiceImpl implements ProductService {
         product.setQuantity(productRequest.getQuantity());
         
         Product savedProduct = productRepository.save(product);
+        inventoryService.stockAdjusted(savedProduct.getId(), savedProduct.getQuantity());
+        cacheInvalidationService.productChanged("product-added", savedProduct.getId());
         return mapToResponse(savedProduct);
     }
     
     @Override
     @PreAuthorize("hasRole('ADMIN')")
     @Transactional
-    @CacheEvict(value = {"products", "admin-products", "top-profitable-products", "top-popular-products"}, allEntries = true)
     public ProductResponse updateProduct(Long id, ProductRequest productRequest) {
-        Product product = productRepository.findById(id)
+        // Locked so a stock change cannot interleave with a checkout or an inventory flush
+        Product product = productRepository.findByIdForUpdate(id)
                 .orElseThrow(() -> new RuntimeException("Product not found"));
         
         if (productRequest.getName() != null) {
@@ -106,39 +196,56 @@ public class ProductServiceImpl implements ProductService {
         }
         
         if (productRequest.getQuantity() != null) {
+            inventoryService.stockAdjusted(id, productRequest.getQuantity() - product.getQuantity());
             product.setQuantity(productRequest.getQuantity());
         }
         
         Product updatedProduct = productRepository.save(product);
+        cacheInvalidationService.productChanged("product-updated", id);
         return mapToResponse(updatedProduct);
     }
     
     @Override
     @PreAuthorize("hasRole('ADMIN')")
-    @Transactional(readOnly = true)
-    @Cacheable(value = "top-profitable-products", key = "'top-profit-' + #count")
     public List<ProductResponse> getTopProfitableProducts(int count) {
-        return productRepository.findTopXByProfit(count).stream()
-                .map(this::mapToResponse)
+        // A walk over the in-memory margin index, only the stock levels of the ranked products are looked up
+        List<CatalogSnapshot.Item> ranked = catalogSnapshotService.getTopByProfit(count);
+        Map<Long, Integer> stockLevels = getStockLevels(ranked);
+        return ranked.stream()
+                .map(CatalogSnapshot.Item::getProduct)
+                .map(product -> mapToResponse(product, stockLevels.getOrDefault(product.getId(), 0)))
                 .collect(Collectors.toList());
     }
     
     @Override
     @PreAuthorize("hasRole('ADMIN')")
     @Transactional(readOnly = true)
-    @Cacheable(value = "top-popular-products", key = "'top-popular-' + #count")
+    @Cacheable(value = "top-popular-products", keyGenerator = "topPopularKeys", sync = true)
     public List<ProductResponse> getTopPopularProducts(int count) {
+        // Recorded before loading, so an order committed meanwhile still finds the key to evict
+        cacheInvalidationService.keyCached(CacheInvalidationService.TOP_POPULAR_CACHE, CacheInvalidationService.TOP_POPULAR_PREFIX, count);
         return productRepository.findTopXByPopularity(count).stream()
                 .map(this::mapToResponse)
                 .collect(Collectors.toList());
     }
     
+    @Override
+    @PreAuthorize("hasRole('ADMIN')")
+    @Transactional
+    public int rebuildPopularity() {
+        int products = productRepository.rebuildOrderCounts();
+        cacheInvalidationService.popularityRebuilt();
+        return products;
+    }
+    
     @Override
     @PreAuthorize("hasRole('USER')")
     @Transactional(readOnly = true)
-    @Cacheable(value = "user-recent-products", key = "'recent-' + T(org.springframework.security.core.context.SecurityContextHolder).getContext().getAuthentication().getName() + '-' + #count")
+    @Cacheable(value = "user-recent-products", keyGenerator = "recentProductKeys", sync = true)
     public List<ProductResponse> getRecentlyPurchasedProducts(int count) {
         User currentUser = getCurrentUser();
+        cacheInvalidationService.keyCached(CacheInvalidationService.RECENT_CACHE,
+                CacheInvalidationService.recentPrefix(currentUser.getUsername()), count);
         return productRepository.findMostRecentlyPurchased(currentUser.getId(), count).stream()
                 .map(this::mapToResponse)
                 .collect(Collectors.toList());
@@ -147,14 +254,25 @@ public class ProductServiceImpl implements ProductService {
     @Override
     @PreAuthorize("hasRole('USER')")
     @Transactional(readOnly = true)
-    @Cacheable(value = "user-frequent-products", key = "'frequent-' + T(org.springframework.security.core.context.SecurityContextHolder).getContext().getAuthentication().getName() + '-' + #count")
+    @Cacheable(value = "user-frequent-products", keyGenerator = "frequentProductKeys", sync = true)
     public List<ProductResponse> getFrequentlyPurchasedProducts(int count) {
         User currentUser = getCurrentUser();
+        cacheInvalidationService.keyCached(CacheInvalidationService.FREQUENT_CACHE,
+                CacheInvalidationService.frequentPrefix(currentUser.getUsername()), count);
         return productRepository.findMostFrequentlyPurchased(currentUser.getId(), count).stream()
                 .map(this::mapToResponse)
                 .collect(Collectors.toList());
     }
     
+    @Override
+    @PreAuthorize("hasRole('ADMIN')")
+    @Transactional
+    public int rebuildPurchaseHistory() {
+        int summaries = purchaseSummaryRepository.rebuild();
+        cacheInvalidationService.purchaseHistoryRebuilt();
+        return summaries;
+    }
+    
     private ProductResponse mapToResponse(Product product) {
         return new ProductResponse(
                 product.getId(),
@@ -167,6 +285,18 @@ public class ProductServiceImpl implements ProductService {
         );
     }
     
+    private ProductResponse mapToResponse(CatalogProduct product, Integer quantity) {
+        return new ProductResponse(
+                product.getId(),
+                product.getName(),
+                product.getDescription(),
+                product.getRetailPrice(),
+                quantity,
+                product.getCreatedAt(),
+                product.getUpdatedAt()
+        );
+    }
+    
     private AdminProductResponse mapToAdminResponse(Product product) {
         return new AdminProductResponse(
                 product.getId(),
@@ -180,6 +310,40 @@ public class ProductServiceImpl implements ProductService {
         );
     }
     
+    private List<ProductResponse> inStockProducts(List<CatalogSnapshot.Item> catalog, Map<Long, Integer> stockLevels) {
+        return catalog.stream()
+                .map(CatalogSnapshot.Item::getProduct)
+                .filter(product -> stockLevels.getOrDefault(product.getId(), 0) > 0)
+                .map(product -> mapToResponse(product, stockLevels.get(product.getId())))
+                .collect(Collectors.toList());
+    }
+    
+    private List<AdminProductResponse> productsForAdmin(List<CatalogSnapshot.Item> catalog, Map<Long, Integer> stockLevels) {
+        return catalog.stream()
+                .map(item -> mapToAdminResponse(item, stockLevels.getOrDefault(item.getProduct().getId(), 0)))
+                .collect(Collectors.toList());
+    }
+    
+    private Map<Long, Integer> getStockLevels(List<CatalogSnapshot.Item> catalog) {
+        return productCatalog.getStockLevels(catalog.stream()
+                .map(item -> item.getProduct().getId())
+                .collect(Collectors.toList()));
+    }
+    
+    private AdminProductResponse mapToAdminResponse(CatalogSnapshot.Item item, Integer quantity) {
+        CatalogProduct product = item.getProduct();
+        return new AdminProductResponse(
+                product.getId(),
+                product.getName(),
+                product.getDescription(),
+                item.getWholesalePrice(),
+                product.getRetailPrice(),
+                quantity,
+                product.getCreatedAt(),
+                product.getUpdatedAt()
+        );
+    }
+    
     private User getCurrentUser() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         return userRepository.findByUsername(authentication.getName())
@@ -0,0 +1,108 @@
+package com.example.supermartbackend.service.impl;
+
+import com.example.supermartbackend.dto.OrderResponse;
+import com.example.supermartbackend.service.IdempotencyRecord;
+import com.example.supermartbackend.service.IdempotencyStore;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Optional;
+
+/**
+ * Shares idempotency keys between nodes. Keys expire with their TTL; an in-progress claim
+ * has a short TTL of its own so a node dying mid-request does not block the key for long,
+ * renewed while the request runs. Claims are only extended or deleted by compare-and-set scripts
+ * on the exact claim value, so a request never touches a claim it does not hold.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "app.idempotency.store", havingValue = "redis")
+public class RedisIdempotencyStore implements IdempotencyStore {
+
+    private static final String KEY_PREFIX = "idempotency::";
+    // Claims are stored as this prefix plus the request hash, completed requests as their record's JSON
+    private static final String IN_PROGRESS = "IN_PROGRESS:";
+
+    static final RedisScript<Long> EXPIRE_IF_CLAIMED = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('PEXPIRE', KEYS[1], ARGV[2]) end return 0", Long.class);
+    static final RedisScript<Long> DELETE_IF_CLAIMED = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0", Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final Duration claimTtl;
+
+    public RedisIdempotencyStore(RedisConnectionFactory redisConnectionFactory,
+                                 ObjectMapper objectMapper,
+                                 @Value("${app.idempotency.ttl-seconds:86400}") long ttlSeconds,
+                                 @Value("${app.idempotency.claim-ttl-seconds:60}") long claimTtlSeconds) {
+        this.redisTemplate = new StringRedisTemplate(redisConnectionFactory);
+        this.objectMapper = objectMapper;
+        this.ttl = Duration.ofSeconds(ttlSeconds);
+        this.claimTtl = Duration.ofSeconds(claimTtlSeconds);
+    }
+
+    @Override
+    public Optional<IdempotencyRecord> find(String key) {
+        String value = redisTemplate.opsForValue().get(KEY_PREFIX + key);
+        if (value == null) {
+            return Optional.empty();
+        }
+        if (value.startsWith(IN_PROGRESS)) {
+            return Optional.of(new IdempotencyRecord(value.substring(IN_PROGRESS.length()), null));
+        }
+        try {
+            return Optional.of(objectMapper.readValue(value, IdempotencyRecord.class));
+        } catch (JsonProcessingException e) {
+            log.error("Unreadable idempotency entry for key {}: {}", key, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public boolean claim(String key, String requestHash) {
+        Boolean claimed = redisTemplate.opsForValue().setIfAbsent(KEY_PREFIX + key, IN_PROGRESS + requestHash, claimTtl);
+        return Boolean.TRUE.equals(claimed);
+    }
+
+    @Override
+    public void complete(String key, String requestHash, OrderResponse response) {
+        String record;
+        try {
+            record = objectMapper.writeValueAsString(new IdempotencyRecord(requestHash, response));
+        } catch (JsonProcessingException e) {
+            // The order exists: keep the key claimed for the full TTL, so retries get a conflict instead of a second order
+            log.error("Could not store idempotency entry for key {}, keeping it claimed: {}", key, e.getMessage());
+            expireIfClaimed(key, requestHash, ttl);
+            return;
+        }
+        redisTemplate.opsForValue().set(KEY_PREFIX + key, record, ttl);
+    }
+
+    @Override
+    public boolean renew(String key, String requestHash) {
+        return expireIfClaimed(key, requestHash, claimTtl);
+    }
+
+    @Override
+    public void release(String key, String requestHash) {
+        redisTemplate.execute(DELETE_IF_CLAIMED, Collections.singletonList(KEY_PREFIX + key), IN_PROGRESS + requestHash);
+    }
+
+    private boolean expireIfClaimed(String key, String requestHash, Duration expiry) {
+        Long renewed = redisTemplate.execute(EXPIRE_IF_CLAIMED, Collections.singletonList(KEY_PREFIX + key),
+                IN_PROGRESS + requestHash, Long.toString(expiry.toMillis()));
+        return renewed != null && renewed == 1;
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.supermartbackend.service.impl;
+
+import com.example.supermartbackend.cache.RedisCircuitBreaker;
+import com.example.supermartbackend.service.StockLevelStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Keeps stock levels in one Redis hash shared by all nodes, one field per product.
+ * Writers bump the product's generation and delete its field; a reader only stores a level it loaded
+ * if the generation is still the one it saw before loading, so a stale level never outlives a write.
+ * While the Redis circuit is open levels are read from the database; if an eviction was skipped in
+ * that time, all levels are dropped before the circuit closes.
+ */
+@Service
+@ConditionalOnProperty(name = "app.catalog.stock-store", havingValue = "redis", matchIfMissing = true)
+public class RedisStockLevelStore implements StockLevelStore {
+    
+    // Hash tagged so both keys live in the same slot on a cluster
+    private static final String LEVELS_KEY = "{stock-levels}";
+    private static final String GENERATIONS_KEY = "{stock-levels}:generation";
+    
+    private static final RedisScript<Long> STORE_IF_UNCHANGED = new DefaultRedisScript<>(
+            "for i = 2, #ARGV, 3 do\n" +
+            "  local generation = redis.call('HGET', KEYS[2], ARGV[i]) or ''\n" +
+            "  if generation == ARGV[i + 1] then\n" +
+            "    redis.call('HSETNX', KEYS[1], ARGV[i], ARGV[i + 2])\n" +
+            "  end\n" +
+            "end\n" +
+            "redis.call('EXPIRE', KEYS[1], ARGV[1])\n" +
+            "return 1", Long.class);
+    
+    private final StringRedisTemplate redisTemplate;
+    private final RedisCircuitBreaker circuitBreaker;
+    private final long ttlSeconds;
+    
+    private volatile boolean evictionsSkipped;
+    
+    public RedisStockLevelStore(RedisConnectionFactory redisConnectionFactory,
+                                RedisCircuitBreaker circuitBreaker,
+                                @Value("${app.catalog.stock-ttl-seconds:600}") long ttlSeconds) {
+        this.redisTemplate = new StringRedisTemplate(redisConnectionFactory);
+        this.redisTemplate.afterPropertiesSet();
+        this.circuitBreaker = circuitBreaker;
+        this.ttlSeconds = ttlSeconds;
+        circuitBreaker.onRecovery(this::dropLevelsIfStale);
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<Long, Integer> getAll(Collection<Long> productIds, Function<Collection<Long>, Map<Long, Integer>> loader) {
+        Map<Long, Integer> stockLevels = new HashMap<>();
+        if (productIds.isEmpty()) {
+            return stockLevels;
+        }
+        
+        String[] fields = productIds.stream().map(Object::toString).toArray(String[]::new);
+        List<Object> replies = circuitBreaker.call(() -> redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            stringConnection.hMGet(LEVELS_KEY, fields);
+            stringConnection.hMGet(GENERATIONS_KEY, fields);
+            return null;
+        }), () -> null);
+        if (replies == null) {
+            return new HashMap<>(loader.apply(productIds));
+        }
+        List<String> levels = (List<String>) replies.get(0);
+        List<String> generations = (List<String>) replies.get(1);
+        
+        Map<Long, String> missing = new HashMap<>();
+        for (int i = 0; i < fields.length; i++) {
+            Long productId = Long.valueOf(fields[i]);
+            if (levels.get(i) != null) {
+                stockLevels.put(productId, Integer.valueOf(levels.get(i)));
+            } else {
+                missing.put(productId, generations.get(i) != null ? generations.get(i) : "");
+            }
+        }
+        if (missing.isEmpty()) {
+            return stockLevels;
+        }
+        
+        Map<Long, Integer> loaded = loader.apply(missing.keySet());
+        stockLevels.putAll(loaded);
+        
+        List<String> args = new ArrayList<>(1 + loaded.size() * 3);
+        args.add(Long.toString(ttlSeconds));
+        loaded.forEach((productId, quantity) -> {
+            args.add(productId.toString());
+            args.add(missing.get(productId));
+            args.add(quantity.toString());
+        });
+        circuitBreaker.run(() -> redisTemplate.execute(STORE_IF_UNCHANGED, Arrays.asList(LEVELS_KEY, GENERATIONS_KEY), args.toArray()),
+                () -> { });
+        return stockLevels;
+    }
+    
+    @Override
+    public long evict(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return 0;
+        }
+        
+        // Generation first, so a reader that loaded before this write can no longer store its level
+        List<Object> replies = circuitBreaker.call(() -> redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            for (Long productId : productIds) {
+                stringConnection.hIncrBy(GENERATIONS_KEY, productId.toString(), 1);
+            }
+            stringConnection.hDel(LEVELS_KEY, productIds.stream().map(Object::toString).toArray(String[]::new));
+            return null;
+        }), () -> {
+            evictionsSkipped = true;
+            return null;
+        });
+        // The last reply is the HDEL's count of removed fields
+        return replies != null ? ((Number) replies.get(replies.size() - 1)).longValue() : 0;
+    }
+    
+    private void dropLevelsIfStale() {
+        if (evictionsSkipped) {
+            evictionsSkipped = false;
+            try {
+                redisTemplate.delete(LEVELS_KEY);
+            } catch (RuntimeException e) {
+                evictionsSkipped = true;
+                throw e;
+            }
+        }
+    }
+}
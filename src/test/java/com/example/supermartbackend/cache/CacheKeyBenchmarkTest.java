@@ -0,0 +1,70 @@
+package com.example.supermartbackend.cache;
+
+import com.example.supermartbackend.service.impl.ProductServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.expression.MethodBasedEvaluationContext;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.lang.reflect.Method;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Time per key of the former SpEL key expressions against the key generators that replaced them.
+ * Like the cache interceptor, the SpEL side parses each expression once and builds a method based
+ * evaluation context per call. Run with {@code mvn test -Pbenchmark -Dtest=CacheKeyBenchmarkTest}.
+ */
+@Tag("benchmark")
+class CacheKeyBenchmarkTest {
+
+    private static final int WARMUP_ITERATIONS = 200_000;
+    private static final int ITERATIONS = 1_000_000;
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void compareKeyGeneration() throws Exception {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("alice", null));
+        Method recent = ProductServiceImpl.class.getMethod("getRecentlyPurchasedProducts", int.class);
+        Method topPopular = ProductServiceImpl.class.getMethod("getTopPopularProducts", int.class);
+        ParameterNameDiscoverer parameterNames = new DefaultParameterNameDiscoverer();
+        SpelExpressionParser parser = new SpelExpressionParser();
+        Expression recentExpression = parser.parseExpression(CacheKeyGeneratorTest.RECENT_EXPRESSION);
+        Expression topPopularExpression = parser.parseExpression(CacheKeyGeneratorTest.TOP_POPULAR_EXPRESSION);
+        UserScopedKeyGenerator recentKeys = new UserScopedKeyGenerator("recent-");
+        CountKeyGenerator topPopularKeys = new CountKeyGenerator("top-popular-");
+
+        System.out.printf("%-22s %-16s %10s%n", "key", "strategy", "ns/key");
+        report("user scoped (recent)", "spel", count -> recentExpression.getValue(
+                new MethodBasedEvaluationContext(null, recent, new Object[]{count}, parameterNames)));
+        report("user scoped (recent)", "key generator", count -> recentKeys.generate(null, recent, count));
+        report("count (top popular)", "spel", count -> topPopularExpression.getValue(
+                new MethodBasedEvaluationContext(null, topPopular, new Object[]{count}, parameterNames)));
+        report("count (top popular)", "key generator", count -> topPopularKeys.generate(null, topPopular, count));
+    }
+
+    private void report(String key, String strategy, IntFunction<Object> generator) {
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            sink += generator.apply(i & 31).hashCode();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += generator.apply(i & 31).hashCode();
+        }
+        double nanos = (double) (System.nanoTime() - start) / ITERATIONS;
+        assertThat(sink).isNotZero();
+        System.out.printf("%-22s %-16s %10.1f%n", key, strategy, nanos);
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.supermartbackend.cache;
+
+import com.example.supermartbackend.service.impl.ProductServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.expression.MethodBasedEvaluationContext;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.lang.reflect.Method;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The key generators must produce exactly the keys of the SpEL expressions they replaced,
+ * since cache evictions match those keys by prefix.
+ */
+class CacheKeyGeneratorTest {
+
+    static final String RECENT_EXPRESSION = "'recent-' + T(org.springframework.security.core.context.SecurityContextHolder)" +
+            ".getContext().getAuthentication().getName() + '-' + #count";
+    static final String TOP_POPULAR_EXPRESSION = "'top-popular-' + #count";
+
+    @BeforeEach
+    void setUp() {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("alice", null));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void userScopedKeysMatchTheFormerExpression() throws Exception {
+        Method method = ProductServiceImpl.class.getMethod("getRecentlyPurchasedProducts", int.class);
+        UserScopedKeyGenerator generator = new UserScopedKeyGenerator("recent-");
+
+        for (int count : new int[]{1, 5, 500}) {
+            assertThat(generator.generate(null, method, count)).isEqualTo(evaluate(RECENT_EXPRESSION, method, count));
+        }
+    }
+
+    @Test
+    void countKeysMatchTheFormerExpression() throws Exception {
+        Method method = ProductServiceImpl.class.getMethod("getTopPopularProducts", int.class);
+        CountKeyGenerator generator = new CountKeyGenerator("top-popular-");
+
+        for (int count : new int[]{0, 10, 127, 128, 5000, -1}) {
+            assertThat(generator.generate(null, method, count)).isEqualTo(evaluate(TOP_POPULAR_EXPRESSION, method, count));
+        }
+        assertThat(new CountKeyGenerator("admin-product-").generate(null, method, 42L)).isEqualTo("admin-product-42");
+        assertThat(new CountKeyGenerator("all-admin").generate(null, method)).isEqualTo("all-admin");
+    }
+
+    static Object evaluate(String expression, Method method, Object... args) {
+        MethodBasedEvaluationContext context = new MethodBasedEvaluationContext(null, method, args, new DefaultParameterNameDiscoverer());
+        return new SpelExpressionParser().parseExpression(expression).getValue(context);
+    }
+}
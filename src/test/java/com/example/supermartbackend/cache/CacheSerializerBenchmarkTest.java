@@ -0,0 +1,107 @@
+package com.example.supermartbackend.cache;
+
+import com.example.supermartbackend.config.CacheConfig;
+import com.example.supermartbackend.dto.AdminProductResponse;
+import com.example.supermartbackend.dto.OrderResponse;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Bytes per entry and encode/decode time of the JSON and compact cache serializers.
+ * Run with {@code mvn test -Pbenchmark -Dtest=CacheSerializerBenchmarkTest}.
+ */
+@Tag("benchmark")
+class CacheSerializerBenchmarkTest {
+
+    private static final int WARMUP_ITERATIONS = 500;
+    private static final int ITERATIONS = 2_000;
+
+    @Test
+    void compareSerializers() {
+        RedisSerializer<Object> json = CacheConfig.jsonSerializer();
+        Map<String, RedisSerializer<Object>> serializers = new LinkedHashMap<>();
+        serializers.put("json", json);
+        serializers.put("compact", new CompactRedisSerializer(json, 0));
+        serializers.put("compact+gzip", new CompactRedisSerializer(json, 2048));
+
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("admin product list (500)", adminProducts(500));
+        values.put("single order (5 items)", order(5));
+
+        System.out.printf("%-26s %-13s %10s %12s %12s%n", "value", "serializer", "bytes", "encode us", "decode us");
+        for (Map.Entry<String, Object> value : values.entrySet()) {
+            for (Map.Entry<String, RedisSerializer<Object>> serializer : serializers.entrySet()) {
+                Result result = measure(serializer.getValue(), value.getValue());
+                System.out.printf("%-26s %-13s %10d %12.2f %12.2f%n", value.getKey(), serializer.getKey(),
+                        result.bytes, result.encodeMicros, result.decodeMicros);
+            }
+        }
+    }
+
+    private Result measure(RedisSerializer<Object> serializer, Object value) {
+        byte[] bytes = serializer.serialize(value);
+        assertThat(serializer.deserialize(bytes)).isEqualTo(value);
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            serializer.deserialize(serializer.serialize(value));
+        }
+
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += serializer.serialize(value).length;
+        }
+        long encodeNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += serializer.deserialize(bytes) != null ? 1 : 0;
+        }
+        long decodeNanos = System.nanoTime() - start;
+        assertThat(sink).isPositive();
+
+        return new Result(bytes.length, encodeNanos / 1000.0 / ITERATIONS, decodeNanos / 1000.0 / ITERATIONS);
+    }
+
+    private List<AdminProductResponse> adminProducts(int count) {
+        LocalDateTime now = LocalDateTime.now();
+        List<AdminProductResponse> products = new ArrayList<>();
+        for (long id = 1; id <= count; id++) {
+            products.add(new AdminProductResponse(id, "Product " + id, "Description of product number " + id,
+                    new BigDecimal("1.25").add(BigDecimal.valueOf(id)), new BigDecimal("2.49").add(BigDecimal.valueOf(id)),
+                    (int) (id % 300), now.minusDays(id), now));
+        }
+        return products;
+    }
+
+    private OrderResponse order(int itemCount) {
+        List<OrderResponse.OrderItemResponse> items = new ArrayList<>();
+        for (long id = 1; id <= itemCount; id++) {
+            items.add(new OrderResponse.OrderItemResponse(id, "Product " + id, "Description of product number " + id,
+                    2, new BigDecimal("3.49"), new BigDecimal("6.98")));
+        }
+        return new OrderResponse(42L, "PROCESSING", new BigDecimal("34.90"), items, LocalDateTime.now(), LocalDateTime.now(), null);
+    }
+
+    private static final class Result {
+        private final int bytes;
+        private final double encodeMicros;
+        private final double decodeMicros;
+
+        private Result(int bytes, double encodeMicros, double decodeMicros) {
+            this.bytes = bytes;
+            this.encodeMicros = encodeMicros;
+            this.decodeMicros = decodeMicros;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.supermartbackend.cache;
+
+import com.example.supermartbackend.config.CacheConfig;
+import com.example.supermartbackend.dto.AdminProductResponse;
+import com.example.supermartbackend.dto.CatalogProduct;
+import com.example.supermartbackend.dto.OrderResponse;
+import com.example.supermartbackend.dto.OrderSnapshot;
+import com.example.supermartbackend.dto.ProductResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompactRedisSerializerTest {
+
+    private static final LocalDateTime CREATED = LocalDateTime.of(2024, 3, 1, 9, 30, 15, 123_000_000);
+
+    private final RedisSerializer<Object> json = CacheConfig.jsonSerializer();
+    private final CompactRedisSerializer serializer = new CompactRedisSerializer(json, 512);
+
+    @Test
+    void registeredTypesRoundTrip() {
+        List<Object> values = Arrays.asList(
+                new ProductResponse(1L, "Milk", "1 litre", new BigDecimal("1.49"), 12, CREATED, null),
+                new AdminProductResponse(2L, "Bread", null, new BigDecimal("0.80"), new BigDecimal("2.10"), 0, CREATED, CREATED),
+                new CatalogProduct(3L, "Eggs", "Free range, 12 pack", new BigDecimal("3.99"), CREATED, CREATED.plusDays(1)),
+                order(),
+                new OrderSnapshot("alice", order()),
+                Arrays.asList(3L, 2L, 1L),
+                new CacheEntry(Collections.singletonList(new CatalogProduct(4L, "Tea", "", BigDecimal.TEN, null, null)), 42, 1_700_000_000_000L),
+                "plain string",
+                -7L);
+
+        for (Object value : values) {
+            assertThat(serializer.deserialize(serializer.serialize(value))).isEqualTo(value);
+        }
+    }
+
+    @Test
+    void largeValuesAreCompressed() {
+        List<AdminProductResponse> products = new ArrayList<>();
+        for (long id = 1; id <= 200; id++) {
+            products.add(new AdminProductResponse(id, "Product " + id, "Description of product " + id,
+                    new BigDecimal("1.25"), new BigDecimal("2.50"), 100, CREATED, CREATED));
+        }
+
+        byte[] compressed = serializer.serialize(products);
+        byte[] uncompressed = new CompactRedisSerializer(json, 0).serialize(products);
+
+        assertThat(compressed.length).isLessThan(uncompressed.length);
+        assertThat(serializer.deserialize(compressed)).isEqualTo(products);
+        assertThat(uncompressed.length).isLessThan(json.serialize(products).length);
+    }
+
+    @Test
+    void unregisteredTypesFallBackToJson() {
+        Map<String, Object> value = Collections.singletonMap("count", 3);
+
+        assertThat(serializer.deserialize(serializer.serialize(value))).isEqualTo(value);
+    }
+
+    @Test
+    void readsValuesWrittenByTheJsonSerializer() {
+        ProductResponse product = new ProductResponse(1L, "Milk", "1 litre", new BigDecimal("1.49"), 12, CREATED, CREATED);
+
+        assertThat(serializer.deserialize(json.serialize(product))).isEqualTo(product);
+    }
+
+    private OrderResponse order() {
+        List<OrderResponse.OrderItemResponse> items = Arrays.asList(
+                new OrderResponse.OrderItemResponse(1L, "Milk", "1 litre", 2, new BigDecimal("1.49"), new BigDecimal("2.98")),
+                new OrderResponse.OrderItemResponse(3L, "Eggs", null, 1, new BigDecimal("3.99"), new BigDecimal("3.99")));
+        return new OrderResponse(10L, "PROCESSING", new BigDecimal("6.97"), items, CREATED, CREATED, null);
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.supermartbackend.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+class HotKeyWindowTest {
+
+    private static final long MINUTE = 60_000;
+
+    @Test
+    void keysAreRankedByRequestsWithinTheWindow() {
+        HotKeyWindow window = new HotKeyWindow(Duration.ofMinutes(60), 12, 100);
+        long now = 1_000 * MINUTE;
+        for (int i = 0; i < 3; i++) {
+            window.record("getTopPopularProducts:10", now);
+        }
+        window.record("getProductById:7", now);
+        window.record("getProductById:7", now + 10 * MINUTE);
+        window.record("getListing:storefront", now + 20 * MINUTE);
+
+        Map<String, Long> top = window.top(2, now + 20 * MINUTE);
+
+        assertThat(top).containsExactly(
+                entry("getTopPopularProducts:10", 3L),
+                entry("getProductById:7", 2L));
+    }
+
+    @Test
+    void requestsOlderThanTheWindowDropOut() {
+        HotKeyWindow window = new HotKeyWindow(Duration.ofMinutes(60), 12, 100);
+        long now = 1_000 * MINUTE;
+        window.record("getProductById:1", now);
+        window.record("getProductById:2", now + 30 * MINUTE);
+
+        assertThat(window.top(10, now + 61 * MINUTE)).containsOnlyKeys("getProductById:2");
+        // The ring slot of the first request is reused by a later bucket
+        window.record("getProductById:3", now + 60 * MINUTE);
+        assertThat(window.top(10, now + 60 * MINUTE)).containsOnlyKeys("getProductById:2", "getProductById:3");
+    }
+
+    @Test
+    void bucketsStopCountingNewKeysWhenFull() {
+        HotKeyWindow window = new HotKeyWindow(Duration.ofMinutes(60), 12, 2);
+        long now = 1_000 * MINUTE;
+        window.record("a", now);
+        window.record("b", now);
+        window.record("c", now);
+        window.record("a", now);
+
+        assertThat(window.top(10, now)).containsOnlyKeys("a", "b");
+    }
+}
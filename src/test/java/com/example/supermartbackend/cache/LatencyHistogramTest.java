@@ -0,0 +1,35 @@
+package com.example.supermartbackend.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class LatencyHistogramTest {
+
+    @Test
+    void percentilesStayWithinTheBucketResolution() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 10_000; micros++) {
+            histogram.record(micros);
+        }
+
+        assertThat(histogram.getCount()).isEqualTo(10_000);
+        assertThat(histogram.getMeanMicros()).isCloseTo(5_000.5, within(0.01));
+        assertThat(histogram.percentileMicros(50)).isBetween(5_000L, 6_250L);
+        assertThat(histogram.percentileMicros(99)).isBetween(9_900L, 10_000L);
+        assertThat(histogram.percentileMicros(100)).isEqualTo(10_000);
+    }
+
+    @Test
+    void everyValueFallsInsideItsBucket() {
+        for (long value : new long[]{0, 1, 3, 4, 7, 8, 9, 1_000, 123_456_789}) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertThat(LatencyHistogram.upperBoundOf(bucket)).isGreaterThanOrEqualTo(value);
+            if (bucket > 0) {
+                assertThat(LatencyHistogram.upperBoundOf(bucket - 1)).isLessThan(value);
+            }
+        }
+        assertThat(new LatencyHistogram().percentileMicros(99)).isZero();
+    }
+}
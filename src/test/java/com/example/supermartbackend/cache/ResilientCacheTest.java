@@ -0,0 +1,215 @@
+package com.example.supermartbackend.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.RedisConnectionFailureException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Caches in front of a fake Redis that can be taken down or slowed past its command timeout.
+ */
+class ResilientCacheTest {
+
+    private static final long TIMEOUT_MS = 100;
+
+    private FakeRedis redis;
+    private RedisCircuitBreaker circuitBreaker;
+    private ResilientCacheManager cacheManager;
+
+    @BeforeEach
+    void setUp() {
+        redis = new FakeRedis();
+        circuitBreaker = new RedisCircuitBreaker(3, Duration.ofMillis(50), Duration.ofMillis(100));
+        cacheManager = new ResilientCacheManager(redis, circuitBreaker, 100);
+    }
+
+    @Test
+    void outageCostsOnlyTheCallsThatTripTheCircuit() {
+        Cache cache = cacheManager.getCache("products");
+        redis.down = true;
+
+        List<Long> latencies = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String key = "catalog-" + i;
+            long start = System.nanoTime();
+            assertThat(cache.get(key, () -> "from database")).isEqualTo("from database");
+            latencies.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+
+        // Only the first two misses wait for Redis to time out, so p99 stays far below the timeout
+        Collections.sort(latencies);
+        assertThat(latencies.get(197)).isLessThan(TIMEOUT_MS);
+        assertThat(circuitBreaker.getState()).isEqualTo(RedisCircuitBreaker.State.OPEN);
+        CircuitBreakerStats stats = circuitBreaker.getStats();
+        assertThat(stats.getFailures()).isEqualTo(3);
+        assertThat(stats.getOpens()).isEqualTo(1);
+        assertThat(stats.getRejectedCalls()).isEqualTo(397);
+    }
+
+    @Test
+    void latencySpikesTripTheCircuit() {
+        Cache cache = cacheManager.getCache("products");
+        redis.latencyMs = 60;
+
+        for (int i = 0; i < 3; i++) {
+            cache.get("catalog-" + i);
+        }
+
+        assertThat(circuitBreaker.getState()).isEqualTo(RedisCircuitBreaker.State.OPEN);
+        assertThat(circuitBreaker.getStats().getSlowCalls()).isEqualTo(3);
+        assertThat(circuitBreaker.getStats().getFailures()).isZero();
+    }
+
+    @Test
+    void probeClosesTheCircuitOnceRedisAnswersInTime() throws Exception {
+        tripCircuit();
+
+        // Too early, then too slow
+        redis.down = false;
+        circuitBreaker.probe(redis::ping);
+        assertThat(circuitBreaker.getState()).isEqualTo(RedisCircuitBreaker.State.OPEN);
+        Thread.sleep(150);
+        redis.latencyMs = 60;
+        circuitBreaker.probe(redis::ping);
+        assertThat(circuitBreaker.getState()).isEqualTo(RedisCircuitBreaker.State.OPEN);
+
+        Thread.sleep(150);
+        redis.latencyMs = 0;
+        circuitBreaker.probe(redis::ping);
+        assertThat(circuitBreaker.getState()).isEqualTo(RedisCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void writesSkippedDuringAnOutageAreRepairedBeforeTheCircuitCloses() throws Exception {
+        Cache cache = cacheManager.getCache("products");
+        cache.put("catalog-1", "milk");
+        cache.put("catalog-2", "bread");
+        tripCircuit();
+
+        cache.put("catalog-1", "oat milk");
+        cache.evict("catalog-2");
+        assertThat(((ResilientCache) cache).getPendingKeyCount()).isEqualTo(2);
+
+        redis.down = false;
+        Thread.sleep(150);
+        circuitBreaker.probe(redis::ping);
+
+        assertThat(circuitBreaker.isClosed()).isTrue();
+        assertThat(cache.get("catalog-1")).isNull();
+        assertThat(cache.get("catalog-2")).isNull();
+        assertThat(((ResilientCache) cache).getPendingKeyCount()).isZero();
+    }
+
+    @Test
+    void localCachesKeepServingWhileTheCircuitIsOpen() throws Exception {
+        TwoLevelCacheManager node = new TwoLevelCacheManager(cacheManager, Collections.emptyMap(),
+                new LocalCacheSpec(100, Duration.ofMinutes(1)), new NoopBus(), ResilientCache.guard((cache, prefix) -> 0),
+                CacheLoadOptions.localOnly(), new CacheMetricsRegistry());
+        circuitBreaker.onRecovery(node::invalidateLocalCaches);
+        Cache cache = node.getCache("products");
+        cache.put("catalog-1", "milk");
+        tripCircuit();
+
+        assertThat(cache.get("catalog-1").get()).isEqualTo("milk");
+        assertThat(cache.get("catalog-2", () -> "bread")).isEqualTo("bread");
+        assertThat(cache.get("catalog-2").get()).isEqualTo("bread");
+
+        // Evictions from other nodes could not reach this one, so its local copies go once Redis is back
+        redis.down = false;
+        Thread.sleep(150);
+        circuitBreaker.probe(redis::ping);
+        assertThat(node.getStats().get("products").getLocalSize()).isZero();
+        assertThat(cache.get("catalog-2")).isNull();
+    }
+
+    private void tripCircuit() {
+        redis.down = true;
+        Cache cache = cacheManager.getCache("products");
+        for (int i = 0; i < 3; i++) {
+            cache.get("trip-" + i);
+        }
+        assertThat(circuitBreaker.getState()).isEqualTo(RedisCircuitBreaker.State.OPEN);
+    }
+
+    // Caches backed by maps that answer after the injected latency, and fail like the Redis driver would
+    private static class FakeRedis implements CacheManager {
+
+        private final ConcurrentMap<String, Cache> caches = new ConcurrentHashMap<>();
+        private volatile boolean down;
+        private volatile long latencyMs;
+
+        @Override
+        public Cache getCache(String name) {
+            return caches.computeIfAbsent(name, cacheName -> new ConcurrentMapCache(cacheName) {
+                @Override
+                protected Object lookup(Object key) {
+                    command();
+                    return super.lookup(key);
+                }
+
+                @Override
+                public void put(Object key, Object value) {
+                    command();
+                    super.put(key, value);
+                }
+
+                @Override
+                public void evict(Object key) {
+                    command();
+                    super.evict(key);
+                }
+            });
+        }
+
+        @Override
+        public Collection<String> getCacheNames() {
+            return caches.keySet();
+        }
+
+        String ping() {
+            command();
+            return "PONG";
+        }
+
+        private void command() {
+            long delay = down ? TIMEOUT_MS : latencyMs;
+            try {
+                Thread.sleep(Math.min(delay, TIMEOUT_MS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (down) {
+                throw new RedisConnectionFailureException("Unable to connect to Redis");
+            }
+            if (delay >= TIMEOUT_MS) {
+                throw new QueryTimeoutException("Redis command timed out");
+            }
+        }
+    }
+
+    private static class NoopBus implements CacheInvalidationBus {
+
+        @Override
+        public void publish(CacheInvalidationMessage message) {
+        }
+
+        @Override
+        public void subscribe(Consumer<CacheInvalidationMessage> listener) {
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.supermartbackend.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Two nodes sharing an in-memory L2 and an in-memory invalidation bus in place of Redis.
+ */
+class TwoLevelCacheManagerTest {
+
+    private ConcurrentMapCacheManager sharedCacheManager;
+    private TwoLevelCacheManager nodeA;
+    private TwoLevelCacheManager nodeB;
+
+    @BeforeEach
+    void setUp() {
+        sharedCacheManager = new ConcurrentMapCacheManager("products", "top-popular-products", "user-recent-products");
+        InMemoryBus bus = new InMemoryBus();
+        nodeA = createNode(bus);
+        nodeB = createNode(bus);
+    }
+
+    @Test
+    void readsAreServedFromTheLocalCacheAfterTheFirstRemoteHit() {
+        nodeA.getCache("products").put("catalog-1", "milk");
+
+        Cache cacheB = nodeB.getCache("products");
+        assertThat(cacheB.get("catalog-1").get()).isEqualTo("milk");
+        assertThat(cacheB.get("catalog-1").get()).isEqualTo("milk");
+        assertThat(cacheB.get("catalog-2")).isNull();
+
+        NearCacheStats stats = nodeB.getStats().get("products");
+        assertThat(stats.getLocalHits()).isEqualTo(1);
+        assertThat(stats.getRemoteHits()).isEqualTo(1);
+        assertThat(stats.getMisses()).isEqualTo(1);
+        assertThat(stats.getLocalHitRatio()).isEqualTo(1.0 / 3);
+        assertThat(stats.getRemoteHitRatio()).isEqualTo(0.5);
+    }
+
+    @Test
+    void writesOnOneNodeDropTheOtherNodesLocalCopy() {
+        Cache cacheA = nodeA.getCache("products");
+        Cache cacheB = nodeB.getCache("products");
+        cacheA.put("catalog-1", "milk");
+        cacheB.get("catalog-1");
+
+        cacheA.put("catalog-1", "oat milk");
+        assertThat(cacheB.get("catalog-1").get()).isEqualTo("oat milk");
+
+        cacheA.evict("catalog-1");
+        assertThat(cacheB.get("catalog-1")).isNull();
+    }
+
+    @Test
+    void prefixEvictionsReachEveryNode() {
+        Cache cacheA = nodeA.getCache("user-recent-products");
+        Cache cacheB = nodeB.getCache("user-recent-products");
+        cacheA.put("recent-alice-5", "a5");
+        cacheA.put("recent-alice-10", "a10");
+        cacheA.put("recent-bob-5", "b5");
+        cacheB.get("recent-alice-5");
+        cacheB.get("recent-bob-5");
+
+        ((TwoLevelCache) cacheA).evictByPrefix("recent-alice-");
+
+        assertThat(cacheB.get("recent-alice-5")).isNull();
+        assertThat(cacheB.get("recent-alice-10")).isNull();
+        assertThat(cacheB.get("recent-bob-5").get()).isEqualTo("b5");
+    }
+
+    @Test
+    void concurrentMissesOnTwoNodesLoadTheValueOnce() throws Exception {
+        CacheLoadOptions loadOptions = new CacheLoadOptions(new InMemoryLoadLock(), Duration.ofSeconds(5),
+                Duration.ofMillis(5), Collections.emptyMap(), 0, Runnable::run);
+        InMemoryBus bus = new InMemoryBus();
+        List<Cache> nodes = Arrays.asList(
+                createNode(bus, loadOptions).getCache("top-popular-products"),
+                createNode(bus, loadOptions).getCache("top-popular-products"));
+
+        AtomicInteger queries = new AtomicInteger();
+        Callable<String> query = () -> {
+            queries.incrementAndGet();
+            Thread.sleep(200);
+            return "ranking";
+        };
+
+        int requests = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(100);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+            Cache node = nodes.get(i % 2);
+            results.add(executor.submit(() -> {
+                start.await();
+                return node.get("top-popular-10", query);
+            }));
+        }
+        start.countDown();
+        for (Future<String> result : results) {
+            assertThat(result.get(10, TimeUnit.SECONDS)).isEqualTo("ranking");
+        }
+        executor.shutdown();
+
+        assertThat(queries.get()).isEqualTo(1);
+    }
+
+    @Test
+    void entriesCloseToExpiryAreRefreshedEarly() throws Exception {
+        CacheLoadOptions loadOptions = new CacheLoadOptions(new InMemoryLoadLock(), Duration.ofSeconds(5),
+                Duration.ofMillis(5), Collections.singletonMap("products", Duration.ofMillis(1)), 1.0, Runnable::run);
+        TwoLevelCacheManager node = createNode(new InMemoryBus(), loadOptions);
+        Cache cache = node.getCache("products");
+
+        AtomicInteger queries = new AtomicInteger();
+        Callable<Integer> query = () -> {
+            Thread.sleep(5);
+            return queries.incrementAndGet();
+        };
+
+        assertThat(cache.get("catalog-all", query)).isEqualTo(1);
+        Thread.sleep(10);
+        // Past its expiry the entry is still served while it is reloaded
+        assertThat(cache.get("catalog-all", query)).isEqualTo(1);
+        assertThat(cache.get("catalog-all", query)).isEqualTo(2);
+        assertThat(node.getStats().get("products").getEarlyRefreshes()).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    void cacheOperationsAreCountedPerCacheName() {
+        Cache cache = nodeA.getCache("products");
+        cache.get("catalog-1", () -> "milk");
+        cache.get("catalog-1", () -> "milk");
+        cache.put("catalog-2", "bread");
+        cache.evict("catalog-2");
+
+        CacheStats stats = nodeA.getMetricsRegistry().snapshot().get("products");
+        assertThat(stats.getHits()).isEqualTo(1);
+        assertThat(stats.getMisses()).isEqualTo(1);
+        assertThat(stats.getPuts()).isEqualTo(2);
+        assertThat(stats.getEvictions()).isEqualTo(1);
+        assertThat(stats.getLoads()).isEqualTo(1);
+        assertThat(stats.getLoadP99Micros()).isEqualTo(stats.getLoadMaxMicros());
+    }
+
+    private TwoLevelCacheManager createNode(InMemoryBus bus) {
+        return createNode(bus, CacheLoadOptions.localOnly());
+    }
+
+    private TwoLevelCacheManager createNode(InMemoryBus bus, CacheLoadOptions loadOptions) {
+        return new TwoLevelCacheManager(sharedCacheManager, Collections.emptyMap(),
+                new LocalCacheSpec(100, Duration.ofMinutes(1)), bus, TwoLevelCacheManagerTest::evictByPrefix, loadOptions,
+                new CacheMetricsRegistry());
+    }
+
+    private static long evictByPrefix(Cache cache, String keyPrefix) {
+        @SuppressWarnings("unchecked")
+        ConcurrentMap<Object, Object> entries = (ConcurrentMap<Object, Object>) cache.getNativeCache();
+        long before = entries.size();
+        entries.keySet().removeIf(key -> key.toString().startsWith(keyPrefix));
+        return before - entries.size();
+    }
+
+    private static class InMemoryLoadLock implements LoadLock {
+
+        private final ConcurrentMap<String, String> locks = new ConcurrentHashMap<>();
+
+        @Override
+        public String tryAcquire(String lockKey, Duration ttl) {
+            String token = UUID.randomUUID().toString();
+            return locks.putIfAbsent(lockKey, token) == null ? token : null;
+        }
+
+        @Override
+        public void release(String lockKey, String token) {
+            locks.remove(lockKey, token);
+        }
+    }
+
+    // Delivers synchronously to every subscriber, like a Redis channel with no delay
+    private static class InMemoryBus implements CacheInvalidationBus {
+
+        private final List<Consumer<CacheInvalidationMessage>> listeners = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void publish(CacheInvalidationMessage message) {
+            CacheInvalidationMessage decoded = CacheInvalidationMessage.decode(message.encode());
+            listeners.forEach(listener -> listener.accept(decoded));
+        }
+
+        @Override
+        public void subscribe(Consumer<CacheInvalidationMessage> listener) {
+            listeners.add(listener);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.supermartbackend.controller;
+
+import com.example.supermartbackend.dto.ProductResponse;
+import com.example.supermartbackend.service.CatalogListing;
+import com.example.supermartbackend.service.CatalogPayloadCache;
+import com.example.supermartbackend.service.ProductService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.servlet.context.AnnotationConfigServletWebServerApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.servlet.DispatcherServlet;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+
+import javax.servlet.Filter;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Load test for {@code GET /products/all} over HTTP against an embedded Tomcat, with the listing
+ * serialized on every request, written from the payload cache plain and gzipped, and revalidated.
+ * Run with {@code mvn test -Pbenchmark -Dtest=CatalogPayloadBenchmarkTest}.
+ */
+@Tag("benchmark")
+class CatalogPayloadBenchmarkTest {
+
+    private static final int THREADS = 8;
+    private static final long DURATION_MS = 5000;
+    private static final int PRODUCTS = 5000;
+
+    private AnnotationConfigServletWebServerApplicationContext server;
+    private ProductController productController;
+    private String url;
+
+    @BeforeEach
+    void setUp() {
+        // Started without SpringApplication, so nothing sets up logging and everything would log at DEBUG
+        LoggingSystem.get(getClass().getClassLoader()).setLogLevel(LoggingSystem.ROOT_LOGGER_NAME, LogLevel.INFO);
+        server = new AnnotationConfigServletWebServerApplicationContext(BenchmarkServer.class);
+        productController = server.getBean(ProductController.class);
+        url = "http://localhost:" + server.getWebServer().getPort() + "/products/all";
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void serializedPerRequest() throws Exception {
+        ReflectionTestUtils.setField(productController, "payloadCache", false);
+        run("jackson", null, 200);
+    }
+
+    @Test
+    void payloadCacheIdentity() throws Exception {
+        ReflectionTestUtils.setField(productController, "payloadCache", true);
+        run("bytes", null, 200);
+    }
+
+    @Test
+    void payloadCacheGzip() throws Exception {
+        ReflectionTestUtils.setField(productController, "payloadCache", true);
+        run("bytes-gzip", "gzip", 200);
+    }
+
+    @Test
+    void revalidated() throws Exception {
+        ReflectionTestUtils.setField(productController, "payloadCache", true);
+        run("not-modified", "gzip", 304);
+    }
+
+    private void run(String mode, String acceptEncoding, int expectedStatus) throws Exception {
+        String etag = request(acceptEncoding, null)[1];
+        String ifNoneMatch = expectedStatus == 304 ? etag : null;
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        long deadline = System.currentTimeMillis() + DURATION_MS;
+
+        List<Future<long[]>> workers = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            workers.add(pool.submit(() -> {
+                long requests = 0;
+                long bytes = 0;
+                while (System.currentTimeMillis() < deadline) {
+                    String[] response = request(acceptEncoding, ifNoneMatch);
+                    assertThat(Integer.parseInt(response[0])).isEqualTo(expectedStatus);
+                    bytes += Long.parseLong(response[2]);
+                    requests++;
+                }
+                return new long[]{requests, bytes};
+            }));
+        }
+
+        long requests = 0;
+        long bytes = 0;
+        for (Future<long[]> worker : workers) {
+            long[] counts = worker.get();
+            requests += counts[0];
+            bytes += counts[1];
+        }
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.SECONDS);
+
+        System.out.printf("[benchmark] catalog mode=%s threads=%d products=%d requests=%d throughput=%.0f req/s body=%d bytes%n",
+                mode, THREADS, PRODUCTS, requests, requests * 1000.0 / DURATION_MS, requests > 0 ? bytes / requests : 0);
+    }
+
+    // Status, ETag and body size as sent, keeping the connection alive for the next request
+    private String[] request(String acceptEncoding, String ifNoneMatch) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        if (acceptEncoding != null) {
+            connection.setRequestProperty(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        }
+        if (ifNoneMatch != null) {
+            connection.setRequestProperty(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        int status = connection.getResponseCode();
+        int length = 0;
+        if (status == 200) {
+            try (InputStream body = connection.getInputStream()) {
+                length = StreamUtils.copyToByteArray(body).length;
+            }
+        }
+        return new String[]{Integer.toString(status), connection.getHeaderField(HttpHeaders.ETAG), Integer.toString(length)};
+    }
+
+    @Configuration
+    @EnableWebMvc
+    static class BenchmarkServer {
+
+        @Bean
+        TomcatServletWebServerFactory servletWebServerFactory() {
+            return new TomcatServletWebServerFactory(0);
+        }
+
+        @Bean
+        DispatcherServlet dispatcherServlet() {
+            return new DispatcherServlet();
+        }
+
+        // Stands in for the JWT filter
+        @Bean
+        Filter authentication() {
+            return (request, response, chain) -> {
+                SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                        "bench", null, Collections.singletonList(new SimpleGrantedAuthority("ROLE_USER"))));
+                try {
+                    chain.doFilter(request, response);
+                } finally {
+                    SecurityContextHolder.clearContext();
+                }
+            };
+        }
+
+        @Bean
+        ProductController productController() {
+            List<ProductResponse> listing = new ArrayList<>();
+            LocalDateTime now = LocalDateTime.now();
+            for (long id = 1; id <= PRODUCTS; id++) {
+                listing.add(new ProductResponse(id, "Product " + id, "Description of product " + id,
+                        new BigDecimal("2.49"), (int) (id % 50) + 1, now, now));
+            }
+            ProductService productService = mock(ProductService.class);
+            when(productService.getCatalogListing()).thenReturn(new CatalogListing(42, "42-1f", () -> listing, Collections::emptyList));
+            return new ProductController(productService, new CatalogPayloadCache(Jackson2ObjectMapperBuilder.json().build()));
+        }
+    }
+}
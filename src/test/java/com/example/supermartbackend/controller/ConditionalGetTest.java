@@ -0,0 +1,181 @@
+package com.example.supermartbackend.controller;
+
+import com.example.supermartbackend.dto.CursorPage;
+import com.example.supermartbackend.dto.OrderResponse;
+import com.example.supermartbackend.dto.ProductResponse;
+import com.example.supermartbackend.service.CatalogListing;
+import com.example.supermartbackend.service.CatalogPayloadCache;
+import com.example.supermartbackend.service.OrderIdempotencyService;
+import com.example.supermartbackend.service.OrderService;
+import com.example.supermartbackend.service.ProductService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ConditionalGetTest {
+
+    private ProductService productService;
+    private OrderService orderService;
+    private ProductController productController;
+    private OrderController orderController;
+
+    @BeforeEach
+    void setUp() {
+        productService = mock(ProductService.class);
+        orderService = mock(OrderService.class);
+        productController = new ProductController(productService, new CatalogPayloadCache(Jackson2ObjectMapperBuilder.json().build()));
+        orderController = new OrderController(orderService, mock(OrderIdempotencyService.class));
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                "alice", null, Collections.singletonList(new SimpleGrantedAuthority("ROLE_USER"))));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void unchangedListingIsNotBuiltAgain() {
+        CatalogListing catalog = spy(listing("42-1f", product(10)));
+        when(productService.getCatalogListing()).thenReturn(catalog);
+
+        ServletWebRequest first = request();
+        ResponseEntity<?> full = productController.getAllProducts(null, null, first);
+        String etag = first.getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(full.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(etag).isEqualTo("\"storefront-42-1f\"");
+
+        ServletWebRequest revalidation = request();
+        ((MockHttpServletRequest) revalidation.getRequest()).addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        ResponseEntity<?> notModified = productController.getAllProducts(null, null, revalidation);
+
+        assertThat(notModified.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(notModified.getBody()).isNull();
+        verify(catalog).getInStockProducts();
+    }
+
+    @Test
+    void listingIsWrittenFromCachedBytesInTheAcceptedEncoding() throws Exception {
+        ReflectionTestUtils.setField(productController, "payloadCache", true);
+        CatalogListing catalog = spy(listing("42-1f", product(10)));
+        when(productService.getCatalogListing()).thenReturn(catalog);
+
+        ServletWebRequest plain = request();
+        ResponseEntity<?> identity = productController.getAllProducts(null, null, plain);
+        ServletWebRequest compressed = request();
+        ((MockHttpServletRequest) compressed.getRequest()).addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate, br");
+        ResponseEntity<?> gzip = productController.getAllProducts(null, null, compressed);
+
+        assertThat(identity.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(gzip.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        assertThat(compressed.getResponse().getHeader(HttpHeaders.ETAG)).isEqualTo("\"storefront-42-1f-gzip\"");
+        byte[] unzipped = StreamUtils.copyToByteArray(new GZIPInputStream(new ByteArrayInputStream((byte[]) gzip.getBody())));
+        assertThat(unzipped).isEqualTo((byte[]) identity.getBody());
+        // Built once for both encodings
+        verify(catalog).getInStockProducts();
+    }
+
+    @Test
+    void listingIsBuiltFromTheStockLevelsItsTagWasTakenFrom() {
+        ReflectionTestUtils.setField(productController, "payloadCache", true);
+        when(productService.getCatalogListing()).thenReturn(listing("42-1f", product(10)));
+        // A checkout between taking the tag and building the body
+        when(productService.getAllInStockProducts()).thenReturn(Collections.singletonList(product(9)));
+
+        ServletWebRequest first = request();
+        ResponseEntity<?> response = productController.getAllProducts(null, null, first);
+
+        assertThat(first.getResponse().getHeader(HttpHeaders.ETAG)).isEqualTo("\"storefront-42-1f\"");
+        assertThat(new String((byte[]) response.getBody(), StandardCharsets.UTF_8)).contains("\"quantity\":10");
+    }
+
+    @Test
+    void stockChangesAreNotHiddenBehindAnOldTag() {
+        when(productService.getProductById(1L)).thenReturn(product(10));
+        ServletWebRequest first = request();
+        productController.getProductById(1L, first);
+        String etag = first.getResponse().getHeader(HttpHeaders.ETAG);
+
+        // Same row, one sold
+        when(productService.getProductById(1L)).thenReturn(product(9));
+        ServletWebRequest revalidation = request();
+        ((MockHttpServletRequest) revalidation.getRequest()).addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        ResponseEntity<?> response = productController.getProductById(1L, revalidation);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(((ProductResponse) response.getBody()).getQuantity()).isEqualTo(9);
+        assertThat(revalidation.getResponse().getHeader(HttpHeaders.LAST_MODIFIED)).isNull();
+    }
+
+    @Test
+    void ordersRevalidateByTagOrDate() {
+        LocalDateTime placed = LocalDateTime.of(2024, 5, 1, 9, 30);
+        when(orderService.getAllOrders(null, 50)).thenReturn(page(order(1L, "COMPLETED", placed), order(2L, "CONFIRMED", placed.plusHours(1))));
+
+        ServletWebRequest first = request();
+        orderController.getAllOrders(null, 50, first);
+        String etag = first.getResponse().getHeader(HttpHeaders.ETAG);
+        String lastModified = first.getResponse().getHeader(HttpHeaders.LAST_MODIFIED);
+        assertThat(lastModified).isNotNull();
+
+        ServletWebRequest byDate = request();
+        ((MockHttpServletRequest) byDate.getRequest()).addHeader(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+        assertThat(orderController.getAllOrders(null, 50, byDate).getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+
+        // Cancelling the second order changes its status, so the old tag no longer matches
+        when(orderService.getAllOrders(null, 50)).thenReturn(page(order(1L, "COMPLETED", placed), order(2L, "CANCELLED", placed.plusHours(2))));
+        ServletWebRequest byTag = request();
+        ((MockHttpServletRequest) byTag.getRequest()).addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        ResponseEntity<?> response = orderController.getAllOrders(null, 50, byTag);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(byTag.getResponse().getHeader(HttpHeaders.ETAG)).isNotEqualTo(etag);
+    }
+
+    private static CursorPage<OrderResponse> page(OrderResponse... orders) {
+        return new CursorPage<>(Arrays.asList(orders), null);
+    }
+
+    private static CatalogListing listing(String tag, ProductResponse... products) {
+        return new CatalogListing(42, tag, () -> Arrays.asList(products), Collections::emptyList);
+    }
+
+    private static ServletWebRequest request() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        return new ServletWebRequest(request, new MockHttpServletResponse());
+    }
+
+    private static ProductResponse product(int quantity) {
+        LocalDateTime updatedAt = LocalDateTime.of(2024, 5, 1, 9, 0);
+        return new ProductResponse(1L, "milk", "whole milk", new BigDecimal("1.20"), quantity, updatedAt, updatedAt);
+    }
+
+    private static OrderResponse order(Long id, String status, LocalDateTime updatedAt) {
+        return new OrderResponse(id, status, new BigDecimal("2.40"), Collections.emptyList(), updatedAt, updatedAt, null);
+    }
+}
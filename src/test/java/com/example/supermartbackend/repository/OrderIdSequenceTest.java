@@ -0,0 +1,120 @@
+package com.example.supermartbackend.repository;
+
+import com.example.supermartbackend.entity.Order;
+import com.example.supermartbackend.entity.OrderItem;
+import com.example.supermartbackend.entity.Product;
+import com.example.supermartbackend.entity.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Sequence ids after the switch from IDENTITY: rows inserted before it must not be handed out again.
+ * Sequence changes are not transactional, so this runs outside the test transaction.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@Import(OrderRepository.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OrderIdSequenceTest {
+
+    // The sequences' allocation size
+    private static final long BLOCK = 50;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void sequencesAreMovedPastRowsWithIdentityIds() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        // An order and item inserted by IDENTITY far ahead of the sequences
+        long orderId = nextValue(tx, "order_seq") + 10_000;
+        long itemId = nextValue(tx, "order_item_seq") + 10_000;
+        List<Order> orders = new ArrayList<>();
+        tx.executeWithoutResult(status -> {
+            Order withItem = order(true);
+            // Moved on an order without items, nothing references its id
+            Order withoutItems = order(false);
+            entityManager.flush();
+            orders.add(withItem);
+            orders.add(withoutItems);
+            entityManager.createNativeQuery("UPDATE order_items SET id = :id WHERE order_id = :orderId")
+                    .setParameter("id", itemId).setParameter("orderId", withItem.getId()).executeUpdate();
+            entityManager.createNativeQuery("UPDATE orders SET id = :id WHERE id = :orderId")
+                    .setParameter("id", orderId).setParameter("orderId", withoutItems.getId()).executeUpdate();
+        });
+
+        tx.executeWithoutResult(status -> orderRepository.alignIdSequences());
+
+        // Past the row plus a whole block, so no block handed out afterwards can reach it
+        long nextOrderId = nextValue(tx, "order_seq");
+        long nextItemId = nextValue(tx, "order_item_seq");
+        assertThat(nextOrderId).isGreaterThan(orderId + BLOCK);
+        assertThat(nextItemId).isGreaterThan(itemId + BLOCK);
+
+        // Aligning again never moves a sequence back
+        tx.executeWithoutResult(status -> orderRepository.alignIdSequences());
+        assertThat(nextValue(tx, "order_seq")).isGreaterThan(nextOrderId);
+        assertThat(nextValue(tx, "order_item_seq")).isGreaterThan(nextItemId);
+
+        // Committed rows would show up in other tests' order listings
+        tx.executeWithoutResult(status -> {
+            entityManager.createNativeQuery("DELETE FROM order_items WHERE id = :id").setParameter("id", itemId).executeUpdate();
+            entityManager.createNativeQuery("DELETE FROM orders WHERE id IN (:ids)")
+                    .setParameter("ids", Arrays.asList(orders.get(0).getId(), orderId)).executeUpdate();
+            for (Order order : orders) {
+                entityManager.createNativeQuery("DELETE FROM users WHERE id = :id").setParameter("id", order.getUser().getId()).executeUpdate();
+            }
+        });
+    }
+
+    private Order order(boolean withItem) {
+        User user = new User();
+        user.setUsername("sequence-" + UUID.randomUUID());
+        user.setEmail(user.getUsername() + "@supermart.com");
+        user.setPassword("secret");
+        entityManager.persist(user);
+        Product product = new Product();
+        product.setName("Milk");
+        product.setWholesalePrice(new BigDecimal("1.00"));
+        product.setRetailPrice(new BigDecimal("2.00"));
+        product.setQuantity(1);
+        entityManager.persist(product);
+
+        Order order = new Order();
+        order.setUser(user);
+        order.setStatus(Order.OrderStatus.COMPLETED);
+        if (withItem) {
+            order.addItem(new OrderItem(product, 1));
+        }
+        entityManager.persist(order);
+        return order;
+    }
+
+    private long nextValue(TransactionTemplate tx, String sequenceName) {
+        Number next = tx.execute(status -> (Number) entityManager
+                .createNativeQuery("SELECT NEXT VALUE FOR " + sequenceName).getSingleResult());
+        return next.longValue();
+    }
+}
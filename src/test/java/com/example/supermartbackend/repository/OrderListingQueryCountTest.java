@@ -0,0 +1,110 @@
+package com.example.supermartbackend.repository;
+
+import com.example.supermartbackend.dto.CursorPage;
+import com.example.supermartbackend.dto.OrderSnapshot;
+import com.example.supermartbackend.entity.Order;
+import com.example.supermartbackend.entity.OrderItem;
+import com.example.supermartbackend.entity.Product;
+import com.example.supermartbackend.entity.User;
+import com.example.supermartbackend.service.OrderSnapshots;
+import com.example.supermartbackend.service.PageCursor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+@Import(OrderRepository.class)
+class OrderListingQueryCountTest {
+
+    private static final int ORDERS = 1000;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private OrderSnapshots orderSnapshots;
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            User user = new User();
+            user.setUsername("shopper" + i);
+            user.setEmail("shopper" + i + "@supermart.com");
+            user.setPassword("secret");
+            users.add(entityManager.persist(user));
+        }
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Product product = new Product();
+            product.setName("Product " + i);
+            product.setWholesalePrice(new BigDecimal("1.00"));
+            product.setRetailPrice(new BigDecimal("2.50"));
+            product.setQuantity(100);
+            products.add(entityManager.persist(product));
+        }
+        // Three items an order
+        for (int i = 0; i < ORDERS; i++) {
+            Order order = new Order();
+            order.setUser(users.get(i % users.size()));
+            for (int j = 0; j < 3; j++) {
+                order.addItem(new OrderItem(products.get((i + j) % products.size()), j + 1));
+            }
+            entityManager.persist(order);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        orderSnapshots = new OrderSnapshots(orderRepository, new ConcurrentMapCacheManager("orders", "user-orders"));
+        statistics = entityManager.getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void listingAThousandOrdersRunsThreeStatementsAPage() {
+        List<OrderSnapshot> listed = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            CursorPage<OrderSnapshot> page = orderSnapshots.getPage(cursor, PageCursor.MAX_LIMIT);
+            listed.addAll(page.getItems());
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertThat(listed).hasSize(ORDERS).allMatch(snapshot -> snapshot.getOrder().getItems().size() == 3);
+        // The id index, the orders with their owners and the items; no owner, role or product loads
+        assertThat(pages).isEqualTo(ORDERS / PageCursor.MAX_LIMIT);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3L * pages);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void projectionMatchesTheEntityMapping() {
+        Long id = orderRepository.findIds(null, null, 1).get(0);
+
+        OrderSnapshot projected = orderRepository.findSnapshotsByIds(Collections.singleton(id)).get(0);
+        Order order = orderRepository.findById(id).orElseThrow(IllegalStateException::new);
+
+        assertThat(projected.getUsername()).isEqualTo(order.getUser().getUsername());
+        assertThat(projected.getOrder()).isEqualTo(OrderSnapshots.toResponse(order));
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.supermartbackend.repository;
+
+import com.example.supermartbackend.entity.Order;
+import com.example.supermartbackend.entity.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import(OrderRepository.class)
+class OrderRepositoryPagingTest {
+
+    private static final LocalDateTime NOON = LocalDateTime.of(2024, 5, 1, 12, 0);
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private final List<Long> newestFirst = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        User alice = user("alice");
+        User bob = user("bob");
+        // Minutes after noon; two orders share a timestamp, so the id has to break the tie
+        int[] minutes = {1, 3, 3, 5, 7};
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < minutes.length; i++) {
+            ids.add(order(i % 2 == 0 ? alice : bob, NOON.plusMinutes(minutes[i])));
+        }
+        entityManager.clear();
+        newestFirst.add(ids.get(4));
+        newestFirst.add(ids.get(3));
+        newestFirst.add(Math.max(ids.get(1), ids.get(2)));
+        newestFirst.add(Math.min(ids.get(1), ids.get(2)));
+        newestFirst.add(ids.get(0));
+    }
+
+    @Test
+    void pagesSeekPastTheLastOrderOfThePreviousPage() {
+        List<Long> seen = new ArrayList<>();
+        List<Long> page = orderRepository.findIds(null, null, 2);
+        while (!page.isEmpty()) {
+            seen.addAll(page);
+            Order last = entityManager.find(Order.class, page.get(page.size() - 1));
+            page = orderRepository.findIds(last.getCreatedAt(), last.getId(), 2);
+        }
+
+        assertThat(seen).containsExactlyElementsOf(newestFirst);
+    }
+
+    @Test
+    void userPagesOnlySeeTheirOwnOrders() {
+        Order newest = entityManager.find(Order.class, newestFirst.get(0));
+
+        List<Long> after = orderRepository.findIdsByUsername("alice", newest.getCreatedAt(), newest.getId(), 10);
+
+        assertThat(after).hasSize(2).allMatch(id -> entityManager.find(Order.class, id).getUser().getUsername().equals("alice"));
+    }
+
+    private User user(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@supermart.com");
+        user.setPassword("secret");
+        return entityManager.persist(user);
+    }
+
+    private Long order(User user, LocalDateTime createdAt) {
+        Order order = new Order();
+        order.setUser(user);
+        Long id = entityManager.persistAndFlush(order).getId();
+        // The creation timestamp is set on insert, so move it afterwards
+        entityManager.getEntityManager().createQuery("UPDATE Order o SET o.createdAt = :createdAt WHERE o.id = :id")
+                .setParameter("createdAt", createdAt)
+                .setParameter("id", id)
+                .executeUpdate();
+        return id;
+    }
+}
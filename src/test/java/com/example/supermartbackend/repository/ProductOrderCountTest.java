@@ -0,0 +1,140 @@
+package com.example.supermartbackend.repository;
+
+import com.example.supermartbackend.entity.Order;
+import com.example.supermartbackend.entity.OrderItem;
+import com.example.supermartbackend.entity.Product;
+import com.example.supermartbackend.entity.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import(ProductRepository.class)
+class ProductOrderCountTest {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private User user;
+    private Product milk;
+    private Product bread;
+    private Product eggs;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setUsername("alice");
+        user.setEmail("alice@supermart.com");
+        user.setPassword("secret");
+        entityManager.persist(user);
+        milk = entityManager.persist(product("Milk"));
+        bread = entityManager.persist(product("Bread"));
+        eggs = entityManager.persist(product("Eggs"));
+    }
+
+    @Test
+    void countsAreWrittenWithTheStockAndSurviveSavingTheProduct() {
+        // Three orders reserve milk and one is canceled again, the ledger flushes one order of bread
+        productRepository.decrementQuantity(milk.getId(), 5, 3);
+        productRepository.incrementQuantity(milk.getId(), 1, 1);
+        productRepository.applyQuantityDeltas(Collections.singletonMap(bread.getId(), -1), Collections.singletonMap(bread.getId(), 1));
+        assertThat(productRepository.findQuantitiesByIds(Arrays.asList(milk.getId(), bread.getId())))
+                .containsEntry(milk.getId(), 46).containsEntry(bread.getId(), 49);
+
+        // The loaded entity still says 0, saving it must not write that back
+        milk.setName("Whole milk");
+        entityManager.flush();
+        entityManager.clear();
+
+        // Other tests may have left more popular products behind
+        assertThat(productRepository.findAllByIds(Arrays.asList(milk.getId(), bread.getId(), eggs.getId())))
+                .extracting(Product::getName, Product::getOrderCount)
+                .containsExactly(tuple("Whole milk", 2L), tuple("Bread", 1L), tuple("Eggs", 0L));
+    }
+
+    @Test
+    void stockWritesLeaveUpdatedAtAlone() {
+        Timestamp updatedAt = Timestamp.valueOf(LocalDateTime.of(2024, 1, 1, 12, 0));
+        entityManager.getEntityManager().createNativeQuery("UPDATE products SET updated_at = :updatedAt WHERE id = :id")
+                .setParameter("updatedAt", updatedAt)
+                .setParameter("id", milk.getId())
+                .executeUpdate();
+
+        productRepository.decrementQuantity(milk.getId(), 5, 1);
+        productRepository.incrementQuantity(milk.getId(), 2, 1);
+        productRepository.applyQuantityDeltas(Collections.singletonMap(milk.getId(), -1), Collections.singletonMap(milk.getId(), 1));
+
+        // updated_at dates the static fields the catalog caches hold, a checkout must not move it
+        Object stored = entityManager.getEntityManager().createNativeQuery("SELECT updated_at FROM products WHERE id = :id")
+                .setParameter("id", milk.getId())
+                .getSingleResult();
+        assertThat(stored).isEqualTo(updatedAt);
+    }
+
+    @Test
+    void ordersPlacedWithoutAReservationAreAddedInPlace() {
+        Map<Long, Integer> deltas = new HashMap<>();
+        deltas.put(eggs.getId(), 2);
+        deltas.put(bread.getId(), 1);
+        productRepository.addOrderCounts(deltas);
+        entityManager.clear();
+
+        assertThat(entityManager.find(Product.class, eggs.getId()).getOrderCount()).isEqualTo(2);
+        assertThat(entityManager.find(Product.class, bread.getId()).getOrderCount()).isEqualTo(1);
+    }
+
+    @Test
+    void rebuildCountsOnlyPlacedOrdersOnce() {
+        order(Order.OrderStatus.PROCESSING, milk, bread);
+        order(Order.OrderStatus.COMPLETED, milk, milk);
+        order(Order.OrderStatus.CANCELED, eggs);
+        order(Order.OrderStatus.PENDING, eggs, bread);
+        order(Order.OrderStatus.REJECTED, eggs);
+        entityManager.flush();
+
+        // Other tests may have left products behind, all of them are recounted
+        assertThat(productRepository.rebuildOrderCounts()).isGreaterThanOrEqualTo(3);
+        entityManager.clear();
+
+        assertThat(productRepository.findTopXByPopularity(2)).extracting(Product::getId)
+                .containsExactly(milk.getId(), bread.getId());
+        assertThat(entityManager.find(Product.class, milk.getId()).getOrderCount()).isEqualTo(2);
+        assertThat(entityManager.find(Product.class, eggs.getId()).getOrderCount()).isZero();
+    }
+
+    private void order(Order.OrderStatus status, Product... products) {
+        Order order = new Order();
+        order.setUser(user);
+        order.setStatus(status);
+        Arrays.stream(products).forEach(product -> order.addItem(new OrderItem(product, 1)));
+        entityManager.persist(order);
+    }
+
+    private static Product product(String name) {
+        Product product = new Product();
+        product.setName(name);
+        product.setWholesalePrice(new BigDecimal("1.00"));
+        product.setRetailPrice(new BigDecimal("2.00"));
+        product.setQuantity(50);
+        return product;
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.supermartbackend.repository;
+
+import com.example.supermartbackend.entity.Product;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import(ProductRepository.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProductRepositoryConcurrencyTest {
+
+    private static final int STOCK = 100;
+    private static final int ORDERS = 300;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void parallelOrdersNeverOversell() throws Exception {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Long productId = tx.execute(status -> productRepository.save(newProduct(STOCK)).getId());
+
+        ExecutorService pool = Executors.newFixedThreadPool(32);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return tx.execute(status -> productRepository.decrementQuantity(productId, 1, 1));
+            }));
+        }
+        start.countDown();
+
+        int reserved = 0;
+        for (Future<Integer> result : results) {
+            reserved += result.get();
+        }
+        pool.shutdown();
+        assertThat(pool.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        Product product = tx.execute(status -> productRepository.findById(productId).orElseThrow(IllegalStateException::new));
+        assertThat(reserved).isEqualTo(STOCK);
+        assertThat(product.getQuantity()).isZero();
+        assertThat(product.getOrderCount()).isEqualTo(STOCK);
+    }
+
+    private Product newProduct(int quantity) {
+        Product product = new Product();
+        product.setName("Hot SKU");
+        product.setWholesalePrice(new BigDecimal("1.00"));
+        product.setRetailPrice(new BigDecimal("2.00"));
+        product.setQuantity(quantity);
+        return product;
+    }
+}
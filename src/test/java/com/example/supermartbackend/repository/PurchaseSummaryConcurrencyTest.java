@@ -0,0 +1,87 @@
+package com.example.supermartbackend.repository;
+
+import com.example.supermartbackend.entity.PurchaseSummary;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import(PurchaseSummaryRepository.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PurchaseSummaryConcurrencyTest {
+
+    private static final int ORDERS = 16;
+    private static final LocalDateTime MONDAY = LocalDateTime.of(2024, 5, 6, 10, 0);
+
+    @Autowired
+    private PurchaseSummaryRepository purchaseSummaryRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void concurrentFirstPurchasesOfOneUserAllCount() throws Exception {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        // Summaries have no foreign keys, ids no other test uses will do
+        long userId = ThreadLocalRandom.current().nextLong(1_000_000, Long.MAX_VALUE);
+        long milk = 1;
+        long bread = 2;
+
+        // A double submit: every order is the user's first of milk, every other one also of bread
+        ExecutorService pool = Executors.newFixedThreadPool(ORDERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> orders = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            Map<Long, Integer> orderCounts = new HashMap<>();
+            orderCounts.put(milk, 1);
+            if (i % 2 == 0) {
+                orderCounts.put(bread, 1);
+            }
+            LocalDateTime placedAt = MONDAY.plusMinutes(i);
+            orders.add(pool.submit(() -> {
+                start.await();
+                tx.executeWithoutResult(status -> purchaseSummaryRepository.recordPurchases(userId, orderCounts, placedAt));
+                return null;
+            }));
+        }
+        start.countDown();
+
+        for (Future<?> order : orders) {
+            order.get();
+        }
+        pool.shutdown();
+        assertThat(pool.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        PurchaseSummary milkSummary = tx.execute(status -> entityManager.find(PurchaseSummary.class, new PurchaseSummary.Key(userId, milk)));
+        PurchaseSummary breadSummary = tx.execute(status -> entityManager.find(PurchaseSummary.class, new PurchaseSummary.Key(userId, bread)));
+        assertThat(milkSummary.getPurchaseCount()).isEqualTo(ORDERS);
+        assertThat(milkSummary.getLastPurchasedAt()).isEqualTo(MONDAY.plusMinutes(ORDERS - 1));
+        assertThat(breadSummary.getPurchaseCount()).isEqualTo(ORDERS / 2);
+        assertThat(breadSummary.getLastPurchasedAt()).isEqualTo(MONDAY.plusMinutes(ORDERS - 2));
+    }
+}
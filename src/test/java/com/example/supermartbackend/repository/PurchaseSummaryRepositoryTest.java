@@ -0,0 +1,139 @@
+package com.example.supermartbackend.repository;
+
+import com.example.supermartbackend.entity.Order;
+import com.example.supermartbackend.entity.OrderItem;
+import com.example.supermartbackend.entity.Product;
+import com.example.supermartbackend.entity.PurchaseSummary;
+import com.example.supermartbackend.entity.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({ProductRepository.class, PurchaseSummaryRepository.class})
+class PurchaseSummaryRepositoryTest {
+
+    private static final LocalDateTime MONDAY = LocalDateTime.of(2024, 5, 6, 10, 0);
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private PurchaseSummaryRepository purchaseSummaryRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private User alice;
+    private User bob;
+    private Product milk;
+    private Product bread;
+    private Product eggs;
+
+    @BeforeEach
+    void setUp() {
+        alice = user("alice");
+        bob = user("bob");
+        milk = entityManager.persist(product("Milk"));
+        bread = entityManager.persist(product("Bread"));
+        eggs = entityManager.persist(product("Eggs"));
+    }
+
+    @Test
+    void ordersAreSummedPerUserAndProduct() {
+        purchaseSummaryRepository.recordPurchases(alice.getId(), counts(milk, bread), MONDAY);
+        purchaseSummaryRepository.recordPurchases(alice.getId(), counts(milk), MONDAY.plusDays(1));
+        purchaseSummaryRepository.recordPurchases(alice.getId(), counts(eggs), MONDAY.plusDays(2));
+        // Accepted late, must not move the last purchase back
+        purchaseSummaryRepository.recordPurchases(alice.getId(), counts(milk), MONDAY);
+        purchaseSummaryRepository.recordPurchases(bob.getId(), counts(bread, bread), MONDAY.plusDays(3));
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(productRepository.findMostRecentlyPurchased(alice.getId(), 10)).extracting(Product::getName)
+                .containsExactly("Eggs", "Milk", "Bread");
+        assertThat(productRepository.findMostFrequentlyPurchased(alice.getId(), 2)).extracting(Product::getName)
+                .containsExactly("Milk", "Eggs");
+        assertThat(summary(alice, milk).getPurchaseCount()).isEqualTo(3);
+        assertThat(summary(alice, milk).getLastPurchasedAt()).isEqualTo(MONDAY.plusDays(1));
+    }
+
+    @Test
+    void cancellationsTakeOrdersBack() {
+        purchaseSummaryRepository.recordPurchases(alice.getId(), counts(milk, bread), MONDAY);
+        purchaseSummaryRepository.recordPurchases(alice.getId(), counts(milk), MONDAY.plusDays(1));
+
+        purchaseSummaryRepository.removePurchases(alice.getId(), Arrays.asList(milk.getId(), bread.getId()));
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(productRepository.findMostRecentlyPurchased(alice.getId(), 10)).extracting(Product::getName)
+                .containsExactly("Milk");
+        assertThat(summary(alice, milk).getPurchaseCount()).isEqualTo(1);
+        assertThat(summary(alice, bread)).isNull();
+    }
+
+    @Test
+    void rebuildSummarizesPlacedOrders() {
+        order(alice, Order.OrderStatus.COMPLETED, milk, bread);
+        order(alice, Order.OrderStatus.PROCESSING, milk);
+        order(alice, Order.OrderStatus.CANCELED, eggs);
+        order(bob, Order.OrderStatus.PENDING, eggs);
+        entityManager.flush();
+
+        assertThat(purchaseSummaryRepository.rebuild()).isEqualTo(2);
+        entityManager.clear();
+
+        assertThat(productRepository.findMostFrequentlyPurchased(alice.getId(), 10)).extracting(Product::getName)
+                .containsExactly("Milk", "Bread");
+        assertThat(productRepository.findMostRecentlyPurchased(bob.getId(), 10)).isEmpty();
+    }
+
+    private PurchaseSummary summary(User user, Product product) {
+        return entityManager.find(PurchaseSummary.class, new PurchaseSummary.Key(user.getId(), product.getId()));
+    }
+
+    private static Map<Long, Integer> counts(Product... products) {
+        Map<Long, Integer> counts = new HashMap<>();
+        Arrays.stream(products).forEach(product -> counts.merge(product.getId(), 1, Integer::sum));
+        return counts;
+    }
+
+    private void order(User user, Order.OrderStatus status, Product... products) {
+        Order order = new Order();
+        order.setUser(user);
+        order.setStatus(status);
+        Arrays.stream(products).forEach(product -> order.addItem(new OrderItem(product, 1)));
+        entityManager.persist(order);
+    }
+
+    private User user(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@supermart.com");
+        user.setPassword("secret");
+        return entityManager.persist(user);
+    }
+
+    private static Product product(String name) {
+        Product product = new Product();
+        product.setName(name);
+        product.setWholesalePrice(new BigDecimal("1.00"));
+        product.setRetailPrice(new BigDecimal("2.00"));
+        product.setQuantity(50);
+        return product;
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.supermartbackend.service;
+
+import com.example.supermartbackend.service.impl.LocalStockLevelStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CacheInvalidationServiceTest {
+
+    private ConcurrentMapCacheManager cacheManager;
+    private CacheKeyIndex cacheKeyIndex;
+    private LocalStockLevelStore stockLevelStore;
+    private CacheInvalidationService cacheInvalidationService;
+    private TransactionTemplate tx;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager = new ConcurrentMapCacheManager("orders", "user-orders", "admin-products",
+                "top-popular-products", "user-recent-products", "user-frequent-products");
+        cacheKeyIndex = mock(CacheKeyIndex.class);
+        when(cacheKeyIndex.keys(anyString(), anyString())).thenReturn(Collections.emptySet());
+        stockLevelStore = new LocalStockLevelStore();
+        cacheInvalidationService = new CacheInvalidationService(cacheManager, new RedisKeyScanner(mock(RedisConnectionFactory.class)),
+                cacheKeyIndex, stockLevelStore, mock(CatalogSnapshotService.class), mock(NegativeLookupCache.class));
+        tx = new TransactionTemplate(new NoOpTransactionManager());
+    }
+
+    @Test
+    void placedOrdersDeleteTheIndexedKeysAndCountOnlyThosePresent() {
+        cache("orders").put(OrderSnapshots.ALL_KEY, "all orders");
+        cache("user-orders").put("alice", "alice's orders");
+        cache("admin-products").put("admin-product-1", "product 1");
+        cache("top-popular-products").put("top-popular-10", "top 10");
+        cache("user-recent-products").put("recent-alice-5", "alice's recent");
+        cache("user-recent-products").put("recent-bob-5", "bob's recent");
+        stockLevelStore.getAll(Collections.singleton(1L), ids -> Collections.singletonMap(1L, 3));
+        // top-popular-20 and recent-alice-10 have expired since they were listed
+        when(cacheKeyIndex.keys("top-popular-products", "top-popular-"))
+                .thenReturn(new HashSet<>(Arrays.asList("top-popular-10", "top-popular-20")));
+        when(cacheKeyIndex.keys("user-recent-products", "recent-alice-"))
+                .thenReturn(new HashSet<>(Arrays.asList("recent-alice-5", "recent-alice-10")));
+
+        cacheInvalidationService.ordersPlaced("order-placed", Collections.singleton("alice"), Arrays.asList(1L, 2L));
+
+        CacheInvalidationService.InvalidationStats stats = cacheInvalidationService.getStats().get("order-placed");
+        assertThat(stats.getWrites()).hasValue(1);
+        // Order index, user index, stock level of product 1, admin product 1, top 10 and alice's recent
+        assertThat(stats.getLastKeysInvalidated()).isEqualTo(6);
+        assertThat(cache("top-popular-products").get("top-popular-10")).isNull();
+        assertThat(cache("user-recent-products").get("recent-alice-5")).isNull();
+        assertThat(cache("user-recent-products").get("recent-bob-5")).isNotNull();
+    }
+
+    @Test
+    void keysAreCountedPerOperation() {
+        cache("orders").put(OrderSnapshots.orderKey(1L), "order 1");
+
+        cacheInvalidationService.orderUpdated("order-updated", 1L, Collections.emptyList());
+        cacheInvalidationService.orderUpdated("order-updated", 1L, Collections.emptyList());
+        cacheInvalidationService.orderSubmitted("alice");
+
+        CacheInvalidationService.InvalidationStats updated = cacheInvalidationService.getStats().get("order-updated");
+        assertThat(updated.getWrites()).hasValue(2);
+        assertThat(updated.getKeysInvalidated()).hasValue(1);
+        assertThat(updated.getMaxKeysInvalidated()).isEqualTo(1);
+        assertThat(updated.getLastKeysInvalidated()).isZero();
+        assertThat(cacheInvalidationService.getStats().get("order-submitted").getKeysInvalidated()).hasValue(0);
+    }
+
+    @Test
+    void evictionsWaitForTheCommit() {
+        cache("orders").put(OrderSnapshots.orderKey(1L), "order 1");
+
+        tx.executeWithoutResult(status -> {
+            cacheInvalidationService.orderUpdated("order-updated", 1L, Collections.emptyList());
+            assertThat(cache("orders").get(OrderSnapshots.orderKey(1L))).isNotNull();
+            assertThat(cacheInvalidationService.getStats()).isEmpty();
+        });
+
+        assertThat(cache("orders").get(OrderSnapshots.orderKey(1L))).isNull();
+        assertThat(cacheInvalidationService.getStats().get("order-updated").getKeysInvalidated()).hasValue(1);
+    }
+
+    @Test
+    void aRollbackEvictsNothing() {
+        cache("orders").put(OrderSnapshots.orderKey(1L), "order 1");
+        stockLevelStore.getAll(Collections.singleton(1L), ids -> new HashMap<>(Collections.singletonMap(1L, 3)));
+
+        tx.executeWithoutResult(status -> {
+            cacheInvalidationService.orderUpdated("order-updated", 1L, Collections.singleton(1L));
+            status.setRollbackOnly();
+        });
+
+        assertThat(cache("orders").get(OrderSnapshots.orderKey(1L))).isNotNull();
+        assertThat(stockLevelStore.getAll(Collections.singleton(1L), ids -> Collections.singletonMap(1L, 0))).containsEntry(1L, 3);
+        assertThat(cacheInvalidationService.getStats()).isEmpty();
+    }
+
+    @Test
+    void keysAreEvictedByPrefixWhenTheIndexCannotBeRead() {
+        cache("top-popular-products").put("top-popular-10", "top 10");
+        when(cacheKeyIndex.keys("top-popular-products", "top-popular-")).thenReturn(null);
+
+        cacheInvalidationService.popularityRebuilt();
+
+        assertThat(cache("top-popular-products").get("top-popular-10")).isNull();
+    }
+
+    private Cache cache(String name) {
+        return cacheManager.getCache(name);
+    }
+
+    // Transactions without a resource, only so the synchronizations run as they would around the database
+    private static class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
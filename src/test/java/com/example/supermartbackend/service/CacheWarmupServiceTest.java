@@ -0,0 +1,88 @@
+package com.example.supermartbackend.service;
+
+import com.example.supermartbackend.cache.HotKeyWindow;
+import com.example.supermartbackend.dto.AdminProductResponse;
+import com.example.supermartbackend.dto.ProductResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CacheWarmupServiceTest {
+
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(2, 2, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(100));
+    private ProductService productService;
+    private CatalogPayloadCache catalogPayloadCache;
+    private CacheWarmupService cacheWarmupService;
+
+    @BeforeEach
+    void setUp() {
+        productService = mock(ProductService.class);
+        when(productService.getCatalogListing()).thenReturn(new CatalogListing(42, "42-1f",
+                () -> Collections.singletonList(new ProductResponse(1L, "milk", null, new BigDecimal("1.20"), 10, null, null)),
+                () -> Collections.singletonList(new AdminProductResponse(1L, "milk", null, new BigDecimal("0.80"),
+                        new BigDecimal("1.20"), 10, null, null))));
+        catalogPayloadCache = new CatalogPayloadCache(Jackson2ObjectMapperBuilder.json().build());
+        // Redis is unreachable, so only the defaults and this node's own hot keys are warmed
+        cacheWarmupService = new CacheWarmupService(productService, catalogPayloadCache, mock(RedisConnectionFactory.class),
+                executor, new HotKeyWindow(Duration.ofMinutes(60), 12, 100));
+        ReflectionTestUtils.setField(cacheWarmupService, "maxKeys", 500);
+        ReflectionTestUtils.setField(cacheWarmupService, "payloadCache", true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void theListingPayloadsAreBuiltBeforeTheFirstRequest() throws Exception {
+        warmup();
+
+        // What /products/all then writes without building anything
+        Supplier<Object> notBuiltAgain = () -> {
+            throw new AssertionError("The listing was not warmed");
+        };
+        assertThat(new String(catalogPayloadCache.get(CatalogPayloadCache.STOREFRONT, "42-1f", notBuiltAgain).getIdentity()))
+                .contains("\"quantity\":10").doesNotContain("wholesalePrice");
+        assertThat(new String(catalogPayloadCache.get(CatalogPayloadCache.ADMIN, "42-1f", notBuiltAgain).getIdentity()))
+                .contains("\"wholesalePrice\":0.80");
+        assertThat(cacheWarmupService.getProgress().getFailedKeys()).isZero();
+        verify(productService, never()).getAllInStockProducts();
+        verify(productService, never()).getAllProductsForAdmin();
+    }
+
+    @Test
+    void theListingsAreNotWarmedWithoutThePayloadCache() throws Exception {
+        ReflectionTestUtils.setField(cacheWarmupService, "payloadCache", false);
+
+        warmup();
+
+        verify(productService, never()).getCatalogListing();
+        assertThat(cacheWarmupService.getProgress().getTotalKeys()).isEqualTo(2);
+    }
+
+    private void warmup() throws InterruptedException {
+        cacheWarmupService.triggerWarmup();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (cacheWarmupService.getProgress().isRunning() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.supermartbackend.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CatalogPayloadCacheTest {
+
+    private final CatalogPayloadCache payloadCache = new CatalogPayloadCache(Jackson2ObjectMapperBuilder.json().build());
+
+    @Test
+    void listingIsRebuiltOnlyWhenItsTagMovesOn() {
+        AtomicInteger builds = new AtomicInteger();
+        Supplier<List<String>> listing = () -> {
+            builds.incrementAndGet();
+            return Arrays.asList("milk", "bread");
+        };
+
+        CatalogPayloadCache.Payload first = payloadCache.get("storefront", "7-a", listing);
+        CatalogPayloadCache.Payload again = payloadCache.get("storefront", "7-a", listing);
+        payloadCache.get("admin", "7-a", listing);
+        CatalogPayloadCache.Payload next = payloadCache.get("storefront", "8-a", listing);
+
+        assertThat(new String(first.getIdentity())).isEqualTo("[\"milk\",\"bread\"]");
+        assertThat(again).isSameAs(first);
+        assertThat(next).isNotSameAs(first);
+        assertThat(builds.get()).isEqualTo(3);
+    }
+
+    @Test
+    void concurrentMissesBuildOnce() throws Exception {
+        AtomicInteger builds = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            Future<?>[] requests = new Future<?>[8];
+            for (int i = 0; i < requests.length; i++) {
+                requests[i] = executor.submit(() -> {
+                    start.await();
+                    return payloadCache.get("storefront", "7-a", () -> {
+                        builds.incrementAndGet();
+                        return Collections.singletonList("milk");
+                    });
+                });
+            }
+            start.countDown();
+            for (Future<?> request : requests) {
+                request.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(builds.get()).isEqualTo(1);
+    }
+}
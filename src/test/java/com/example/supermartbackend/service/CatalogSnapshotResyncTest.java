@@ -0,0 +1,81 @@
+package com.example.supermartbackend.service;
+
+import com.example.supermartbackend.cache.CacheInvalidationBus;
+import com.example.supermartbackend.cache.RedisCircuitBreaker;
+import com.example.supermartbackend.entity.Product;
+import com.example.supermartbackend.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * The periodic resync against the real product table: checkouts must not look like catalog drift.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@Import(ProductRepository.class)
+class CatalogSnapshotResyncTest {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private CatalogSnapshotService catalogSnapshotService;
+    private Product milk;
+
+    @BeforeEach
+    void setUp() {
+        milk = new Product();
+        milk.setName("Milk");
+        milk.setWholesalePrice(new BigDecimal("1.00"));
+        milk.setRetailPrice(new BigDecimal("2.00"));
+        milk.setQuantity(50);
+        entityManager.persist(milk);
+        entityManager.flush();
+        entityManager.clear();
+
+        catalogSnapshotService = new CatalogSnapshotService(productRepository, mock(CacheInvalidationBus.class),
+                new RedisCircuitBreaker(5, Duration.ofMillis(250), Duration.ofSeconds(5)));
+    }
+
+    @Test
+    void stockWritesKeepTheSnapshotVersion() {
+        long version = catalogSnapshotService.getVersion();
+
+        productRepository.decrementQuantity(milk.getId(), 5, 2);
+        productRepository.incrementQuantity(milk.getId(), 1, 1);
+        productRepository.applyQuantityDeltas(Collections.singletonMap(milk.getId(), -3), Collections.singletonMap(milk.getId(), 1));
+        entityManager.clear();
+        catalogSnapshotService.resync();
+
+        assertThat(catalogSnapshotService.getVersion()).isEqualTo(version);
+        assertThat(productRepository.findQuantitiesByIds(Collections.singleton(milk.getId()))).containsEntry(milk.getId(), 43);
+    }
+
+    @Test
+    void staticChangesMissedByTheFeedAreResynced() {
+        long version = catalogSnapshotService.getVersion();
+
+        entityManager.getEntityManager().createNativeQuery("UPDATE products SET name = 'Whole milk' WHERE id = :id")
+                .setParameter("id", milk.getId())
+                .executeUpdate();
+        entityManager.clear();
+        catalogSnapshotService.resync();
+
+        assertThat(catalogSnapshotService.getVersion()).isEqualTo(version + 1);
+        assertThat(catalogSnapshotService.current().get(milk.getId()).getProduct().getName()).isEqualTo("Whole milk");
+    }
+}
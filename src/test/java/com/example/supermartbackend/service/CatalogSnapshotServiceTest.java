@@ -0,0 +1,139 @@
+package com.example.supermartbackend.service;
+
+import com.example.supermartbackend.cache.CacheInvalidationBus;
+import com.example.supermartbackend.cache.CacheInvalidationMessage;
+import com.example.supermartbackend.cache.RedisCircuitBreaker;
+import com.example.supermartbackend.entity.Product;
+import com.example.supermartbackend.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Two nodes sharing a mocked product table and an in-memory change feed.
+ */
+class CatalogSnapshotServiceTest {
+
+    private final Map<Long, Product> table = new ConcurrentSkipListMap<>();
+    private ProductRepository productRepository;
+    private CatalogSnapshotService nodeA;
+    private CatalogSnapshotService nodeB;
+
+    @BeforeEach
+    void setUp() {
+        productRepository = mock(ProductRepository.class);
+        when(productRepository.findPage(any(), anyInt())).thenAnswer(invocation -> {
+            Long afterId = invocation.getArgument(0);
+            return table.values().stream()
+                    .filter(product -> afterId == null || product.getId() > afterId)
+                    .limit(invocation.<Integer>getArgument(1))
+                    .collect(Collectors.toList());
+        });
+        when(productRepository.findById(anyLong())).thenAnswer(invocation -> Optional.ofNullable(table.get(invocation.<Long>getArgument(0))));
+        table.put(1L, product(1L, "milk", "1.20"));
+        table.put(5L, product(5L, "bread", "2.50"));
+
+        InMemoryBus bus = new InMemoryBus();
+        RedisCircuitBreaker circuitBreaker = new RedisCircuitBreaker(5, Duration.ofMillis(250), Duration.ofSeconds(5));
+        nodeA = new CatalogSnapshotService(productRepository, bus, circuitBreaker);
+        nodeB = new CatalogSnapshotService(productRepository, bus, circuitBreaker);
+    }
+
+    @Test
+    void writesPatchACopyUnderTheNextVersion() {
+        CatalogSnapshot before = nodeA.current();
+
+        table.put(3L, product(3L, "butter", "3.10"));
+        nodeA.productChanged(3L);
+        table.get(1L).setRetailPrice(new BigDecimal("1.30"));
+        nodeA.productChanged(1L);
+
+        CatalogSnapshot after = nodeA.current();
+        assertThat(after.getVersion()).isEqualTo(before.getVersion() + 2);
+        assertThat(after.getItems()).extracting(item -> item.getProduct().getId()).containsExactly(1L, 3L, 5L);
+        assertThat(after.get(1L).getProduct().getRetailPrice()).isEqualByComparingTo("1.30");
+        // Readers still holding the old snapshot see it unchanged
+        assertThat(before.size()).isEqualTo(2);
+        assertThat(before.get(1L).getProduct().getRetailPrice()).isEqualByComparingTo("1.20");
+        // Loaded once, then patched row by row
+        verify(productRepository, times(1)).findPage(null, 1000);
+    }
+
+    @Test
+    void changesReachTheOtherNodesSnapshots() {
+        long versionB = nodeB.getVersion();
+
+        table.get(5L).setName("rye bread");
+        nodeA.productChanged(5L);
+
+        assertThat(nodeB.getVersion()).isEqualTo(versionB + 1);
+        assertThat(nodeB.current().get(5L).getProduct().getName()).isEqualTo("rye bread");
+    }
+
+    @Test
+    void profitRankingFollowsTheFeedOnEveryNode() {
+        assertThat(nodeB.getTopByProfit(2)).extracting(item -> item.getProduct().getId()).containsExactly(5L, 1L);
+
+        table.get(1L).setRetailPrice(new BigDecimal("4.00"));
+        nodeA.productChanged(1L);
+        table.remove(5L);
+        nodeA.productChanged(5L);
+
+        assertThat(nodeA.getTopByProfit(2)).extracting(item -> item.getProduct().getId()).containsExactly(1L);
+        assertThat(nodeB.getTopByProfit(2)).extracting(item -> item.getProduct().getRetailPrice())
+                .usingElementComparator(BigDecimal::compareTo).containsExactly(new BigDecimal("4.00"));
+    }
+
+    @Test
+    void unchangedRowsKeepTheVersion() {
+        long version = nodeA.getVersion();
+
+        nodeA.productChanged(1L);
+        nodeA.resync();
+
+        assertThat(nodeA.getVersion()).isEqualTo(version);
+    }
+
+    private static Product product(Long id, String name, String retailPrice) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName(name);
+        product.setRetailPrice(new BigDecimal(retailPrice));
+        product.setWholesalePrice(new BigDecimal("1.00"));
+        product.setQuantity(10);
+        return product;
+    }
+
+    private static class InMemoryBus implements CacheInvalidationBus {
+
+        private final List<Consumer<CacheInvalidationMessage>> listeners = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void publish(CacheInvalidationMessage message) {
+            listeners.forEach(listener -> listener.accept(message));
+        }
+
+        @Override
+        public void subscribe(Consumer<CacheInvalidationMessage> listener) {
+            listeners.add(listener);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.supermartbackend.service;
+
+import com.example.supermartbackend.cache.CacheInvalidationBus;
+import com.example.supermartbackend.cache.CacheInvalidationMessage;
+import com.example.supermartbackend.cache.RedisCircuitBreaker;
+import com.example.supermartbackend.entity.User;
+import com.example.supermartbackend.exception.InvalidCredentialsException;
+import com.example.supermartbackend.repository.UserRepository;
+import com.example.supermartbackend.security.UserDetailsServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Two nodes sharing an in-memory invalidation bus; the entries themselves never leave their node.
+ */
+class NegativeLookupCacheTest {
+
+    private InMemoryBus bus;
+    private NegativeLookupCache nodeA;
+    private NegativeLookupCache nodeB;
+
+    @BeforeEach
+    void setUp() {
+        bus = new InMemoryBus();
+        RedisCircuitBreaker circuitBreaker = new RedisCircuitBreaker(5, Duration.ofMillis(250), Duration.ofSeconds(5));
+        nodeA = new NegativeLookupCache(bus, circuitBreaker, 60, 100);
+        nodeB = new NegativeLookupCache(bus, circuitBreaker, 60, 100);
+    }
+
+    @Test
+    void creatingAKeyDropsItsEntryOnEveryNode() {
+        nodeA.markMissing(NegativeLookupCache.USER, "carol");
+        nodeB.markMissing(NegativeLookupCache.USER, "carol");
+        nodeB.markMissing(NegativeLookupCache.USER, "dave");
+
+        assertThat(nodeA.forget(NegativeLookupCache.USER, "carol")).isTrue();
+
+        assertThat(nodeA.isMissing(NegativeLookupCache.USER, "carol")).isFalse();
+        assertThat(nodeB.isMissing(NegativeLookupCache.USER, "carol")).isFalse();
+        assertThat(nodeB.isMissing(NegativeLookupCache.USER, "dave")).isTrue();
+        // Nothing to drop on this node, the other nodes are still told
+        assertThat(nodeA.forget(NegativeLookupCache.USER, "dave")).isFalse();
+        assertThat(nodeB.isMissing(NegativeLookupCache.USER, "dave")).isFalse();
+    }
+
+    @Test
+    void checkingAnExistingUserStaysOnTheNode() {
+        UserRepository userRepository = mock(UserRepository.class);
+        User alice = new User();
+        alice.setUsername("alice");
+        alice.setPassword("secret");
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.of(alice));
+        when(userRepository.findByUsername("mallory")).thenReturn(Optional.empty());
+        UserDetailsServiceImpl userDetailsService = new UserDetailsServiceImpl(userRepository, nodeA);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(userDetailsService.loadUserByUsername("alice").getUsername()).isEqualTo("alice");
+            assertThatThrownBy(() -> userDetailsService.loadUserByUsername("mallory")).isInstanceOf(InvalidCredentialsException.class);
+        }
+
+        // An unknown user reaches the database once, and no lookup touched the bus
+        verify(userRepository, times(5)).findByUsername("alice");
+        verify(userRepository, times(1)).findByUsername("mallory");
+        assertThat(bus.published).isEmpty();
+    }
+
+    private static class InMemoryBus implements CacheInvalidationBus {
+
+        private final List<Consumer<CacheInvalidationMessage>> listeners = new CopyOnWriteArrayList<>();
+        private final List<CacheInvalidationMessage> published = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void publish(CacheInvalidationMessage message) {
+            published.add(message);
+            listeners.forEach(listener -> listener.accept(message));
+        }
+
+        @Override
+        public void subscribe(Consumer<CacheInvalidationMessage> listener) {
+            listeners.add(listener);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.supermartbackend.service;
+
+import com.example.supermartbackend.dto.OrderItemRequest;
+import com.example.supermartbackend.dto.OrderRequest;
+import com.example.supermartbackend.dto.OrderResponse;
+import com.example.supermartbackend.exception.IdempotencyConflictException;
+import com.example.supermartbackend.exception.IdempotencyKeyReuseException;
+import com.example.supermartbackend.exception.NotEnoughInventoryException;
+import com.example.supermartbackend.service.impl.InMemoryIdempotencyStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+class OrderIdempotencyServiceTest {
+
+    private static final OrderRequest BASKET = basket(1L, 2);
+
+    private InMemoryIdempotencyStore store;
+    private OrderIdempotencyService idempotencyService;
+    private final AtomicInteger placements = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        store = new InMemoryIdempotencyStore(3600, 100);
+        idempotencyService = new OrderIdempotencyService(store, 5000, 60);
+        authenticate("alice");
+    }
+
+    @AfterEach
+    void tearDown() {
+        idempotencyService.stop();
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void aCompletedKeyReplaysTheFirstResponse() {
+        OrderResponse first = idempotencyService.execute("key-1", BASKET, this::place);
+        OrderResponse retry = idempotencyService.execute("key-1", BASKET, this::place);
+
+        assertThat(retry).isEqualTo(first);
+        assertThat(placements).hasValue(1);
+    }
+
+    @Test
+    void keysAreScopedToTheUser() {
+        idempotencyService.execute("key-1", BASKET, this::place);
+        authenticate("bob");
+        idempotencyService.execute("key-1", BASKET, this::place);
+
+        assertThat(placements).hasValue(2);
+    }
+
+    @Test
+    void concurrentRequestsWithTheSameKeyPlaceOneOrder() throws Exception {
+        // A second node shares the store but not the in-flight requests
+        OrderIdempotencyService otherNode = new OrderIdempotencyService(store, 5000, 60);
+        CountDownLatch placing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Supplier<OrderResponse> slowPlacement = () -> {
+            placing.countDown();
+            await(release);
+            return place();
+        };
+
+        ExecutorService pool = Executors.newFixedThreadPool(6);
+        try {
+            List<Future<OrderResponse>> responses = new ArrayList<>();
+            responses.add(pool.submit(() -> asAlice(() -> idempotencyService.execute("key-1", BASKET, slowPlacement))));
+            assertThat(placing.await(5, TimeUnit.SECONDS)).isTrue();
+            for (int i = 0; i < 5; i++) {
+                OrderIdempotencyService node = i % 2 == 0 ? idempotencyService : otherNode;
+                responses.add(pool.submit(() -> asAlice(() -> node.execute("key-1", BASKET, slowPlacement))));
+            }
+            release.countDown();
+
+            OrderResponse first = responses.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<OrderResponse> response : responses) {
+                assertThat(response.get(10, TimeUnit.SECONDS)).isEqualTo(first);
+            }
+        } finally {
+            pool.shutdownNow();
+            otherNode.stop();
+        }
+        assertThat(placements).hasValue(1);
+    }
+
+    @Test
+    void aFailedPlacementReleasesTheKeyForARetry() {
+        assertThatThrownBy(() -> idempotencyService.execute("key-1", BASKET, () -> {
+            throw new NotEnoughInventoryException("Not enough inventory");
+        })).isInstanceOf(NotEnoughInventoryException.class);
+
+        OrderResponse retry = idempotencyService.execute("key-1", BASKET, this::place);
+
+        assertThat(retry.getId()).isEqualTo(1L);
+        assertThat(store.find("alice:key-1")).hasValueSatisfying(record -> assertThat(record.getResponse()).isEqualTo(retry));
+    }
+
+    @Test
+    void reusingAKeyForAnotherBasketIsRejected() {
+        idempotencyService.execute("key-1", BASKET, this::place);
+
+        assertThatThrownBy(() -> idempotencyService.execute("key-1", basket(1L, 3), this::place))
+                .isInstanceOf(IdempotencyKeyReuseException.class);
+        assertThat(placements).hasValue(1);
+    }
+
+    @Test
+    void reusingAKeyInProgressForAnotherBasketIsRejected() {
+        store.claim("alice:key-1", OrderIdempotencyService.requestHash(BASKET));
+
+        assertThatThrownBy(() -> idempotencyService.execute("key-1", basket(2L, 2), this::place))
+                .isInstanceOf(IdempotencyKeyReuseException.class);
+        assertThat(placements).hasValue(0);
+    }
+
+    @Test
+    void aPlacedOrderIsReturnedAndKeepsItsKeyWhenItsResponseCannotBeStored() {
+        InMemoryIdempotencyStore failingStore = new InMemoryIdempotencyStore(3600, 100) {
+            @Override
+            public synchronized void complete(String key, String requestHash, OrderResponse response) {
+                throw new RedisConnectionFailureException("Redis is down");
+            }
+        };
+        OrderIdempotencyService service = new OrderIdempotencyService(failingStore, 300, 60);
+        try {
+            assertThat(service.execute("key-1", BASKET, this::place).getId()).isEqualTo(1L);
+
+            // Still claimed, so a retry waits for the response instead of placing a second order
+            assertThatThrownBy(() -> service.execute("key-1", BASKET, this::place))
+                    .isInstanceOf(IdempotencyConflictException.class);
+            assertThat(placements).hasValue(1);
+        } finally {
+            service.stop();
+        }
+    }
+
+    @Test
+    void theClaimIsRenewedWhileAPlacementOutlastsItsTtl() {
+        InMemoryIdempotencyStore renewingStore = spy(store);
+        OrderIdempotencyService service = new OrderIdempotencyService(renewingStore, 5000, 1);
+        try {
+            service.execute("key-1", BASKET, () -> {
+                sleep(1200);
+                return place();
+            });
+        } finally {
+            service.stop();
+        }
+
+        verify(renewingStore, atLeast(2)).renew("alice:key-1", OrderIdempotencyService.requestHash(BASKET));
+    }
+
+    private OrderResponse place() {
+        OrderResponse response = new OrderResponse();
+        response.setId((long) placements.incrementAndGet());
+        response.setStatus("PLACED");
+        return response;
+    }
+
+    private static OrderRequest basket(Long productId, int quantity) {
+        return new OrderRequest(Collections.singletonList(new OrderItemRequest(productId, quantity)));
+    }
+
+    private static OrderResponse asAlice(Supplier<OrderResponse> request) {
+        authenticate("alice");
+        try {
+            return request.get();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    private static void authenticate(String username) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(username, null, Collections.emptyList()));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
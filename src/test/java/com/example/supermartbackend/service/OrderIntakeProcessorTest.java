@@ -0,0 +1,204 @@
+package com.example.supermartbackend.service;
+
+import com.example.supermartbackend.dto.OrderResponse;
+import com.example.supermartbackend.entity.Order;
+import com.example.supermartbackend.entity.OrderItem;
+import com.example.supermartbackend.entity.Product;
+import com.example.supermartbackend.entity.User;
+import com.example.supermartbackend.repository.OrderRepository;
+import com.example.supermartbackend.repository.ProductRepository;
+import com.example.supermartbackend.repository.PurchaseSummaryRepository;
+import com.example.supermartbackend.repository.UserRepository;
+import com.example.supermartbackend.service.impl.DatabaseInventoryService;
+import com.example.supermartbackend.service.impl.OrderServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({ProductRepository.class, OrderRepository.class, UserRepository.class, PurchaseSummaryRepository.class})
+class OrderIntakeProcessorTest {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PurchaseSummaryRepository purchaseSummaryRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private final CacheInvalidationService cacheInvalidationService = mock(CacheInvalidationService.class);
+    private OrderIntakeProcessor processor;
+    private User alice;
+    private Product milk;
+
+    @BeforeEach
+    void setUp() {
+        processor = new OrderIntakeProcessor(orderRepository, purchaseSummaryRepository,
+                new DatabaseInventoryService(productRepository), cacheInvalidationService, transactionManager);
+        ReflectionTestUtils.setField(processor, "queueCapacity", 100);
+        ReflectionTestUtils.setField(processor, "staleAfterSeconds", 30L);
+        processor.start();
+        // Enabled only after starting, so no worker races the test for the queue
+        ReflectionTestUtils.setField(processor, "enabled", true);
+
+        alice = user("alice");
+        milk = product("Milk", 5);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void aBatchReservesInOneGoAndRejectsOnlyTheOrdersWithoutStock() {
+        Product bread = product("Bread", 1);
+        Order first = pendingOrder(milk, 2);
+        Order tooMuchBread = pendingOrder(bread, 3);
+        Order second = pendingOrder(milk, 3);
+        entityManager.flush();
+        entityManager.clear();
+
+        processor.processBatch(Arrays.asList(first.getId(), tooMuchBread.getId(), second.getId()));
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(statusOf(first)).isEqualTo(Order.OrderStatus.PROCESSING);
+        assertThat(statusOf(second)).isEqualTo(Order.OrderStatus.PROCESSING);
+        Order rejected = orderRepository.findById(tooMuchBread.getId()).orElseThrow(IllegalStateException::new);
+        assertThat(rejected.getStatus()).isEqualTo(Order.OrderStatus.REJECTED);
+        assertThat(rejected.getRejectionReason()).isNotBlank();
+        assertThat(productRepository.findById(milk.getId()).orElseThrow(IllegalStateException::new).getQuantity()).isZero();
+        assertThat(productRepository.findById(bread.getId()).orElseThrow(IllegalStateException::new).getQuantity()).isEqualTo(1);
+        assertThat(productRepository.findMostRecentlyPurchased(alice.getId(), 10)).extracting(Product::getName)
+                .containsExactly("Milk");
+        // One invalidation for the whole batch, covering only the reserved products
+        verify(cacheInvalidationService, times(1)).ordersAccepted(eq("order-intake"), eq(Collections.singleton(alice.getUsername())),
+                eq(set(first.getId(), tooMuchBread.getId(), second.getId())), eq(Collections.singleton(milk.getId())));
+    }
+
+    @Test
+    void ordersNoLongerPendingAreSkipped() {
+        Order canceled = pendingOrder(milk, 1);
+        canceled.setStatus(Order.OrderStatus.CANCELED);
+        entityManager.flush();
+        entityManager.clear();
+
+        processor.processBatch(Collections.singletonList(canceled.getId()));
+        entityManager.clear();
+
+        assertThat(statusOf(canceled)).isEqualTo(Order.OrderStatus.CANCELED);
+        assertThat(productRepository.findById(milk.getId()).orElseThrow(IllegalStateException::new).getQuantity()).isEqualTo(5);
+        verify(cacheInvalidationService, times(0)).ordersAccepted(any(), any(), any(), any());
+    }
+
+    @Test
+    void theSweepRequeuesOnlyStalePendingOrders() {
+        Order stale = pendingOrder(milk, 1);
+        Order fresh = pendingOrder(milk, 1);
+        entityManager.flush();
+        entityManager.getEntityManager().createQuery("UPDATE Order o SET o.createdAt = :createdAt WHERE o.id = :id")
+                .setParameter("createdAt", LocalDateTime.now().minusMinutes(5))
+                .setParameter("id", stale.getId())
+                .executeUpdate();
+        entityManager.clear();
+
+        processor.recoverPendingOrders();
+
+        @SuppressWarnings("unchecked")
+        Collection<Long> queue = (Collection<Long>) ReflectionTestUtils.getField(processor, "queue");
+        assertThat(queue).contains(stale.getId()).doesNotContain(fresh.getId());
+    }
+
+    @Test
+    void aPendingOrderIsCanceledWithoutTouchingStock() {
+        Order pending = pendingOrder(milk, 2);
+        entityManager.flush();
+        entityManager.clear();
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(alice.getUsername(), null, Collections.emptyList()));
+        OrderServiceImpl orderService = new OrderServiceImpl(orderRepository, productRepository, purchaseSummaryRepository,
+                userRepository, new DatabaseInventoryService(productRepository), processor, cacheInvalidationService,
+                mock(OrderSnapshots.class), transactionManager);
+
+        OrderResponse response = orderService.cancelOrder(pending.getId());
+        processor.processBatch(Collections.singletonList(pending.getId()));
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(response.getStatus()).isEqualTo("CANCELED");
+        assertThat(statusOf(pending)).isEqualTo(Order.OrderStatus.CANCELED);
+        assertThat(productRepository.findById(milk.getId()).orElseThrow(IllegalStateException::new).getQuantity()).isEqualTo(5);
+        verify(cacheInvalidationService).orderUpdated("order-canceled", pending.getId(), Collections.emptySet());
+    }
+
+    private Order pendingOrder(Product product, int quantity) {
+        Order order = new Order();
+        order.setUser(alice);
+        order.setStatus(Order.OrderStatus.PENDING);
+        order.addItem(new OrderItem(product, quantity));
+        return entityManager.persist(order);
+    }
+
+    private Order.OrderStatus statusOf(Order order) {
+        return orderRepository.findById(order.getId()).orElseThrow(IllegalStateException::new).getStatus();
+    }
+
+    private User user(String name) {
+        User user = new User();
+        user.setUsername(name + "-" + UUID.randomUUID());
+        user.setEmail(user.getUsername() + "@supermart.com");
+        user.setPassword("secret");
+        return entityManager.persist(user);
+    }
+
+    private Product product(String name, int quantity) {
+        Product product = new Product();
+        product.setName(name);
+        product.setWholesalePrice(new BigDecimal("1.00"));
+        product.setRetailPrice(new BigDecimal("2.00"));
+        product.setQuantity(quantity);
+        return entityManager.persist(product);
+    }
+
+    private static Set<Long> set(Long... ids) {
+        return new HashSet<>(Arrays.asList(ids));
+    }
+}
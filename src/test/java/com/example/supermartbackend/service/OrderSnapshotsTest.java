@@ -0,0 +1,115 @@
+package com.example.supermartbackend.service;
+
+import com.example.supermartbackend.dto.CursorPage;
+import com.example.supermartbackend.dto.OrderSnapshot;
+import com.example.supermartbackend.entity.Order;
+import com.example.supermartbackend.entity.OrderItem;
+import com.example.supermartbackend.entity.Product;
+import com.example.supermartbackend.entity.User;
+import com.example.supermartbackend.repository.OrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+class OrderSnapshotsTest {
+
+    private static final int INDEX_SIZE = PageCursor.MAX_LIMIT + 1;
+
+    private OrderRepository orderRepository;
+    private ConcurrentMapCacheManager cacheManager;
+    private OrderSnapshots orderSnapshots;
+
+    @BeforeEach
+    void setUp() {
+        orderRepository = mock(OrderRepository.class);
+        cacheManager = new ConcurrentMapCacheManager("orders", "user-orders");
+        orderSnapshots = new OrderSnapshots(orderRepository, cacheManager);
+
+        when(orderRepository.findIdsByUsername("alice", null, null, INDEX_SIZE)).thenReturn(Arrays.asList(3L, 1L));
+        when(orderRepository.findSnapshotsByIds(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return ids.stream().map(id -> new OrderSnapshot("alice", OrderSnapshots.toResponse(order(id, "alice"))))
+                    .collect(Collectors.toList());
+        });
+    }
+
+    @Test
+    void userOrdersAreLoadedOnceThenServedFromSnapshots() {
+        List<OrderSnapshot> first = orderSnapshots.getPageByUsername("alice", null, 50).getItems();
+        List<OrderSnapshot> second = orderSnapshots.getPageByUsername("alice", null, 50).getItems();
+
+        assertThat(first).extracting(snapshot -> snapshot.getOrder().getId()).containsExactly(3L, 1L);
+        assertThat(second).isEqualTo(first);
+        assertThat(orderSnapshots.get(1L).getUsername()).isEqualTo("alice");
+        // One index query and one query for both missing orders, nothing on the hits
+        verify(orderRepository, times(1)).findIdsByUsername("alice", null, null, INDEX_SIZE);
+        verify(orderRepository, times(1)).findSnapshotsByIds(anyCollection());
+        verifyNoMoreInteractions(orderRepository);
+    }
+
+    @Test
+    void evictingOneOrderReloadsOnlyThatOrder() {
+        orderSnapshots.getPageByUsername("alice", null, 50);
+        cacheManager.getCache("orders").evict(OrderSnapshots.orderKey(3L));
+
+        orderSnapshots.getPageByUsername("alice", null, 50);
+
+        verify(orderRepository).findSnapshotsByIds(Arrays.asList(3L, 1L));
+        verify(orderRepository).findSnapshotsByIds(Collections.singletonList(3L));
+    }
+
+    @Test
+    void pagesSeekPastTheCursorAndAreCachedApart() {
+        // Five orders, one a minute, the newest first
+        when(orderRepository.findIds(null, null, INDEX_SIZE)).thenReturn(Arrays.asList(5L, 4L, 3L, 2L, 1L));
+        when(orderRepository.findIds(createdAt(3L), 3L, INDEX_SIZE)).thenReturn(Arrays.asList(2L, 1L));
+
+        CursorPage<OrderSnapshot> first = orderSnapshots.getPage(null, 3);
+        assertThat(first.getItems()).extracting(snapshot -> snapshot.getOrder().getId()).containsExactly(5L, 4L, 3L);
+        assertThat(first.getNextCursor()).isEqualTo(PageCursor.ofOrder(createdAt(3L), 3L));
+
+        CursorPage<OrderSnapshot> second = orderSnapshots.getPage(first.getNextCursor(), 3);
+        orderSnapshots.getPage(first.getNextCursor(), 3);
+        assertThat(second.getItems()).extracting(snapshot -> snapshot.getOrder().getId()).containsExactly(2L, 1L);
+        assertThat(second.getNextCursor()).isNull();
+        // Only the snapshots of the requested pages are loaded, and the second index query runs once
+        verify(orderRepository).findSnapshotsByIds(Arrays.asList(5L, 4L, 3L));
+        verify(orderRepository, times(1)).findIds(createdAt(3L), 3L, INDEX_SIZE);
+    }
+
+    private static LocalDateTime createdAt(Long id) {
+        return LocalDateTime.of(2024, 5, 1, 9, 0).plusMinutes(id);
+    }
+
+    private static Order order(Long id, String username) {
+        User user = new User();
+        user.setUsername(username);
+        Product product = new Product();
+        product.setId(10L);
+        product.setName("Milk");
+        product.setRetailPrice(new BigDecimal("1.50"));
+
+        Order order = new Order();
+        order.setId(id);
+        order.setUser(user);
+        order.setCreatedAt(createdAt(id));
+        order.addItem(new OrderItem(product, 2));
+        return order;
+    }
+}
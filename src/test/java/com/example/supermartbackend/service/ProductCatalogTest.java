@@ -0,0 +1,112 @@
+package com.example.supermartbackend.service;
+
+import com.example.supermartbackend.cache.CacheInvalidationBus;
+import com.example.supermartbackend.cache.RedisCircuitBreaker;
+import com.example.supermartbackend.dto.CatalogProduct;
+import com.example.supermartbackend.entity.Product;
+import com.example.supermartbackend.repository.ProductRepository;
+import com.example.supermartbackend.service.impl.LocalStockLevelStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import javax.persistence.EntityNotFoundException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProductCatalogTest {
+
+    private ProductRepository productRepository;
+    private ConcurrentMapCacheManager cacheManager;
+    private LocalStockLevelStore stockLevelStore;
+    private NegativeLookupCache negativeLookupCache;
+    private ProductCatalog productCatalog;
+
+    @BeforeEach
+    void setUp() {
+        productRepository = mock(ProductRepository.class);
+        // Only the products cache: a lookup of any other cache would fail
+        cacheManager = new ConcurrentMapCacheManager("products");
+        stockLevelStore = new LocalStockLevelStore();
+        negativeLookupCache = spy(new NegativeLookupCache(mock(CacheInvalidationBus.class),
+                new RedisCircuitBreaker(5, Duration.ofMillis(250), Duration.ofSeconds(5)), 60, 100));
+        productCatalog = new ProductCatalog(productRepository, stockLevelStore, cacheManager, negativeLookupCache);
+    }
+
+    @Test
+    void stockChangesLeaveTheCachedStaticFieldsAlone() {
+        Product product = new Product();
+        product.setId(3L);
+        product.setName("Butter");
+        product.setRetailPrice(new BigDecimal("3.10"));
+        product.setUpdatedAt(LocalDateTime.of(2024, 1, 1, 12, 0));
+        when(productRepository.findById(3L)).thenReturn(Optional.of(product));
+        when(productRepository.findQuantitiesByIds(Collections.singleton(3L))).thenReturn(Collections.singletonMap(3L, 10));
+        CatalogProduct cached = productCatalog.get(3L);
+        assertThat(productCatalog.getStockLevels(Collections.singleton(3L))).containsEntry(3L, 10);
+
+        // A checkout: only the stock level is evicted, as CacheInvalidationService.ordersPlaced does
+        when(productRepository.findQuantitiesByIds(Collections.singleton(3L))).thenReturn(Collections.singletonMap(3L, 7));
+        stockLevelStore.evict(Collections.singleton(3L));
+
+        assertThat(productCatalog.getStockLevels(Collections.singleton(3L))).containsEntry(3L, 7);
+        assertThat(productCatalog.get(3L)).isSameAs(cached);
+        assertThat(cached.getUpdatedAt()).isEqualTo(LocalDateTime.of(2024, 1, 1, 12, 0));
+        verify(productRepository, times(1)).findById(3L);
+    }
+
+    @Test
+    void cachedProductsNeverConsultTheNegativeCache() {
+        Product product = new Product();
+        product.setId(3L);
+        product.setName("Butter");
+        when(productRepository.findById(3L)).thenReturn(Optional.of(product));
+
+        productCatalog.get(3L);
+        for (int i = 0; i < 5; i++) {
+            assertThat(productCatalog.get(3L).getName()).isEqualTo("Butter");
+        }
+
+        // Only the first read, a products miss, looked for a negative entry, and that one stays on the node
+        verify(negativeLookupCache, times(1)).isMissing(NegativeLookupCache.PRODUCT, 3L);
+        assertThat(cacheManager.getCacheNames()).containsExactly("products");
+    }
+
+    @Test
+    void unknownProductIdsReachTheDatabaseOnce() {
+        when(productRepository.findById(404L)).thenReturn(Optional.empty());
+
+        for (int i = 0; i < 5; i++) {
+            assertThatThrownBy(() -> productCatalog.get(404L)).isInstanceOf(EntityNotFoundException.class);
+        }
+
+        verify(productRepository, times(1)).findById(404L);
+    }
+
+    @Test
+    void creatingTheProductClearsItsNegativeEntry() {
+        when(productRepository.findById(7L)).thenReturn(Optional.empty());
+        assertThatThrownBy(() -> productCatalog.get(7L)).isInstanceOf(EntityNotFoundException.class);
+
+        Product product = new Product();
+        product.setId(7L);
+        product.setName("Oat milk");
+        product.setRetailPrice(new BigDecimal("2.20"));
+        when(productRepository.findById(7L)).thenReturn(Optional.of(product));
+        // What CacheInvalidationService.productChanged does for a new product
+        negativeLookupCache.forget(NegativeLookupCache.PRODUCT, 7L);
+
+        assertThat(productCatalog.get(7L).getName()).isEqualTo("Oat milk");
+    }
+}
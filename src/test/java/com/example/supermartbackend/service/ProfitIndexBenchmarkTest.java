@@ -0,0 +1,83 @@
+package com.example.supermartbackend.service;
+
+import com.example.supermartbackend.dto.CatalogProduct;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Top-N by margin over a million products: a walk over the profit index against sorting the whole
+ * catalog, which is what each miss of the former cache made the database do, plus the cost of
+ * building the index and of patching it per product write.
+ * Run with {@code mvn test -Pbenchmark -Dtest=ProfitIndexBenchmarkTest}.
+ */
+@Tag("benchmark")
+class ProfitIndexBenchmarkTest {
+
+    private static final int PRODUCTS = 1_000_000;
+    private static final int PATCHES = 200_000;
+
+    @Test
+    void topByProfitOverAMillionProducts() {
+        Random random = new Random(42);
+        List<CatalogSnapshot.Item> items = new ArrayList<>(PRODUCTS);
+        for (long id = 1; id <= PRODUCTS; id++) {
+            items.add(item(id, random));
+        }
+
+        long start = System.nanoTime();
+        ProfitIndex index = ProfitIndex.of(items);
+        System.out.printf("[benchmark] profit index build products=%d time=%d ms%n", PRODUCTS, (System.nanoTime() - start) / 1_000_000);
+
+        Comparator<CatalogSnapshot.Item> byMargin = Comparator.comparing(
+                (CatalogSnapshot.Item item) -> item.getProduct().getRetailPrice().subtract(item.getWholesalePrice())).reversed();
+        assertThat(index.top(1).get(0)).isSameAs(items.stream().min(byMargin.thenComparing(item -> item.getProduct().getId())).orElse(null));
+        for (int count : new int[]{10, 100, 1000}) {
+            double indexed = timePerCall(1000, i -> index.top(count));
+            double sorted = timePerCall(3, i -> {
+                List<CatalogSnapshot.Item> copy = new ArrayList<>(items);
+                copy.sort(byMargin);
+                return copy.subList(0, count);
+            });
+            System.out.printf("[benchmark] top %4d: index %10.1f us/call, full sort %10.1f us/call%n", count, indexed / 1000, sorted / 1000);
+        }
+
+        start = System.nanoTime();
+        for (int i = 0; i < PATCHES; i++) {
+            int position = random.nextInt(PRODUCTS);
+            CatalogSnapshot.Item previous = items.get(position);
+            CatalogSnapshot.Item patched = item(previous.getProduct().getId(), random);
+            index.put(previous, patched);
+            items.set(position, patched);
+        }
+        System.out.printf("[benchmark] patches=%d time=%.2f us/patch%n", PATCHES, (System.nanoTime() - start) / 1000.0 / PATCHES);
+        assertThat(index.size()).isEqualTo(PRODUCTS);
+    }
+
+    private static double timePerCall(int calls, IntFunction<List<CatalogSnapshot.Item>> call) {
+        long sink = 0;
+        for (int i = 0; i < calls; i++) {
+            sink += call.apply(i).size();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < calls; i++) {
+            sink += call.apply(i).size();
+        }
+        assertThat(sink).isPositive();
+        return (double) (System.nanoTime() - start) / calls;
+    }
+
+    private static CatalogSnapshot.Item item(long id, Random random) {
+        BigDecimal wholesalePrice = BigDecimal.valueOf(50 + random.nextInt(50_000), 2);
+        BigDecimal retailPrice = wholesalePrice.add(BigDecimal.valueOf(random.nextInt(20_000), 2));
+        return new CatalogSnapshot.Item(new CatalogProduct(id, "Product " + id, null, retailPrice, null, null), wholesalePrice);
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.supermartbackend.service;
+
+import com.example.supermartbackend.dto.CatalogProduct;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProfitIndexTest {
+
+    @Test
+    void ranksByMarginThenId() {
+        ProfitIndex index = ProfitIndex.of(Arrays.asList(
+                item(1L, "milk", "1.50", "1.00"),
+                item(2L, "wine", "12.00", "7.00"),
+                item(3L, "bread", "2.5", "2.00"),
+                item(4L, "cheese", "6.00", "3.00")));
+
+        assertThat(index.top(3)).extracting(item -> item.getProduct().getId()).containsExactly(2L, 4L, 1L);
+        assertThat(index.top(10)).extracting(item -> item.getProduct().getId()).containsExactly(2L, 4L, 1L, 3L);
+        assertThat(index.top(0)).isEmpty();
+    }
+
+    @Test
+    void patchesReplaceMoveAndRemoveItems() {
+        CatalogSnapshot.Item milk = item(1L, "milk", "1.50", "1.00");
+        CatalogSnapshot.Item wine = item(2L, "wine", "12.00", "7.00");
+        ProfitIndex index = ProfitIndex.of(Arrays.asList(milk, wine));
+
+        // Same margin, new name: the entry is replaced, not duplicated
+        CatalogSnapshot.Item renamed = item(1L, "whole milk", "1.50", "1.00");
+        index.put(milk, renamed);
+        // New margin: the product moves up
+        CatalogSnapshot.Item repriced = item(1L, "whole milk", "9.00", "1.00");
+        index.put(renamed, repriced);
+        index.put(null, item(3L, "bread", "2.50", "2.00"));
+
+        assertThat(index.size()).isEqualTo(3);
+        assertThat(index.top(3)).extracting(item -> item.getProduct().getId()).containsExactly(1L, 2L, 3L);
+        assertThat(index.top(1).get(0)).isSameAs(repriced);
+
+        index.remove(repriced);
+        assertThat(index.top(3)).extracting(item -> item.getProduct().getId()).containsExactly(2L, 3L);
+    }
+
+    static CatalogSnapshot.Item item(Long id, String name, String retailPrice, String wholesalePrice) {
+        return new CatalogSnapshot.Item(new CatalogProduct(id, name, null, new BigDecimal(retailPrice), null, null),
+                new BigDecimal(wholesalePrice));
+    }
+}
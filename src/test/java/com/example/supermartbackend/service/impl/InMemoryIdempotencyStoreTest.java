@@ -0,0 +1,70 @@
+package com.example.supermartbackend.service.impl;
+
+import com.example.supermartbackend.dto.OrderResponse;
+import com.example.supermartbackend.service.IdempotencyRecord;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemoryIdempotencyStoreTest {
+
+    @Test
+    void theLeastRecentlyUsedKeyIsEvictedOnceFull() {
+        InMemoryIdempotencyStore store = new InMemoryIdempotencyStore(3600, 2);
+        store.complete("alice:1", "hash-1", response(1L));
+        store.complete("alice:2", "hash-2", response(2L));
+        // Reading key 1 makes key 2 the least recently used
+        assertThat(store.find("alice:1")).isPresent();
+
+        store.claim("alice:3", "hash-3");
+
+        assertThat(store.find("alice:1")).isPresent();
+        assertThat(store.find("alice:2")).isEmpty();
+        assertThat(store.find("alice:3")).hasValue(new IdempotencyRecord("hash-3", null));
+    }
+
+    @Test
+    void aClaimHoldsOffOtherClaimsUntilReleased() {
+        InMemoryIdempotencyStore store = new InMemoryIdempotencyStore(3600, 10);
+
+        assertThat(store.claim("alice:1", "hash-1")).isTrue();
+        assertThat(store.claim("alice:1", "hash-1")).isFalse();
+        // Only the request holding the claim releases it
+        store.release("alice:1", "hash-2");
+        assertThat(store.find("alice:1")).hasValue(new IdempotencyRecord("hash-1", null));
+        store.release("alice:1", "hash-1");
+
+        assertThat(store.find("alice:1")).isEmpty();
+        assertThat(store.claim("alice:1", "hash-1")).isTrue();
+    }
+
+    @Test
+    void completedKeysAreNotReleased() {
+        InMemoryIdempotencyStore store = new InMemoryIdempotencyStore(3600, 10);
+        store.claim("alice:1", "hash-1");
+        store.complete("alice:1", "hash-1", response(1L));
+
+        store.release("alice:1", "hash-1");
+
+        assertThat(store.renew("alice:1", "hash-1")).isFalse();
+        assertThat(store.find("alice:1")).hasValue(new IdempotencyRecord("hash-1", response(1L)));
+        assertThat(store.claim("alice:1", "hash-1")).isFalse();
+    }
+
+    @Test
+    void expiredKeysCanBeClaimedAgain() throws InterruptedException {
+        InMemoryIdempotencyStore store = new InMemoryIdempotencyStore(0, 10);
+        store.complete("alice:1", "hash-1", response(1L));
+        Thread.sleep(5);
+
+        assertThat(store.find("alice:1")).isEmpty();
+        assertThat(store.claim("alice:1", "hash-2")).isTrue();
+    }
+
+    private static OrderResponse response(Long id) {
+        OrderResponse response = new OrderResponse();
+        response.setId(id);
+        response.setStatus("PLACED");
+        return response;
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.supermartbackend.service.impl;
+
+import com.example.supermartbackend.dto.OrderItemRequest;
+import com.example.supermartbackend.dto.OrderRequest;
+import com.example.supermartbackend.entity.Product;
+import com.example.supermartbackend.entity.User;
+import com.example.supermartbackend.repository.OrderRepository;
+import com.example.supermartbackend.repository.ProductRepository;
+import com.example.supermartbackend.repository.PurchaseSummaryRepository;
+import com.example.supermartbackend.repository.UserRepository;
+import com.example.supermartbackend.service.CacheInvalidationService;
+import com.example.supermartbackend.service.InventoryService;
+import com.example.supermartbackend.service.OrderIntakeProcessor;
+import com.example.supermartbackend.service.OrderSnapshots;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Orders per second for a single hot SKU with the database and the ledger inventory engines. Every
+ * order goes through {@link OrderServiceImpl#placeOrder} for its own shopper, so all writes of a
+ * checkout are measured, not just the reservation.
+ * Run with {@code mvn test -Pbenchmark -Dtest=InventoryThroughputBenchmarkTest}.
+ */
+@Tag("benchmark")
+@DataJpaTest(showSql = false)
+@ActiveProfiles("test")
+@Import({ProductRepository.class, OrderRepository.class, UserRepository.class, PurchaseSummaryRepository.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class InventoryThroughputBenchmarkTest {
+
+    private static final int THREADS = 16;
+    private static final long DURATION_MS = 5000;
+    private static final int STOCK = 10_000_000;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PurchaseSummaryRepository purchaseSummaryRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate tx;
+    // Evictions are not what is measured here
+    private final CacheInvalidationService cacheInvalidationService = mock(CacheInvalidationService.class);
+    private final List<User> shoppers = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        tx = new TransactionTemplate(transactionManager);
+        for (int i = 0; i < THREADS; i++) {
+            shoppers.add(tx.execute(status -> {
+                User newUser = new User();
+                newUser.setUsername("bench-" + UUID.randomUUID());
+                newUser.setEmail(newUser.getUsername() + "@supermart.com");
+                newUser.setPassword("secret");
+                return userRepository.save(newUser);
+            }));
+        }
+    }
+
+    @Test
+    void databaseMode() throws Exception {
+        Long productId = createHotProduct();
+        long orders = run("database", new DatabaseInventoryService(productRepository), productId);
+
+        assertThat(productOf(productId).getQuantity()).isEqualTo(STOCK - orders);
+        assertThat(productOf(productId).getOrderCount()).isEqualTo(orders);
+    }
+
+    @Test
+    void ledgerMode() throws Exception {
+        Long productId = createHotProduct();
+        LedgerInventoryService ledger = new LedgerInventoryService(productRepository, orderRepository,
+                cacheInvalidationService, transactionManager);
+        ledger.reconcile();
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread flusher = new Thread(() -> {
+            while (running.get()) {
+                ledger.flush();
+                sleep(200);
+            }
+        });
+        flusher.start();
+
+        long orders = run("ledger", ledger, productId);
+
+        running.set(false);
+        flusher.join();
+        ledger.flush();
+        assertThat(ledger.getPendingReservations()).isZero();
+        assertThat(productOf(productId).getQuantity()).isEqualTo(STOCK - orders);
+        assertThat(productOf(productId).getOrderCount()).isEqualTo(orders);
+    }
+
+    private long run(String mode, InventoryService inventoryService, Long productId) throws Exception {
+        OrderServiceImpl orderService = new OrderServiceImpl(orderRepository, productRepository, purchaseSummaryRepository,
+                userRepository, inventoryService, mock(OrderIntakeProcessor.class), cacheInvalidationService,
+                mock(OrderSnapshots.class), transactionManager);
+        OrderRequest orderRequest = new OrderRequest(Collections.singletonList(new OrderItemRequest(productId, 1)));
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        long deadline = System.currentTimeMillis() + DURATION_MS;
+
+        List<Future<Long>> workers = new ArrayList<>();
+        for (User shopper : shoppers) {
+            workers.add(pool.submit(() -> {
+                SecurityContextHolder.getContext().setAuthentication(
+                        new UsernamePasswordAuthenticationToken(shopper.getUsername(), null, Collections.emptyList()));
+                long placed = 0;
+                try {
+                    while (System.currentTimeMillis() < deadline) {
+                        // Not a proxy, so the transaction is opened here
+                        tx.executeWithoutResult(status -> orderService.placeOrder(orderRequest));
+                        placed++;
+                    }
+                } finally {
+                    SecurityContextHolder.clearContext();
+                }
+                return placed;
+            }));
+        }
+
+        long orders = 0;
+        for (Future<Long> worker : workers) {
+            orders += worker.get();
+        }
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.SECONDS);
+
+        System.out.printf("[benchmark] inventory mode=%s threads=%d orders=%d throughput=%.0f orders/s%n",
+                mode, THREADS, orders, orders * 1000.0 / DURATION_MS);
+        return orders;
+    }
+
+    private Long createHotProduct() {
+        return tx.execute(status -> {
+            Product product = new Product();
+            product.setName("Hot SKU");
+            product.setWholesalePrice(new BigDecimal("1.00"));
+            product.setRetailPrice(new BigDecimal("2.00"));
+            product.setQuantity(STOCK);
+            return productRepository.save(product).getId();
+        });
+    }
+
+    private Product productOf(Long productId) {
+        return tx.execute(status -> productRepository.findById(productId)
+                .orElseThrow(IllegalStateException::new));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
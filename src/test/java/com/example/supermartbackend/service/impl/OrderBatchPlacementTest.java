@@ -0,0 +1,198 @@
+package com.example.supermartbackend.service.impl;
+
+import com.example.supermartbackend.dto.BatchOrderResponse;
+import com.example.supermartbackend.dto.OrderItemRequest;
+import com.example.supermartbackend.dto.OrderRequest;
+import com.example.supermartbackend.entity.Product;
+import com.example.supermartbackend.entity.User;
+import com.example.supermartbackend.repository.OrderRepository;
+import com.example.supermartbackend.repository.ProductRepository;
+import com.example.supermartbackend.repository.PurchaseSummaryRepository;
+import com.example.supermartbackend.repository.UserRepository;
+import com.example.supermartbackend.service.CacheInvalidationService;
+import com.example.supermartbackend.service.InventoryService;
+import com.example.supermartbackend.service.OrderIntakeProcessor;
+import com.example.supermartbackend.service.OrderSnapshots;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * POST /orders/batch against the database, committed chunk by chunk like in production.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({ProductRepository.class, OrderRepository.class, UserRepository.class, PurchaseSummaryRepository.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OrderBatchPlacementTest {
+
+    private static final int CHUNK_SIZE = 2;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PurchaseSummaryRepository purchaseSummaryRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private TransactionTemplate tx;
+    private InventoryService inventoryService;
+    private final CacheInvalidationService cacheInvalidationService = mock(CacheInvalidationService.class);
+    private OrderServiceImpl orderService;
+    private User shopper;
+    private final List<Long> productIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        tx = new TransactionTemplate(transactionManager);
+        inventoryService = spy(new DatabaseInventoryService(productRepository));
+        orderService = new OrderServiceImpl(orderRepository, productRepository, purchaseSummaryRepository,
+                userRepository, inventoryService, mock(OrderIntakeProcessor.class), cacheInvalidationService,
+                mock(OrderSnapshots.class), transactionManager);
+        ReflectionTestUtils.setField(orderService, "batchChunkSize", CHUNK_SIZE);
+
+        shopper = tx.execute(status -> {
+            User user = new User();
+            user.setUsername("batch-" + UUID.randomUUID());
+            user.setEmail(user.getUsername() + "@supermart.com");
+            user.setPassword("secret");
+            return userRepository.save(user);
+        });
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(shopper.getUsername(), null, Collections.emptyList()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        // Committed rows would show up in other tests' order listings
+        tx.executeWithoutResult(status -> {
+            entityManager.createNativeQuery("DELETE FROM order_items WHERE order_id IN (SELECT id FROM orders WHERE user_id = :userId)")
+                    .setParameter("userId", shopper.getId()).executeUpdate();
+            entityManager.createNativeQuery("DELETE FROM orders WHERE user_id = :userId")
+                    .setParameter("userId", shopper.getId()).executeUpdate();
+            entityManager.createNativeQuery("DELETE FROM purchase_summaries WHERE user_id = :userId")
+                    .setParameter("userId", shopper.getId()).executeUpdate();
+            entityManager.createNativeQuery("DELETE FROM users WHERE id = :userId")
+                    .setParameter("userId", shopper.getId()).executeUpdate();
+            entityManager.createNativeQuery("DELETE FROM products WHERE id IN :ids")
+                    .setParameter("ids", productIds).executeUpdate();
+        });
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void basketsAreReservedOneChunkAtATime() {
+        Long milk = product("Milk", 100);
+
+        BatchOrderResponse response = orderService.placeOrders(Arrays.asList(
+                basket(milk, 1), basket(milk, 1), basket(milk, 1), basket(milk, 1), basket(milk, 1)));
+
+        assertThat(response.getPlaced()).isEqualTo(5);
+        ArgumentCaptor<List<Map<Long, Integer>>> chunks = ArgumentCaptor.forClass(List.class);
+        verify(inventoryService, times(3)).reserveAll(chunks.capture());
+        assertThat(chunks.getAllValues()).extracting(List::size).containsExactly(2, 2, 1);
+        assertThat(quantityOf(milk)).isEqualTo(95);
+        // One eviction after the last chunk, not one per chunk
+        verify(cacheInvalidationService, times(1)).ordersPlaced(eq("order-batch-placed"),
+                eq(Collections.singleton(shopper.getUsername())), anyCollection());
+    }
+
+    @Test
+    void aRejectedBasketLeavesTheRestOfItsChunkPlaced() {
+        Long milk = product("Milk", 10);
+        Long bread = product("Bread", 1);
+
+        BatchOrderResponse response = orderService.placeOrders(Arrays.asList(
+                basket(milk, 2), basket(bread, 5), basket(milk, 3), basket(404_404L, 1)));
+
+        assertThat(response.getPlaced()).isEqualTo(2);
+        assertThat(response.getRejected()).isEqualTo(2);
+        assertThat(response.getResults()).extracting(BatchOrderResponse.BatchOrderResult::isPlaced)
+                .containsExactly(true, false, true, false);
+        assertThat(response.getResults().get(1).getError()).isNotBlank();
+        assertThat(response.getResults().get(3).getError()).contains("404404");
+        assertThat(quantityOf(milk)).isEqualTo(5);
+        assertThat(quantityOf(bread)).isEqualTo(1);
+    }
+
+    @Test
+    void resultsComeBackInRequestOrder() {
+        Long milk = product("Milk", 10);
+        Long bread = product("Bread", 10);
+        Long eggs = product("Eggs", 10);
+
+        BatchOrderResponse response = orderService.placeOrders(Arrays.asList(
+                basket(eggs, 1), basket(milk, 2), basket(bread, 3), basket(eggs, 4), basket(milk, 5)));
+
+        assertThat(response.getResults()).extracting(BatchOrderResponse.BatchOrderResult::getIndex)
+                .containsExactly(0, 1, 2, 3, 4);
+        assertThat(response.getResults()).extracting(result -> result.getOrder().getItems().get(0).getProductId())
+                .containsExactly(eggs, milk, bread, eggs, milk);
+        assertThat(response.getResults()).extracting(result -> result.getOrder().getItems().get(0).getQuantity())
+                .containsExactly(1, 2, 3, 4, 5);
+        // Orders are inserted in request order, so their ids ascend with it
+        assertThat(response.getResults()).extracting(result -> result.getOrder().getId()).isSorted();
+    }
+
+    private Long product(String name, int quantity) {
+        return tx.execute(status -> {
+            Product product = new Product();
+            product.setName(name);
+            product.setWholesalePrice(new BigDecimal("1.00"));
+            product.setRetailPrice(new BigDecimal("2.00"));
+            product.setQuantity(quantity);
+            Long productId = productRepository.save(product).getId();
+            productIds.add(productId);
+            return productId;
+        });
+    }
+
+    private int quantityOf(Long productId) {
+        return tx.execute(status -> productRepository.findById(productId).orElseThrow(IllegalStateException::new).getQuantity());
+    }
+
+    private static OrderRequest basket(Long productId, int quantity) {
+        return new OrderRequest(Collections.singletonList(new OrderItemRequest(productId, quantity)));
+    }
+}
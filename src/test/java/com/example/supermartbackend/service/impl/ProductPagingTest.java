@@ -0,0 +1,89 @@
+package com.example.supermartbackend.service.impl;
+
+import com.example.supermartbackend.dto.CatalogProduct;
+import com.example.supermartbackend.dto.CursorPage;
+import com.example.supermartbackend.dto.ProductResponse;
+import com.example.supermartbackend.repository.ProductRepository;
+import com.example.supermartbackend.repository.PurchaseSummaryRepository;
+import com.example.supermartbackend.repository.UserRepository;
+import com.example.supermartbackend.service.CacheInvalidationService;
+import com.example.supermartbackend.service.CatalogSnapshot;
+import com.example.supermartbackend.service.CatalogSnapshotService;
+import com.example.supermartbackend.service.InventoryService;
+import com.example.supermartbackend.service.NegativeLookupCache;
+import com.example.supermartbackend.service.PageCursor;
+import com.example.supermartbackend.service.ProductCatalog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProductPagingTest {
+
+    private ProductServiceImpl productService;
+
+    @BeforeEach
+    void setUp() {
+        // Products 1 to 20, every third one sold out
+        List<CatalogSnapshot.Item> items = new ArrayList<>();
+        for (long id = 1; id <= 20; id++) {
+            items.add(new CatalogSnapshot.Item(new CatalogProduct(id, "Product " + id, null, BigDecimal.ONE, null, null), BigDecimal.ONE));
+        }
+        CatalogSnapshotService catalogSnapshotService = mock(CatalogSnapshotService.class);
+        when(catalogSnapshotService.current()).thenReturn(CatalogSnapshot.of(1, items));
+
+        ProductCatalog productCatalog = mock(ProductCatalog.class);
+        when(productCatalog.getStockLevels(anyCollection())).thenAnswer(invocation -> invocation.<Collection<Long>>getArgument(0).stream()
+                .collect(Collectors.toMap(Function.identity(), id -> id % 3 == 0 ? 0 : 5)));
+
+        productService = new ProductServiceImpl(mock(ProductRepository.class), mock(UserRepository.class), mock(InventoryService.class),
+                productCatalog, catalogSnapshotService, mock(CacheInvalidationService.class), mock(NegativeLookupCache.class),
+                mock(PurchaseSummaryRepository.class));
+    }
+
+    @Test
+    void storefrontPagesSkipSoldOutProductsAndEndWithoutCursor() {
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            CursorPage<ProductResponse> page = productService.getInStockProductsPage(cursor, 4);
+            page.getItems().forEach(product -> seen.add(product.getId()));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        // 14 products in stock: three full pages and a last one of two
+        assertThat(pages).isEqualTo(4);
+        assertThat(seen).hasSize(14).doesNotHaveDuplicates().isSorted().noneMatch(id -> id % 3 == 0);
+    }
+
+    @Test
+    void adminPagesIncludeSoldOutProducts() {
+        Map<Long, Integer> quantities = productService.getProductsPageForAdmin(PageCursor.ofProduct(10L), 5).getItems().stream()
+                .collect(Collectors.toMap(product -> product.getId(), product -> product.getQuantity()));
+
+        assertThat(quantities).containsOnlyKeys(11L, 12L, 13L, 14L, 15L);
+        assertThat(quantities.get(12L)).isZero();
+    }
+
+    @Test
+    void badCursorsAndLimitsAreRejected() {
+        assertThatThrownBy(() -> productService.getInStockProductsPage("not a cursor", 10))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> productService.getInStockProductsPage(null, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.supermartbackend.service.impl;
+
+import com.example.supermartbackend.dto.OrderResponse;
+import com.example.supermartbackend.service.IdempotencyRecord;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.types.Expiration;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The store's entry format against a connection that keeps string values in a map.
+ */
+class RedisIdempotencyStoreTest {
+
+    private final Map<String, String> redis = new ConcurrentHashMap<>();
+    private final Map<String, Long> expiries = new ConcurrentHashMap<>();
+    private RedisConnectionFactory connectionFactory;
+    private RedisIdempotencyStore store;
+
+    @BeforeEach
+    void setUp() {
+        RedisConnection connection = mock(RedisConnection.class);
+        when(connection.get(any(byte[].class))).thenAnswer(invocation -> bytes(redis.get(string(invocation.getArgument(0)))));
+        when(connection.set(any(byte[].class), any(byte[].class), any(Expiration.class), any(SetOption.class))).thenAnswer(invocation -> {
+            String key = string(invocation.getArgument(0));
+            String value = string(invocation.getArgument(1));
+            if (invocation.getArgument(3) == SetOption.SET_IF_ABSENT) {
+                return redis.putIfAbsent(key, value) == null;
+            }
+            redis.put(key, value);
+            return true;
+        });
+        Answer<Boolean> setWithTtl = invocation -> {
+            redis.put(string(invocation.getArgument(0)), string(invocation.getArgument(2)));
+            return true;
+        };
+        when(connection.setEx(any(byte[].class), anyLong(), any(byte[].class))).thenAnswer(setWithTtl);
+        when(connection.pSetEx(any(byte[].class), anyLong(), any(byte[].class))).thenAnswer(setWithTtl);
+        when(connection.del(any(byte[].class))).thenAnswer(invocation -> redis.remove(string(invocation.getArgument(0))) != null ? 1L : 0L);
+        // The compare-and-set scripts, run against the map
+        when(connection.evalSha(anyString(), any(ReturnType.class), anyInt(), any())).thenAnswer(invocation -> {
+            String key = string(invocation.getArgument(3));
+            String claim = string(invocation.getArgument(4));
+            if (!claim.equals(redis.get(key))) {
+                return 0L;
+            }
+            if (invocation.getArgument(0).equals(RedisIdempotencyStore.DELETE_IF_CLAIMED.getSha1())) {
+                redis.remove(key);
+            } else {
+                expiries.put(key, Long.valueOf(string(invocation.getArgument(5))));
+            }
+            return 1L;
+        });
+        connectionFactory = mock(RedisConnectionFactory.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.findAndRegisterModules();
+        store = new RedisIdempotencyStore(connectionFactory, objectMapper, 3600, 60);
+    }
+
+    @Test
+    void claimsKeepTheRequestHashUntilCompleted() {
+        assertThat(store.claim("alice:1", "hash-1")).isTrue();
+        assertThat(store.claim("alice:1", "hash-2")).isFalse();
+        assertThat(store.find("alice:1")).hasValue(new IdempotencyRecord("hash-1", null));
+
+        store.complete("alice:1", "hash-1", response(1L));
+
+        assertThat(store.find("alice:1")).hasValue(new IdempotencyRecord("hash-1", response(1L)));
+    }
+
+    @Test
+    void onlyTheHeldClaimIsReleased() {
+        store.claim("alice:1", "hash-1");
+        // A request whose claim expired must not delete the claim a retry has taken since
+        store.release("alice:1", "hash-0");
+        assertThat(store.find("alice:1")).hasValue(new IdempotencyRecord("hash-1", null));
+        store.release("alice:1", "hash-1");
+        assertThat(store.find("alice:1")).isEmpty();
+
+        store.complete("alice:2", "hash-2", response(2L));
+        store.release("alice:2", "hash-2");
+        assertThat(store.find("alice:2")).hasValueSatisfying(record -> assertThat(record.getResponse().getId()).isEqualTo(2L));
+    }
+
+    @Test
+    void onlyTheHeldClaimIsRenewed() {
+        store.claim("alice:1", "hash-1");
+
+        assertThat(store.renew("alice:1", "hash-1")).isTrue();
+        assertThat(store.renew("alice:1", "hash-2")).isFalse();
+        assertThat(expiries).containsEntry("idempotency::alice:1", 60_000L);
+
+        store.complete("alice:1", "hash-1", response(1L));
+        assertThat(store.renew("alice:1", "hash-1")).isFalse();
+    }
+
+    @Test
+    void anUnserializableResponseKeepsTheKeyClaimed() throws Exception {
+        ObjectMapper objectMapper = mock(ObjectMapper.class);
+        when(objectMapper.writeValueAsString(any())).thenThrow(new JsonMappingException(null, "unserializable"));
+        store = new RedisIdempotencyStore(connectionFactory, objectMapper, 3600, 60);
+        store.claim("alice:1", "hash-1");
+
+        store.complete("alice:1", "hash-1", response(1L));
+
+        // The order exists, so the claim is kept for the key's full TTL instead of being released
+        assertThat(store.find("alice:1")).hasValue(new IdempotencyRecord("hash-1", null));
+        assertThat(expiries).containsEntry("idempotency::alice:1", 3_600_000L);
+    }
+
+    private static OrderResponse response(Long id) {
+        OrderResponse response = new OrderResponse();
+        response.setId(id);
+        response.setStatus("PLACED");
+        return response;
+    }
+
+    private static String string(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+}